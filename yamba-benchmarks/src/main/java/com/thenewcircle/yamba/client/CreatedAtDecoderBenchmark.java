@@ -0,0 +1,54 @@
+package com.thenewcircle.yamba.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes created_at values, with SimpleDateFormat as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CreatedAtDecoderBenchmark {
+
+    private String[] dates;
+    private char[][] buffers;
+    private SimpleDateFormat format;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        dates = new String[5];
+        buffers = new char[dates.length][];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = TimelineFixtures.date(i);
+            buffers[i] = dates[i].toCharArray();
+        }
+        format = new SimpleDateFormat(YambaClient.DATE_FORMAT_PATTERN, Locale.US);
+    }
+
+    @Benchmark
+    public long decodeString() throws Exception {
+        return CreatedAtDecoder.decode(dates[next++ % dates.length]);
+    }
+
+    @Benchmark
+    public long decodeChars() throws Exception {
+        char[] buffer = buffers[next++ % buffers.length];
+        return CreatedAtDecoder.decode(buffer, 0, buffer.length);
+    }
+
+    @Benchmark
+    public long simpleDateFormat() throws Exception {
+        return format.parse(dates[next++ % dates.length]).getTime();
+    }
+}
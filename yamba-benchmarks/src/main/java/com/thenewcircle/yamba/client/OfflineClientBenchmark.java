@@ -0,0 +1,44 @@
+package com.thenewcircle.yamba.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and posts against one shared offline client. Run with a range of
+ * thread counts to see how it scales; {@link YambaBenchmarks} sweeps 1 to
+ * 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OfflineClientBenchmark {
+
+    private static final int PRELOADED = 1000;
+
+    private YambaClientInterface client;
+
+    @Setup
+    public void setUp() {
+        client = new OfflineYambaClient.Builder()
+                .setSyntheticStatuses(PRELOADED, new StatusGenerator(1, 100, 140, 1000))
+                .build();
+    }
+
+    @Benchmark
+    public List<YambaStatus> getTimeline() throws Exception {
+        return client.getTimeline(20);
+    }
+
+    @Benchmark
+    public void postStatus() throws Exception {
+        client.postStatus("Benchmark status");
+    }
+}
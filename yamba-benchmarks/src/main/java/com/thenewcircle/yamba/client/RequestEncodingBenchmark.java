@@ -0,0 +1,72 @@
+package com.thenewcircle.yamba.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the body and headers of a status post without sending it. The
+ * {@code urlEncoder} benchmark keeps the former String based encoding as a
+ * baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestEncodingBenchmark {
+
+    private static final String STATUS =
+            "Benchmarking the request encoder: ünïcödé & friends, 100% of the time";
+    private static final String LATITUDE = "37.7749";
+    private static final String LONGITUDE = "-122.4194";
+
+    private YambaClient client;
+    private URLConnection connection;
+
+    @Setup
+    public void setUp() throws Exception {
+        client = (YambaClient) YambaClient.getClient("student", "password",
+                "http://localhost:1/api");
+        //Opening a URLConnection does not connect
+        connection = new URL("http://localhost:1/api/statuses/update.xml").openConnection();
+    }
+
+    @Benchmark
+    public int formBody() {
+        FormEncoder form = FormEncoder.obtain();
+        try {
+            form.add("status", STATUS).add("lat", LATITUDE).add("long", LONGITUDE);
+            return form.getLength();
+        } finally {
+            form.recycle();
+        }
+    }
+
+    @Benchmark
+    public byte[] urlEncoder() throws Exception {
+        String body = "status=" + URLEncoder.encode(STATUS, "UTF-8")
+                + "&lat=" + URLEncoder.encode(LATITUDE, "UTF-8")
+                + "&long=" + URLEncoder.encode(LONGITUDE, "UTF-8");
+        return body.getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public URLConnection basicAuthentication() {
+        client.attachBasicAuthentication(connection);
+        return connection;
+    }
+
+    @Benchmark
+    public int postRequest() {
+        client.attachBasicAuthentication(connection);
+        return formBody();
+    }
+}
@@ -0,0 +1,96 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+/**
+ * Synthetic timeline responses shaped like the ones the server returns.
+ */
+final class TimelineFixtures {
+
+    private static final String[] DATES = {
+            "Tue Oct 13 18:42:07 +0000 2015",
+            "Thu Jan 01 00:00:00 +0000 1970",
+            "Mon Feb 29 23:59:59 -0800 2016",
+            "Sat Dec 31 12:30:45 +0530 1999",
+            "Wed Mar 01 01:02:03 -0330 2000",
+    };
+
+    private TimelineFixtures() {
+    }
+
+    /** @return a sample created_at value */
+    static String date(int index) {
+        return DATES[index % DATES.length];
+    }
+
+    /**
+     * @param count number of statuses in the response
+     * @return UTF-8 encoded timeline XML, newest status first
+     */
+    static byte[] timeline(int count) {
+        return timeline(count, WireFormat.XML);
+    }
+
+    /**
+     * @param count number of statuses in the response
+     * @param format representation of the response
+     * @return UTF-8 encoded timeline, newest status first. Both formats
+     * carry the same fields and values for a given count.
+     */
+    static byte[] timeline(int count, WireFormat format) {
+        Random random = new Random(count);
+        boolean json = format == WireFormat.JSON;
+        StringBuilder out = new StringBuilder(count * 600);
+        if (json) {
+            out.append('[');
+        } else {
+            out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.append("<statuses type=\"array\">\n");
+        }
+        for (int i = count; i > 0; i--) {
+            int user = random.nextInt(500);
+            String text = "Status " + i + " from the benchmark & "
+                    + Long.toHexString(random.nextLong());
+            int followers = random.nextInt(1000);
+            if (json) {
+                if (i < count) {
+                    out.append(',');
+                }
+                out.append("{\"created_at\":\"").append(date(i)).append('"')
+                        .append(",\"id\":").append(1000000L + i)
+                        .append(",\"text\":\"").append(text).append('"')
+                        .append(",\"source\":\"web\"")
+                        .append(",\"truncated\":false")
+                        .append(",\"favorited\":false")
+                        .append(",\"user\":{\"id\":").append(user)
+                        .append(",\"name\":\"user").append(user).append('"')
+                        .append(",\"screen_name\":\"user").append(user).append('"')
+                        .append(",\"followers_count\":").append(followers)
+                        .append("}}");
+            } else {
+                out.append(" <status>\n")
+                        .append("  <created_at>").append(date(i)).append("</created_at>\n")
+                        .append("  <id>").append(1000000L + i).append("</id>\n")
+                        .append("  <text>").append(text.replace("&", "&amp;")).append("</text>\n")
+                        .append("  <source>web</source>\n")
+                        .append("  <truncated>false</truncated>\n")
+                        .append("  <favorited>false</favorited>\n")
+                        .append("  <user>\n")
+                        .append("   <id>").append(user).append("</id>\n")
+                        .append("   <name>user").append(user).append("</name>\n")
+                        .append("   <screen_name>user").append(user).append("</screen_name>\n")
+                        .append("   <followers_count>").append(followers)
+                        .append("</followers_count>\n")
+                        .append("  </user>\n")
+                        .append(" </status>\n");
+            }
+        }
+        out.append(json ? "]" : "</statuses>\n");
+        try {
+            return out.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
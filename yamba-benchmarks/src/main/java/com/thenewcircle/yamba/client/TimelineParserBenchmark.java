@@ -0,0 +1,48 @@
+package com.thenewcircle.yamba.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a whole timeline response per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimelineParserBenchmark {
+
+    @Param({"20", "200", "20000"})
+    public int statuses;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        body = TimelineFixtures.timeline(statuses);
+    }
+
+    @Benchmark
+    public void parseTimeline(Blackhole sink) throws Exception {
+        TimelineParser parser = TimelineParser.obtain(new ByteArrayInputStream(body));
+        try {
+            while (parser.nextStatus()) {
+                sink.consume(parser.getId());
+                sink.consume(parser.getCreatedAt());
+                sink.consume(parser.getUser());
+                sink.consume(parser.getMessage());
+            }
+        } finally {
+            parser.recycle();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.thenewcircle.yamba.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the same timeline as XML and as JSON, optionally gzip encoded as
+ * it would arrive over the wire. {@link #describePayloads} gives the
+ * matching transfer sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WireFormatBenchmark {
+
+    private static final int[] SIZES = {20, 200, 20000};
+
+    @Param({"XML", "JSON"})
+    public WireFormat format;
+
+    @Param({"20", "200", "20000"})
+    public int statuses;
+
+    @Param({"identity", "gzip"})
+    public String encoding;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        body = TimelineFixtures.timeline(statuses, format);
+        if ("gzip".equals(encoding)) {
+            body = ContentEncoding.gzip(body);
+        }
+    }
+
+    @Benchmark
+    public void parseTimeline(Blackhole sink) throws Exception {
+        InputStream in = ContentEncoding.decode(new ByteArrayInputStream(body), encoding);
+        TimelineParser parser = TimelineParser.obtain(in, format);
+        try {
+            while (parser.nextStatus()) {
+                sink.consume(parser.getId());
+                sink.consume(parser.getCreatedAt());
+                sink.consume(parser.getUser());
+                sink.consume(parser.getMessage());
+            }
+        } finally {
+            parser.recycle();
+            ContentEncoding.release(in);
+        }
+    }
+
+    /**
+     * @return response sizes for each format and timeline size, plain and
+     * gzip encoded, as a table
+     */
+    public static String describePayloads() throws IOException {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.US, "%-6s %9s %12s %12s %10s%n",
+                "format", "statuses", "bytes", "gzip bytes", "bytes/st"));
+        for (int count : SIZES) {
+            for (WireFormat format : WireFormat.values()) {
+                byte[] plain = TimelineFixtures.timeline(count, format);
+                byte[] gzip = ContentEncoding.gzip(plain);
+                table.append(String.format(Locale.US, "%-6s %9d %12d %12d %10.1f%n",
+                        format, count, plain.length, gzip.length,
+                        (double) plain.length / count));
+            }
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.thenewcircle.yamba.client;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmark suite with the GC profiler attached and writes one
+ * JSON result file per run, so results can be compared between builds.
+ * The response sizes behind {@link WireFormatBenchmark} are written next
+ * to its results.
+ *
+ * <p>Usage: {@code YambaBenchmarks <output dir> [include regex]}
+ */
+public class YambaBenchmarks {
+
+    private static final int[] OFFLINE_THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        File outputDir = new File(args.length > 0 ? args[0] : "jmh-results");
+        Pattern include = Pattern.compile(args.length > 1 ? args[1] : ".*");
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create " + outputDir);
+        }
+
+        if (include.matcher(WireFormatBenchmark.class.getSimpleName()).find()) {
+            //Transfer sizes are fixed for a payload, so they are computed once
+            String payloads = WireFormatBenchmark.describePayloads();
+            System.out.print(payloads);
+            Writer out = new OutputStreamWriter(new FileOutputStream(
+                    new File(outputDir, "WireFormatBenchmark-payloads.txt")), "UTF-8");
+            try {
+                out.write(payloads);
+            } finally {
+                out.close();
+            }
+        }
+
+        Class<?>[] singleThreaded = {
+                TimelineParserBenchmark.class,
+                CreatedAtDecoderBenchmark.class,
+                RequestEncodingBenchmark.class,
+                WireFormatBenchmark.class,
+        };
+        for (Class<?> benchmark : singleThreaded) {
+            if (include.matcher(benchmark.getSimpleName()).find()) {
+                run(options(benchmark, new File(outputDir, benchmark.getSimpleName() + ".json")));
+            }
+        }
+
+        if (include.matcher(OfflineClientBenchmark.class.getSimpleName()).find()) {
+            for (int threads : OFFLINE_THREADS) {
+                File result = new File(outputDir,
+                        OfflineClientBenchmark.class.getSimpleName() + "-t" + threads + ".json");
+                run(options(OfflineClientBenchmark.class, result).threads(threads));
+            }
+        }
+    }
+
+    private static ChainedOptionsBuilder options(Class<?> benchmark, File result) {
+        return new OptionsBuilder()
+                .include(Pattern.quote(benchmark.getName()) + "\\.")
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.getAbsolutePath());
+    }
+
+    private static void run(ChainedOptionsBuilder options) throws RunnerException {
+        new Runner(options.build()).run();
+    }
+}
@@ -15,3 +15,8 @@
 #-keepclassmembers class fqcn.of.javascript.interface.for.webview {
 #   public *;
 #}
+
+# YambaPlatform looks up the Android adapter by name
+-keep class com.thenewcircle.yamba.client.AndroidYambaPlatform {
+    public <init>();
+}
@@ -0,0 +1,41 @@
+package com.thenewcircle.yamba.client;
+
+import android.util.Base64;
+import android.util.Log;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Platform services backed by the Android framework. Found by
+ * {@link YambaPlatform#get()} through reflection, so it must keep its name
+ * and public no-argument constructor.
+ */
+public class AndroidYambaPlatform extends YambaPlatform {
+
+    public AndroidYambaPlatform() {
+    }
+
+    @Override
+    public boolean isDebugEnabled(String tag) {
+        return Log.isLoggable(tag, Log.DEBUG);
+    }
+
+    @Override
+    public void logDebug(String tag, String message) {
+        Log.d(tag, message);
+    }
+
+    @Override
+    public String encodeBase64(byte[] data) {
+        return Base64.encodeToString(data, Base64.NO_WRAP);
+    }
+
+    @Override
+    public XmlPullParser newPullParser() throws XmlPullParserException {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        return parser;
+    }
+}
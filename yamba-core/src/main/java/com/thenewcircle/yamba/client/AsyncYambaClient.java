@@ -0,0 +1,123 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the calls of a blocking {@link YambaClientInterface} on an executor.
+ *
+ * <p>By default requests share a small bounded pool, so any number of
+ * requests may be outstanding while only a few threads are blocked on the
+ * network. Callers needing other limits can supply their own executor.
+ */
+public final class AsyncYambaClient implements AsyncYambaClientInterface {
+    /**
+     * Threads in the shared default executor
+     */
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    private static Executor sDefaultExecutor;
+
+    private final YambaClientInterface client;
+    private final Executor executor;
+
+    /**
+     * Wrap a client, running its requests on the shared default executor.
+     * @param client Blocking client to delegate to
+     */
+    public static AsyncYambaClientInterface wrap(YambaClientInterface client) {
+        return wrap(client, null);
+    }
+
+    /**
+     * Wrap a client, running its requests on the given executor.
+     * @param client Blocking client to delegate to
+     * @param executor Executor for requests, or null for the shared default
+     */
+    public static AsyncYambaClientInterface wrap(YambaClientInterface client,
+                                                 Executor executor) {
+        return new AsyncYambaClient(client,
+                (executor == null) ? getDefaultExecutor() : executor);
+    }
+
+    /**
+     * Return the bounded executor shared by clients without their own.
+     */
+    static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            final AtomicInteger count = new AtomicInteger(1);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE,
+                    30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r,
+                                    "YambaClient #" + count.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            sDefaultExecutor = executor;
+        }
+        return sDefaultExecutor;
+    }
+
+    private AsyncYambaClient(YambaClientInterface client, Executor executor) {
+        if (client == null) {
+            throw new IllegalArgumentException("Client must not be null");
+        }
+        this.client = client;
+        this.executor = executor;
+    }
+
+    @Override
+    public Future<Void> postStatus(final String status, YambaCallback<Void> callback) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws YambaClientException {
+                client.postStatus(status);
+                return null;
+            }
+        }, callback);
+    }
+
+    @Override
+    public Future<Void> postStatus(final String status,
+                                   final double latitude, final double longitude,
+                                   YambaCallback<Void> callback) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws YambaClientException {
+                client.postStatus(status, latitude, longitude);
+                return null;
+            }
+        }, callback);
+    }
+
+    @Override
+    public Future<List<YambaStatus>> getTimeline(final int maxPosts,
+                                                 YambaCallback<List<YambaStatus>> callback) {
+        return submit(new Callable<List<YambaStatus>>() {
+            @Override
+            public List<YambaStatus> call() throws YambaClientException {
+                return client.getTimeline(maxPosts);
+            }
+        }, callback);
+    }
+
+    private <T> Future<T> submit(Callable<T> request, YambaCallback<T> callback) {
+        YambaCall<T> call = new YambaCall<>(request, callback, executor);
+        executor.execute(call);
+        return call;
+    }
+}
@@ -0,0 +1,44 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Non-blocking counterpart of {@link YambaClientInterface}. Every method
+ * returns immediately; the result is delivered through the returned
+ * {@link Future} and, if supplied, the callback. Cancelling the future
+ * aborts the underlying connection.
+ */
+public interface AsyncYambaClientInterface {
+
+    /**
+     * Post status without location.
+     *
+     * @param status
+     * @param callback notified on completion, may be null
+     * @return a future that completes when the status is posted
+     */
+    Future<Void> postStatus(String status, YambaCallback<Void> callback);
+
+    /**
+     * Post status at location.
+     *
+     * @param status
+     * @param latitude
+     * @param longitude
+     * @param callback notified on completion, may be null
+     * @return a future that completes when the status is posted
+     */
+    Future<Void> postStatus(String status, double latitude, double longitude,
+                            YambaCallback<Void> callback);
+
+    /**
+     * Fetch a list of recent statuses.
+     *
+     * @param maxPosts max on length of the timeline
+     * @param callback notified on completion, may be null
+     * @return a future for the list of YambaStatus objects
+     */
+    Future<List<YambaStatus>> getTimeline(int maxPosts,
+                                          YambaCallback<List<YambaStatus>> callback);
+}
@@ -0,0 +1,92 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fails requests fast while a server is unhealthy.
+ *
+ * <p>After a number of consecutive transient failures the breaker opens and
+ * rejects requests for a cool-down period. The first request after the
+ * cool-down is let through as a trial; its success closes the breaker and
+ * its failure opens it again. One breaker is shared by all clients talking
+ * to the same API root with the same limits; clients configured with
+ * other limits, or with none, are not affected by it.
+ */
+final class CircuitBreaker {
+
+    private static final ConcurrentMap<String, CircuitBreaker> sBreakers =
+            new ConcurrentHashMap<>();
+
+    /* Never opens; handed to clients that have the breaker turned off */
+    private static final CircuitBreaker DISABLED = new CircuitBreaker(0, 0);
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    private volatile long openedAt;
+
+    /**
+     * Return the breaker for an API root and limits, creating it if this
+     * is the first client to use them.
+     *
+     * @param failureThreshold consecutive failures that open the breaker,
+     *                         or 0 for a breaker that never opens
+     */
+    static CircuitBreaker forEndpoint(String apiRoot, int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0) {
+            return DISABLED;
+        }
+        String key = failureThreshold + " " + openMillis + " " + apiRoot;
+        CircuitBreaker breaker = sBreakers.get(key);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(failureThreshold, openMillis);
+            breaker = sBreakers.putIfAbsent(key, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return true if a request may be sent now
+     */
+    boolean allowRequest() {
+        if (failureThreshold <= 0 || failures.get() < failureThreshold) {
+            return true;
+        }
+        if (System.currentTimeMillis() - openedAt < openMillis) {
+            return false;
+        }
+        return trialInFlight.compareAndSet(false, true);
+    }
+
+    /** @return true while requests are being rejected */
+    boolean isOpen() {
+        return failureThreshold > 0 && failures.get() >= failureThreshold;
+    }
+
+    void recordSuccess() {
+        failures.set(0);
+        trialInFlight.set(false);
+    }
+
+    void recordFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        if (failures.incrementAndGet() >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+            trialInFlight.set(false);
+        }
+    }
+}
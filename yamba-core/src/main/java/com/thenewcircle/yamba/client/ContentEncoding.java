@@ -0,0 +1,121 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP content codings: compressed response bodies are decoded as they
+ * are read, request bodies are gzip encoded up front.
+ *
+ * <p>Decoded streams are never closed by the client, because closing them
+ * would close the connection stream before the transport can recycle it.
+ * Their native inflater is freed with {@link #release} instead.
+ */
+final class ContentEncoding {
+    /**
+     * Value sent in Accept-Encoding
+     */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private interface Releasable {
+        void release();
+    }
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * @param in response body as received
+     * @param encoding value of the Content-Encoding header, may be null
+     * @return a stream of the decoded body, or {@code in} if it is not encoded
+     */
+    static InputStream decode(InputStream in, String encoding) throws IOException {
+        if (encoding == null) {
+            return in;
+        }
+        encoding = encoding.trim().toLowerCase(Locale.US);
+        if (encoding.length() == 0 || "identity".equals(encoding)) {
+            return in;
+        }
+        if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+            return new GzipStream(in);
+        }
+        if ("deflate".equals(encoding)) {
+            //Servers disagree on whether deflate carries the zlib wrapper
+            PushbackInputStream pushback = new PushbackInputStream(in, 2);
+            int cmf = pushback.read();
+            int flg = pushback.read();
+            if (flg != -1) {
+                pushback.unread(flg);
+            }
+            if (cmf != -1) {
+                pushback.unread(cmf);
+            }
+            boolean zlib = (cmf & 0x0f) == 8 && flg != -1 && ((cmf << 8) | flg) % 31 == 0;
+            return new DeflateStream(pushback, !zlib);
+        }
+        throw new IOException("Unsupported Content-Encoding: " + encoding);
+    }
+
+    /**
+     * @return the gzip encoding of {@code data}
+     */
+    static byte[] gzip(byte[] data) throws IOException {
+        return gzip(data, data.length);
+    }
+
+    /**
+     * @return the gzip encoding of the first {@code length} bytes of {@code data}
+     */
+    static byte[] gzip(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 32);
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        try {
+            gzip.write(data, 0, length);
+        } finally {
+            gzip.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Free the inflater behind a stream returned by {@link #decode},
+     * leaving the underlying stream open.
+     */
+    static void release(InputStream decoded) {
+        if (decoded instanceof Releasable) {
+            ((Releasable) decoded).release();
+        }
+    }
+
+    private static final class GzipStream extends GZIPInputStream implements Releasable {
+        GzipStream(InputStream in) throws IOException {
+            super(in, BUFFER_SIZE);
+        }
+
+        @Override
+        public void release() {
+            inf.end();
+        }
+    }
+
+    private static final class DeflateStream extends InflaterInputStream implements Releasable {
+        DeflateStream(InputStream in, boolean nowrap) {
+            super(in, new Inflater(nowrap), BUFFER_SIZE);
+        }
+
+        @Override
+        public void release() {
+            inf.end();
+        }
+    }
+}
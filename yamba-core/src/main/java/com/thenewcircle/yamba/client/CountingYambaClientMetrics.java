@@ -0,0 +1,142 @@
+package com.thenewcircle.yamba.client;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link YambaClientMetrics} that keeps counters and latency histograms per
+ * operation, suitable for periodic export to a dashboard.
+ */
+public class CountingYambaClientMetrics implements YambaClientMetrics {
+
+    /**
+     * Measurements for one operation type
+     */
+    public static final class OperationStats {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong bytesSent = new AtomicLong();
+        final AtomicLong bytesReceived = new AtomicLong();
+        final AtomicLong statuses = new AtomicLong();
+        final LatencyHistogram connect = new LatencyHistogram();
+        final LatencyHistogram firstByte = new LatencyHistogram();
+        final LatencyHistogram transfer = new LatencyHistogram();
+        final LatencyHistogram parse = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+
+        private OperationStats() {
+        }
+
+        public long getRequestCount() { return requests.get(); }
+
+        public long getErrorCount() { return errors.get(); }
+
+        public long getBytesSent() { return bytesSent.get(); }
+
+        public long getBytesReceived() { return bytesReceived.get(); }
+
+        public long getStatusesParsed() { return statuses.get(); }
+
+        /** @return time to establish the connection */
+        public LatencyHistogram getConnectLatency() { return connect; }
+
+        /** @return time until the response status arrived */
+        public LatencyHistogram getFirstByteLatency() { return firstByte; }
+
+        /** @return time spent waiting for the response body */
+        public LatencyHistogram getTransferLatency() { return transfer; }
+
+        /** @return time spent parsing the response body */
+        public LatencyHistogram getParseLatency() { return parse; }
+
+        /** @return time for the whole request */
+        public LatencyHistogram getTotalLatency() { return total; }
+    }
+
+    private final OperationStats[] stats;
+    private final ConcurrentMap<Class<?>, AtomicLong> errorsByType =
+            new ConcurrentHashMap<>();
+
+    public CountingYambaClientMetrics() {
+        Operation[] operations = Operation.values();
+        stats = new OperationStats[operations.length];
+        for (int i = 0; i < operations.length; i++) {
+            stats[i] = new OperationStats();
+        }
+    }
+
+    /**
+     * @return measurements for the operation
+     */
+    public OperationStats getStats(Operation operation) {
+        return stats[operation.ordinal()];
+    }
+
+    /**
+     * @return snapshot of error counts keyed by exception class
+     */
+    public Map<Class<?>, Long> getErrorCounts() {
+        Map<Class<?>, Long> counts = new HashMap<>();
+        for (Map.Entry<Class<?>, AtomicLong> entry : errorsByType.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    @Override
+    public long onRequestStart(Operation operation, URL endpoint) {
+        stats[operation.ordinal()].requests.incrementAndGet();
+        return 0;
+    }
+
+    @Override
+    public void onConnect(long tag, Operation operation, long nanos) {
+        stats[operation.ordinal()].connect.record(nanos);
+    }
+
+    @Override
+    public void onFirstByte(long tag, Operation operation, long nanos) {
+        stats[operation.ordinal()].firstByte.record(nanos);
+    }
+
+    @Override
+    public void onTransfer(long tag, Operation operation, long nanos,
+                           long bytesSent, long bytesReceived) {
+        OperationStats s = stats[operation.ordinal()];
+        s.transfer.record(nanos);
+        s.bytesSent.addAndGet(bytesSent);
+        s.bytesReceived.addAndGet(bytesReceived);
+    }
+
+    @Override
+    public void onParse(long tag, Operation operation, long nanos, int statuses) {
+        OperationStats s = stats[operation.ordinal()];
+        s.parse.record(nanos);
+        s.statuses.addAndGet(statuses);
+    }
+
+    @Override
+    public void onRequestEnd(long tag, Operation operation, long nanos,
+                             YambaClientException error) {
+        OperationStats s = stats[operation.ordinal()];
+        s.total.record(nanos);
+        if (error != null) {
+            s.errors.incrementAndGet();
+            Class<?> type = error.getClass();
+            AtomicLong counter = errorsByType.get(type);
+            if (counter == null) {
+                AtomicLong created = new AtomicLong();
+                counter = errorsByType.putIfAbsent(type, created);
+                if (counter == null) {
+                    counter = created;
+                }
+            }
+            counter.incrementAndGet();
+        }
+    }
+}
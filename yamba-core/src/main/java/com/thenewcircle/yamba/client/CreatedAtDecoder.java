@@ -0,0 +1,162 @@
+package com.thenewcircle.yamba.client;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Decodes {@code created_at} timestamps in the fixed
+ * {@link YambaClient#DATE_FORMAT_PATTERN} layout, for example
+ * {@code Tue Oct 13 18:42:07 +0000 2015}, straight to epoch milliseconds.
+ *
+ * <p>Every field sits at a fixed offset, so decoding is a handful of digit
+ * reads and no objects are created. Statuses in one timeline are usually
+ * posted on the same day, so the day part of the last timestamp is cached.
+ * Anything that does not fit the fixed layout is handed to a
+ * {@link SimpleDateFormat}. All methods are thread-safe.
+ */
+final class CreatedAtDecoder {
+
+    private static final int LENGTH = 30;
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final long INVALID = Long.MIN_VALUE;
+
+    /* Last decoded day; replaced as a whole so readers never see a torn pair */
+    private static volatile DayCache sLastDay = new DayCache(-1, 0);
+
+    private static final ThreadLocal<SimpleDateFormat> sFallbackFormat =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return new SimpleDateFormat(YambaClient.DATE_FORMAT_PATTERN, Locale.US);
+                }
+            };
+
+    private static final class DayCache {
+        final int key;
+        final long millis;
+
+        DayCache(int key, long millis) {
+            this.key = key;
+            this.millis = millis;
+        }
+    }
+
+    private CreatedAtDecoder() {
+    }
+
+    /**
+     * @param text a created_at value
+     * @return the timestamp in milliseconds since the epoch
+     * @throws ParseException if the text is not a valid timestamp
+     */
+    static long decode(String text) throws ParseException {
+        return decode(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * @param text buffer holding a created_at value
+     * @param start offset of the value in the buffer
+     * @param length length of the value
+     * @return the timestamp in milliseconds since the epoch
+     * @throws ParseException if the text is not a valid timestamp
+     */
+    static long decode(char[] text, int start, int length) throws ParseException {
+        int end = start + length;
+        while (start < end && text[start] <= ' ') {
+            start++;
+        }
+        while (end > start && text[end - 1] <= ' ') {
+            end--;
+        }
+        if (end - start == LENGTH) {
+            long millis = decodeFixed(text, start);
+            if (millis != INVALID) {
+                return millis;
+            }
+        }
+        return sFallbackFormat.get()
+                .parse(new String(text, start, end - start)).getTime();
+    }
+
+    private static long decodeFixed(char[] t, int s) {
+        if (t[s + 3] != ' ' || t[s + 7] != ' ' || t[s + 10] != ' '
+                || t[s + 13] != ':' || t[s + 16] != ':'
+                || t[s + 19] != ' ' || t[s + 25] != ' ') {
+            return INVALID;
+        }
+        int month = parseMonth(t, s + 4);
+        int day = parseDigits(t, s + 8, 2);
+        int hour = parseDigits(t, s + 11, 2);
+        int minute = parseDigits(t, s + 14, 2);
+        int second = parseDigits(t, s + 17, 2);
+        int offsetHours = parseDigits(t, s + 21, 2);
+        int offsetMinutes = parseDigits(t, s + 23, 2);
+        int year = parseDigits(t, s + 26, 4);
+        char sign = t[s + 20];
+        if (month < 0 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 60
+                || offsetHours < 0 || offsetMinutes < 0 || year < 0
+                || (sign != '+' && sign != '-')) {
+            return INVALID;
+        }
+
+        int key = (year * 12 + month) * 32 + day;
+        DayCache cache = sLastDay;
+        long dayMillis;
+        if (cache.key == key) {
+            dayMillis = cache.millis;
+        } else {
+            dayMillis = daysFromCivil(year, month + 1, day) * MILLIS_PER_DAY;
+            sLastDay = new DayCache(key, dayMillis);
+        }
+
+        long offset = (offsetHours * 60 + offsetMinutes) * 60000L;
+        if (sign == '-') {
+            offset = -offset;
+        }
+        return dayMillis + hour * 3600000L + minute * 60000L + second * 1000L - offset;
+    }
+
+    /** @return zero-based month, or -1 if unknown */
+    private static int parseMonth(char[] t, int s) {
+        for (int i = 0; i < 12; i++) {
+            int m = i * 3;
+            if (MONTHS.charAt(m) == t[s] && MONTHS.charAt(m + 1) == t[s + 1]
+                    && MONTHS.charAt(m + 2) == t[s + 2]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** @return the decimal value, or -1 if any character is not a digit */
+    private static int parseDigits(char[] t, int s, int count) {
+        int value = 0;
+        for (int i = s; i < s + count; i++) {
+            int digit = t[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar.
+     *
+     * @param month one-based month
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        if (month <= 2) {
+            year--;
+        }
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
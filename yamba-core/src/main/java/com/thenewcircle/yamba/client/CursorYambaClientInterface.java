@@ -0,0 +1,50 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.List;
+
+/**
+ * {@link YambaClientInterface} with cursor paging over the timeline by
+ * status id. Kept apart so that existing implementations of the base
+ * interface are not broken by the additional methods.
+ */
+public interface CursorYambaClientInterface extends YambaClientInterface {
+
+    /**
+     * Get statuses newer than a known status. Only the new statuses are
+     * transferred by the server.
+     *
+     * @param sinceId return statuses with an id greater than this, or 0
+     * @param count max on length of the timeline
+     * @return a list of YambaStatus objects
+     * @throws YambaClientException
+     */
+    List<YambaStatus> getTimelineSince(long sinceId, int count)
+            throws YambaClientException;
+
+    /**
+     * Get a page of statuses between two known statuses.
+     *
+     * @param sinceId return statuses with an id greater than this, or 0
+     * @param maxId return statuses with an id less than or equal to this, or 0
+     * @param count max on length of the timeline
+     * @return a list of YambaStatus objects
+     * @throws YambaClientException
+     */
+    List<YambaStatus> getTimelineRange(long sinceId, long maxId, int count)
+            throws YambaClientException;
+
+    /**
+     * Stream statuses to a processor without building a list. Processing
+     * stops as soon as {@link YambaClient.TimelineProcessor#isRunnable()}
+     * returns false.
+     *
+     * @param sinceId return statuses with an id greater than this, or 0
+     * @param maxId return statuses with an id less than or equal to this, or 0
+     * @param count max on length of the timeline, or 0 for the server default
+     * @param processor callback handler for each status
+     * @throws YambaClientException
+     */
+    void fetchTimeline(long sinceId, long maxId, int count,
+                       YambaClient.TimelineProcessor processor)
+            throws YambaClientException;
+}
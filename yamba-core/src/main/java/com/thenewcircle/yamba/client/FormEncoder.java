@@ -0,0 +1,145 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes an {@code application/x-www-form-urlencoded} body in UTF-8
+ * straight into a reusable byte buffer, encoding the same way as
+ * {@code URLEncoder} without building any intermediate strings.
+ *
+ * <p>Encoders are recycled through a small pool; use {@link #obtain} and
+ * {@link #recycle()}. Instances are not thread safe.
+ */
+final class FormEncoder {
+    /**
+     * Content-Type of the encoded body
+     */
+    static final String CONTENT_TYPE = "application/x-www-form-urlencoded; charset=UTF-8";
+
+    private static final int INITIAL_CAPACITY = 512;
+    /* Buffers grown past this are not kept in the pool */
+    private static final int MAX_POOLED_CAPACITY = 16 * 1024;
+    private static final int MAX_POOL_SIZE = 8;
+
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7',
+            '8', '9', 'A', 'B', 'C', 'D', 'E', 'F',
+    };
+
+    private static final ConcurrentLinkedQueue<FormEncoder> sPool =
+            new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger sPoolSize = new AtomicInteger();
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    /**
+     * Return an empty encoder, reusing a pooled instance when one is
+     * available.
+     */
+    static FormEncoder obtain() {
+        FormEncoder encoder = sPool.poll();
+        if (encoder == null) {
+            return new FormEncoder();
+        }
+        sPoolSize.decrementAndGet();
+        encoder.length = 0;
+        return encoder;
+    }
+
+    /**
+     * Return this encoder to the pool. It must not be used afterwards.
+     */
+    void recycle() {
+        if (buffer.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        if (sPoolSize.incrementAndGet() <= MAX_POOL_SIZE) {
+            sPool.offer(this);
+        } else {
+            sPoolSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * Append a name and value pair.
+     */
+    FormEncoder add(String name, CharSequence value) {
+        if (length > 0) {
+            append('&');
+        }
+        encode(name);
+        append('=');
+        encode(value);
+        return this;
+    }
+
+    /** @return the buffer holding the body; only the first {@link #getLength()} bytes are valid */
+    byte[] getBuffer() { return buffer; }
+
+    /** @return number of bytes encoded */
+    int getLength() { return length; }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    private void encode(CharSequence text) {
+        int count = text.length();
+        //Worst case: every char is a three byte sequence, each byte escaped
+        ensureCapacity(length + count * 9);
+        byte[] out = buffer;
+        int pos = length;
+        for (int i = 0; i < count; i++) {
+            char c = text.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                out[pos++] = (byte) c;
+            } else if (c == ' ') {
+                out[pos++] = '+';
+            } else if (c < 0x80) {
+                pos = escape(out, pos, c);
+            } else if (c < 0x800) {
+                pos = escape(out, pos, 0xc0 | (c >> 6));
+                pos = escape(out, pos, 0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, text.charAt(++i));
+                pos = escape(out, pos, 0xf0 | (code >> 18));
+                pos = escape(out, pos, 0x80 | ((code >> 12) & 0x3f));
+                pos = escape(out, pos, 0x80 | ((code >> 6) & 0x3f));
+                pos = escape(out, pos, 0x80 | (code & 0x3f));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                //Unpaired surrogates cannot be encoded
+                pos = escape(out, pos, '?');
+            } else {
+                pos = escape(out, pos, 0xe0 | (c >> 12));
+                pos = escape(out, pos, 0x80 | ((c >> 6) & 0x3f));
+                pos = escape(out, pos, 0x80 | (c & 0x3f));
+            }
+        }
+        length = pos;
+    }
+
+    private static int escape(byte[] out, int pos, int b) {
+        out[pos++] = '%';
+        out[pos++] = HEX[(b >> 4) & 0xf];
+        out[pos++] = HEX[b & 0xf];
+        return pos;
+    }
+
+    private void append(char c) {
+        ensureCapacity(length + 1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+}
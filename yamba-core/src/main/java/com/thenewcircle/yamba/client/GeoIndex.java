@@ -0,0 +1,425 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory spatial index over a bounded number of located statuses,
+ * answering bounding box and nearest neighbour queries without scanning
+ * every status.
+ *
+ * <p>Statuses are bucketed into a grid of cells a fixed number of degrees
+ * wide; only cells holding a status take any memory. A box query visits
+ * just the cells it overlaps, and a nearest query searches rings of cells
+ * outwards from the point until no unvisited cell can hold anything
+ * closer. Statuses without a location are not indexed. Once the index is
+ * full the oldest statuses are dropped. Safe for use from several threads.
+ */
+public final class GeoIndex {
+    /**
+     * Default number of statuses held
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * Default cell size in degrees, roughly 11 km north to south
+     */
+    public static final double DEFAULT_CELL_DEGREES = 0.1;
+
+    /* Mean earth radius */
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private static final Comparator<YambaStatus> NEWEST_FIRST = new Comparator<YambaStatus>() {
+        @Override
+        public int compare(YambaStatus a, YambaStatus b) {
+            return (a.getId() < b.getId()) ? 1 : ((a.getId() == b.getId()) ? 0 : -1);
+        }
+    };
+
+    private final int capacity;
+    private final double cellDegrees;
+    private final int rows;
+    private final int columns;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, YambaStatus> statuses = new HashMap<>();
+    private final Postings ids = new Postings();
+    /* Ids in each non-empty cell, keyed by row * columns + column */
+    private final Map<Long, Postings> cells = new HashMap<>();
+
+    public GeoIndex() {
+        this(DEFAULT_CAPACITY, DEFAULT_CELL_DEGREES);
+    }
+
+    /**
+     * @param capacity most statuses held; the oldest are dropped beyond it
+     * @param cellDegrees width of a grid cell in degrees; about the radius
+     *                    of a typical query works best
+     */
+    public GeoIndex(int capacity, double cellDegrees) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        if (!(cellDegrees > 0 && cellDegrees <= 90)) {
+            throw new IllegalArgumentException("Invalid cell size");
+        }
+        this.capacity = capacity;
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.columns = (int) Math.ceil(360 / cellDegrees);
+    }
+
+    /**
+     * Great circle distance between two points.
+     *
+     * @return distance in meters
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Index a status, unless it has no location, one with the same id is
+     * already held or the index is full of newer statuses.
+     *
+     * @return true if the status was added
+     */
+    public boolean add(YambaStatus status) {
+        lock.writeLock().lock();
+        try {
+            return addLocked(status);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index the located statuses of a list, such as a timeline page.
+     *
+     * @return number of statuses added
+     */
+    public int addAll(List<YambaStatus> statuses) {
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < statuses.size(); i++) {
+                if (addLocked(statuses.get(i))) {
+                    added++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Drop a status from the index.
+     *
+     * @return true if it was held
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the newest statuses inside a box. A box whose west edge is east
+     * of its east edge crosses the antimeridian.
+     *
+     * @param south southern edge in degrees, inclusive
+     * @param west western edge in degrees, inclusive
+     * @param north northern edge in degrees, inclusive
+     * @param east eastern edge in degrees, inclusive
+     * @param limit most statuses to return
+     * @return statuses inside the box, newest first
+     */
+    public List<YambaStatus> within(double south, double west, double north, double east,
+                                    int limit) {
+        if (!(south >= -90 && north <= 90 && south <= north)) {
+            throw new IllegalArgumentException("Invalid latitude range");
+        }
+        if (!(west >= -180 && west <= 180 && east >= -180 && east <= 180)) {
+            throw new IllegalArgumentException("Invalid longitude range");
+        }
+        List<YambaStatus> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            int firstRow = row(south);
+            int lastRow = row(north);
+            int firstColumn = column(west);
+            int lastColumn = column(east);
+            boolean wraps = west > east;
+            int spanColumns = Math.min(columns, wraps ? columns - firstColumn + lastColumn + 1
+                    : lastColumn - firstColumn + 1);
+
+            if ((long) (lastRow - firstRow + 1) * spanColumns > cells.size()) {
+                //A large box; cheaper to look at every occupied cell
+                for (Map.Entry<Long, Postings> entry : cells.entrySet()) {
+                    long key = entry.getKey();
+                    int row = (int) (key / columns);
+                    int column = (int) (key % columns);
+                    boolean inColumns = wraps ? (column >= firstColumn || column <= lastColumn)
+                            : (column >= firstColumn && column <= lastColumn);
+                    if (row >= firstRow && row <= lastRow && inColumns) {
+                        collect(entry.getValue(), south, west, north, east, limit, result);
+                    }
+                }
+            } else {
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int i = 0; i < spanColumns; i++) {
+                        Postings cell = cells.get(key(row, (firstColumn + i) % columns));
+                        if (cell != null) {
+                            collect(cell, south, west, north, east, limit, result);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(result, NEWEST_FIRST);
+        return (result.size() > limit) ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Find the statuses closest to a point.
+     *
+     * @param latitude latitude of the point in degrees
+     * @param longitude longitude of the point in degrees
+     * @param count most statuses to return
+     * @return the closest statuses, nearest first
+     */
+    public List<YambaStatus> nearest(double latitude, double longitude, int count) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid location");
+        }
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(Math.min(count, 64),
+                Neighbour.FARTHEST_FIRST);
+        lock.readLock().lock();
+        try {
+            int centerRow = row(latitude);
+            int centerColumn = column(longitude);
+            for (int ring = 0; ; ring++) {
+                long side = 2L * ring + 1;
+                if (side > columns || side * side > cells.size() * 4L) {
+                    //The rings have grown past the occupied cells; finish by scanning
+                    best.clear();
+                    for (YambaStatus status : statuses.values()) {
+                        offer(best, status, latitude, longitude, count);
+                    }
+                    break;
+                }
+                searchRing(centerRow, centerColumn, ring, best, latitude, longitude, count);
+                if (best.size() == count
+                        && best.peek().distance <= boundBeyond(ring, latitude)) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<YambaStatus> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().status);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** @return number of statuses held */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return statuses.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return number of grid cells holding a status */
+    public int getCellCount() {
+        lock.readLock().lock();
+        try {
+            return cells.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            statuses.clear();
+            ids.clear();
+            cells.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* Takes up to limit statuses inside the box from a cell, newest first */
+    private void collect(Postings cell, double south, double west, double north, double east,
+                         int limit, List<YambaStatus> result) {
+        int taken = 0;
+        for (int i = cell.size() - 1; i >= 0 && taken < limit; i--) {
+            YambaStatus status = statuses.get(cell.get(i));
+            double lat = status.getLatitude();
+            double lon = status.getLongitude();
+            boolean inLongitude = (west <= east) ? (lon >= west && lon <= east)
+                    : (lon >= west || lon <= east);
+            if (lat >= south && lat <= north && inLongitude) {
+                result.add(status);
+                taken++;
+            }
+        }
+    }
+
+    /* Visits the cells exactly ring steps from the center */
+    private void searchRing(int centerRow, int centerColumn, int ring,
+                            PriorityQueue<Neighbour> best, double latitude, double longitude,
+                            int count) {
+        for (int dRow = -ring; dRow <= ring; dRow++) {
+            int row = centerRow + dRow;
+            if (row < 0 || row >= rows) {
+                continue;
+            }
+            boolean edge = dRow == -ring || dRow == ring;
+            for (int dColumn = -ring; dColumn <= ring; dColumn += edge ? 1 : 2 * ring) {
+                int column = ((centerColumn + dColumn) % columns + columns) % columns;
+                Postings cell = cells.get(key(row, column));
+                if (cell != null) {
+                    for (int i = 0; i < cell.size(); i++) {
+                        offer(best, statuses.get(cell.get(i)), latitude, longitude, count);
+                    }
+                }
+                if (ring == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a distance no status outside the searched rings can be
+     * closer than. Wherever the point lies in its cell, those statuses are
+     * at least {@code ring} cells away in latitude or in longitude; the
+     * latter is the shorter path, across the nearest meridian that far off.
+     */
+    private double boundBeyond(int ring, double latitude) {
+        double degrees = ring * cellDegrees;
+        if (degrees >= 90) {
+            return 0;
+        }
+        double across = Math.asin(Math.cos(Math.toRadians(latitude))
+                * Math.sin(Math.toRadians(degrees)));
+        return EARTH_RADIUS_METERS * Math.min(Math.toRadians(degrees), across);
+    }
+
+    private static void offer(PriorityQueue<Neighbour> best, YambaStatus status,
+                              double latitude, double longitude, int count) {
+        double distance = distanceMeters(latitude, longitude,
+                status.getLatitude(), status.getLongitude());
+        if (best.size() < count) {
+            best.add(new Neighbour(status, distance));
+        } else if (distance < best.peek().distance) {
+            best.poll();
+            best.add(new Neighbour(status, distance));
+        }
+    }
+
+    private int row(double latitude) {
+        return Math.min((int) Math.floor((latitude + 90) / cellDegrees), rows - 1);
+    }
+
+    private int column(double longitude) {
+        return Math.min((int) Math.floor((longitude + 180) / cellDegrees), columns - 1);
+    }
+
+    private long key(int row, int column) {
+        return (long) row * columns + column;
+    }
+
+    private long keyOf(YambaStatus status) {
+        return key(row(status.getLatitude()), column(status.getLongitude()));
+    }
+
+    private boolean addLocked(YambaStatus status) {
+        if (!status.hasLocation()) {
+            return false;
+        }
+        long id = status.getId();
+        if (statuses.containsKey(id)) {
+            return false;
+        }
+        if (statuses.size() >= capacity) {
+            if (id < ids.get(0)) {
+                return false;
+            }
+            removeLocked(ids.get(0));
+        }
+        statuses.put(id, status);
+        ids.add(id);
+        long key = keyOf(status);
+        Postings cell = cells.get(key);
+        if (cell == null) {
+            cell = new Postings();
+            cells.put(key, cell);
+        }
+        cell.add(id);
+        return true;
+    }
+
+    private boolean removeLocked(long id) {
+        YambaStatus status = statuses.remove(id);
+        if (status == null) {
+            return false;
+        }
+        ids.remove(id);
+        long key = keyOf(status);
+        Postings cell = cells.get(key);
+        cell.remove(id);
+        if (cell.size() == 0) {
+            cells.remove(key);
+        }
+        return true;
+    }
+
+    private static final class Neighbour {
+        static final Comparator<Neighbour> FARTHEST_FIRST = new Comparator<Neighbour>() {
+            @Override
+            public int compare(Neighbour a, Neighbour b) {
+                return Double.compare(b.distance, a.distance);
+            }
+        };
+
+        final YambaStatus status;
+        final double distance;
+
+        Neighbour(YambaStatus status, double distance) {
+            this.status = status;
+            this.distance = distance;
+        }
+    }
+}
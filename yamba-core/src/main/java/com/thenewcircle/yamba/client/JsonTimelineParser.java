@@ -0,0 +1,675 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Timeline parser for the JSON endpoints, whose response is an array of
+ * status objects.
+ *
+ * <p>The tokenizer works directly on a fixed byte buffer and decodes
+ * UTF-8 by hand. Only the fields a status needs are decoded; everything
+ * else is skipped without building strings. Ids are accumulated digit by
+ * digit and dates decoded from a reusable character buffer, and recent
+ * user names are shared, so a status usually costs just its message.
+ */
+final class JsonTimelineParser extends TimelineParser {
+
+    /* Field codes */
+    private static final int FIELD_OTHER = 0;
+    private static final int FIELD_ID = 1;
+    private static final int FIELD_CREATED_AT = 2;
+    private static final int FIELD_TEXT = 3;
+    private static final int FIELD_USER = 4;
+    private static final int FIELD_NAME = 5;
+    private static final int FIELD_GEO = 6;
+    private static final int FIELD_COORDINATES = 7;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /* Must be a power of two */
+    private static final int NAME_CACHE_SIZE = 64;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final String[] names = new String[NAME_CACHE_SIZE];
+    private char[] chars = new char[256];
+    /* Message of the current status, before it is made into a string */
+    private final TextView text = new TextView();
+    private InputStream in;
+    private int pos;
+    private int limit;
+    /* Bytes read before the start of the buffer, for error offsets */
+    private int consumed;
+    private boolean started;
+
+    @Override
+    WireFormat getFormat() { return WireFormat.JSON; }
+
+    @Override
+    void reset(InputStream in) {
+        this.in = in;
+        pos = 0;
+        limit = 0;
+        consumed = 0;
+        started = false;
+        finished = false;
+    }
+
+    @Override
+    void clearStatus() {
+        super.clearStatus();
+        text.length = -1;
+    }
+
+    @Override
+    String getMessage() {
+        if (message == null && text.length >= 0) {
+            message = text.toString();
+        }
+        return message;
+    }
+
+    @Override
+    CharSequence getMessageText() {
+        return (message != null || text.length < 0) ? message : text;
+    }
+
+    @Override
+    boolean nextStatus() throws IOException, ParseException {
+        clearStatus();
+
+        if (finished) {
+            return false;
+        }
+        int c = nextToken();
+        if (!started) {
+            c = skipByteOrderMark(c);
+            expect(c, '[');
+            started = true;
+            c = nextToken();
+            if (c == ']') {
+                finish();
+                return false;
+            }
+        } else if (c == ']') {
+            finish();
+            return false;
+        } else {
+            expect(c, ',');
+            c = nextToken();
+        }
+        expect(c, '{');
+        readStatus();
+        return true;
+    }
+
+    @Override
+    boolean skipToEnd() throws IOException, ParseException {
+        if (finished) {
+            return true;
+        }
+        if (!started) {
+            return false;
+        }
+        if (nextToken() == ']') {
+            finish();
+            return true;
+        }
+        return false;
+    }
+
+    /* Reads the members of a status object, after its opening brace */
+    private void readStatus() throws IOException, ParseException {
+        int c = nextToken();
+        if (c == '}') {
+            return;
+        }
+        for (;;) {
+            int field = readFieldName(c);
+            c = nextToken();
+            switch (field) {
+                case FIELD_ID:
+                    id = readId(c);
+                    break;
+                case FIELD_CREATED_AT:
+                    if (c == '"') {
+                        int length = readString();
+                        createdAt = CreatedAtDecoder.decode(chars, 0, length);
+                    } else {
+                        skipValue(c);
+                    }
+                    break;
+                case FIELD_TEXT:
+                    if (c == '"') {
+                        //The string is made only when asked for
+                        int length = readString();
+                        setText(length);
+                    } else {
+                        skipValue(c);
+                    }
+                    break;
+                case FIELD_USER:
+                    if (c == '{') {
+                        readUser();
+                    } else {
+                        skipValue(c);
+                    }
+                    break;
+                case FIELD_GEO:
+                    //An object, or null for a status without a location
+                    if (c == '{') {
+                        readGeo();
+                    } else {
+                        skipValue(c);
+                    }
+                    break;
+                default:
+                    skipValue(c);
+                    break;
+            }
+            c = nextToken();
+            if (c == '}') {
+                return;
+            }
+            expect(c, ',');
+            c = nextToken();
+        }
+    }
+
+    /* Reads the members of a user object, after its opening brace */
+    private void readUser() throws IOException, ParseException {
+        int c = nextToken();
+        if (c == '}') {
+            return;
+        }
+        for (;;) {
+            int field = readFieldName(c);
+            c = nextToken();
+            if (field == FIELD_NAME && c == '"') {
+                user = share(readString());
+            } else {
+                skipValue(c);
+            }
+            c = nextToken();
+            if (c == '}') {
+                return;
+            }
+            expect(c, ',');
+            c = nextToken();
+        }
+    }
+
+    /* Reads the members of a geo object, after its opening brace */
+    private void readGeo() throws IOException, ParseException {
+        int c = nextToken();
+        if (c == '}') {
+            return;
+        }
+        for (;;) {
+            int field = readFieldName(c);
+            c = nextToken();
+            if (field == FIELD_COORDINATES && c == '[') {
+                readCoordinates();
+            } else {
+                skipValue(c);
+            }
+            c = nextToken();
+            if (c == '}') {
+                return;
+            }
+            expect(c, ',');
+            c = nextToken();
+        }
+    }
+
+    /**
+     * Read a {@code [latitude, longitude]} pair after its opening bracket.
+     * Anything else in the array leaves the status without a location.
+     */
+    private void readCoordinates() throws IOException, ParseException {
+        int c = nextToken();
+        if (!isNumberStart(c)) {
+            if (c != ']') {
+                skipValue(c);
+                skipContainer();
+            }
+            return;
+        }
+        double lat = readNumber(c);
+        c = nextToken();
+        if (c != ',') {
+            expect(c, ']');
+            return;
+        }
+        c = nextToken();
+        if (!isNumberStart(c)) {
+            skipValue(c);
+            skipContainer();
+            return;
+        }
+        double lon = readNumber(c);
+        c = nextToken();
+        if (c != ']') {
+            //An altitude or more; not kept
+            expect(c, ',');
+            skipContainer();
+        }
+        setLocation(lat, lon);
+    }
+
+    private static boolean isNumberStart(int c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Read a number into a double.
+     *
+     * @param c the first character of the number
+     */
+    private double readNumber(int c) throws IOException, ParseException {
+        int length = 0;
+        chars[length++] = (char) c;
+        int next;
+        while (((next = peek()) >= '0' && next <= '9')
+                || next == '.' || next == '-' || next == '+' || next == 'e' || next == 'E') {
+            ensureCapacity(length + 1);
+            chars[length++] = (char) next;
+            pos++;
+        }
+        try {
+            return Double.parseDouble(new String(chars, 0, length));
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+    }
+
+    /**
+     * Read a member name and the colon after it.
+     *
+     * @param c the first character of the member, which must be a quote
+     * @return the field code of the name
+     */
+    private int readFieldName(int c) throws IOException, ParseException {
+        expect(c, '"');
+        int length = readString();
+        expect(nextToken(), ':');
+        return getFieldCode(chars, length);
+    }
+
+    /**
+     * Map a member name to its code, checking the length before the
+     * characters so most names are rejected without a full comparison.
+     */
+    private static int getFieldCode(char[] name, int length) {
+        switch (length) {
+            case 2:
+                return matches(name, "id") ? FIELD_ID : FIELD_OTHER;
+            case 3:
+                return matches(name, "geo") ? FIELD_GEO : FIELD_OTHER;
+            case 4:
+                if (matches(name, "text")) {
+                    return FIELD_TEXT;
+                }
+                if (matches(name, "user")) {
+                    return FIELD_USER;
+                }
+                return matches(name, "name") ? FIELD_NAME : FIELD_OTHER;
+            case 10:
+                return matches(name, "created_at") ? FIELD_CREATED_AT : FIELD_OTHER;
+            case 11:
+                return matches(name, "coordinates") ? FIELD_COORDINATES : FIELD_OTHER;
+            default:
+                return FIELD_OTHER;
+        }
+    }
+
+    private static boolean matches(char[] name, String expected) {
+        for (int i = expected.length() - 1; i >= 0; i--) {
+            if (name[i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Keeps the first length decoded characters as the message */
+    private void setText(int length) {
+        if (text.chars.length < length) {
+            text.chars = new char[Math.max(length, text.chars.length * 2)];
+        }
+        System.arraycopy(chars, 0, text.chars, 0, length);
+        text.length = length;
+    }
+
+    /**
+     * Reusable character sequence over a message buffer; a length of -1
+     * means there is no message.
+     */
+    private static final class TextView implements CharSequence {
+        char[] chars = new char[256];
+        int length = -1;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+
+    /**
+     * Read an id given as a number or a quoted number. Anything else,
+     * such as null, leaves the id unset.
+     */
+    private long readId(int c) throws IOException, ParseException {
+        if (c == '"') {
+            int length = readString();
+            return parseLong(chars, 0, length);
+        }
+        boolean negative = c == '-';
+        if (!negative && (c < '0' || c > '9')) {
+            skipValue(c);
+            return -1;
+        }
+        long value = negative ? 0 : c - '0';
+        int digits = negative ? 0 : 1;
+        int next;
+        while ((next = peek()) >= '0' && next <= '9') {
+            value = value * 10 + (next - '0');
+            digits++;
+            pos++;
+        }
+        if (digits == 0 || digits > 19 || value < 0
+                || next == '.' || next == 'e' || next == 'E') {
+            throw error("Invalid id");
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decode a string into {@link #chars}, after its opening quote. The
+     * buffer may be replaced, so read the field only after this returns.
+     *
+     * @return the number of characters decoded
+     */
+    private int readString() throws IOException, ParseException {
+        int length = 0;
+        for (;;) {
+            if (pos == limit && !fill()) {
+                throw error("Unterminated string");
+            }
+            //Room for the rest of the buffer, and a surrogate pair
+            ensureCapacity(length + limit - pos + 2);
+
+            //Copy a run of plain ASCII without further checks
+            byte[] bytes = buffer;
+            char[] out = chars;
+            int p = pos;
+            int end = limit;
+            while (p < end) {
+                byte b = bytes[p];
+                if (b == '"' || b == '\\' || b < 0) {
+                    break;
+                }
+                out[length++] = (char) b;
+                p++;
+            }
+            pos = p;
+            if (p == end) {
+                continue;
+            }
+
+            int b = bytes[pos++] & 0xff;
+            if (b == '"') {
+                return length;
+            } else if (b == '\\') {
+                out[length++] = readEscape();
+            } else {
+                length = readMultiByte(b, length);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException, ParseException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                //Surrogate pairs arrive as two escapes and combine by themselves
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw error("Invalid escape");
+        }
+    }
+
+    /**
+     * Decode a UTF-8 sequence into {@link #chars}.
+     *
+     * @param lead first byte of the sequence
+     * @param length characters decoded so far
+     * @return characters decoded including the sequence
+     */
+    private int readMultiByte(int lead, int length) throws IOException, ParseException {
+        int code;
+        int extra;
+        if (lead >= 0xf0) {
+            code = lead & 0x07;
+            extra = 3;
+        } else if (lead >= 0xe0) {
+            code = lead & 0x0f;
+            extra = 2;
+        } else if (lead >= 0xc0) {
+            code = lead & 0x1f;
+            extra = 1;
+        } else {
+            throw error("Invalid UTF-8");
+        }
+        while (extra-- > 0) {
+            int b = read();
+            if ((b & 0xc0) != 0x80) {
+                throw error("Invalid UTF-8");
+            }
+            code = (code << 6) | (b & 0x3f);
+        }
+        if (code >= 0x10000) {
+            chars[length++] = (char) ((code >>> 10) + 0xd7c0);
+            chars[length++] = (char) ((code & 0x3ff) + 0xdc00);
+        } else {
+            chars[length++] = (char) code;
+        }
+        return length;
+    }
+
+    /**
+     * Return a string for the first {@code length} decoded characters,
+     * reusing the one made for the same name recently.
+     */
+    private String share(int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String name = names[slot];
+        if (name != null && name.length() == length && matches(chars, name)) {
+            return name;
+        }
+        name = new String(chars, 0, length);
+        names[slot] = name;
+        return name;
+    }
+
+    /**
+     * Skip a value of any type.
+     *
+     * @param c the first character of the value
+     */
+    private void skipValue(int c) throws IOException, ParseException {
+        switch (c) {
+            case '"':
+                skipString();
+                break;
+            case '{':
+            case '[':
+                skipContainer();
+                break;
+            case -1:
+            case ',':
+            case ':':
+            case '}':
+            case ']':
+                throw error("Expected a value");
+            default:
+                //A number or literal; stop before the delimiter
+                int next;
+                while ((next = peek()) > ' ' && next != ',' && next != '}' && next != ']') {
+                    pos++;
+                }
+                break;
+        }
+    }
+
+    private void skipString() throws IOException, ParseException {
+        //Quotes and backslashes never occur inside a UTF-8 sequence
+        for (;;) {
+            if (pos == limit && !fill()) {
+                throw error("Unterminated string");
+            }
+            byte b = buffer[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\' && read() == -1) {
+                throw error("Unterminated string");
+            }
+        }
+    }
+
+    private void skipContainer() throws IOException, ParseException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (read()) {
+                case -1:
+                    throw error("Unexpected end of timeline");
+                case '"':
+                    skipString();
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+            }
+        }
+    }
+
+    /* Reads to the end of the stream after the closing bracket */
+    private void finish() throws IOException, ParseException {
+        finished = true;
+        if (nextToken() != -1) {
+            throw error("Unexpected data after timeline");
+        }
+    }
+
+    private int skipByteOrderMark(int c) throws IOException {
+        if (c == 0xef && read() == 0xbb && read() == 0xbf) {
+            return nextToken();
+        }
+        return c;
+    }
+
+    private void expect(int c, char expected) throws ParseException {
+        if (c != expected) {
+            throw error((c == -1) ? "Unexpected end of timeline"
+                    : "Expected '" + expected + "'");
+        }
+    }
+
+    private ParseException error(String message) {
+        return new ParseException(message, consumed + pos);
+    }
+
+    /** @return the next byte that is not whitespace, or -1 at the end */
+    private int nextToken() throws IOException {
+        for (;;) {
+            int c = read();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power-of-two buckets. Bucket {@code i}
+ * counts durations in {@code [2^(i-1), 2^i)} microseconds, which keeps
+ * percentiles within a factor of two using a fixed 40 counters.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * @param nanos duration to record
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+    }
+
+    /** @return number of recorded durations */
+    public long getCount() { return count.get(); }
+
+    /** @return mean recorded duration in nanoseconds, or 0 */
+    public long getMeanNanos() {
+        long n = count.get();
+        return (n == 0) ? 0 : totalNanos.get() / n;
+    }
+
+    /**
+     * @param percentile value between 0 and 100
+     * @return upper bound of the bucket holding the percentile, in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return (1L << i) * 1000;
+            }
+        }
+        return (1L << (BUCKETS - 1)) * 1000;
+    }
+}
@@ -0,0 +1,365 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only status log in a memory-mapped file.
+ *
+ * <p>Each status is written once as a length-prefixed record; statuses
+ * already in the log are skipped. Two in-memory indexes map status ids and
+ * creation times to record offsets. Opening a store only reads the fixed
+ * record headers to rebuild the indexes, and message text is decoded when
+ * a status is read. When the log reaches its size cap it is compacted,
+ * keeping the newest statuses.
+ */
+public final class LocalTimelineStore implements Closeable {
+
+    private static final int MAGIC = 0x59534C31; // "YSL1"
+    private static final int HEADER_SIZE = 8;
+    /* length, id, createdAt */
+    private static final int RECORD_HEADER_SIZE = 4 + 8 + 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final int maxBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SortedIndex idIndex = new SortedIndex(1024);
+    private final SortedIndex timeIndex = new SortedIndex(1024);
+
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+
+    /**
+     * Open or create a store.
+     *
+     * @param file log file
+     * @param maxBytes size cap for the log file
+     * @throws IOException
+     */
+    public static LocalTimelineStore open(File file, int maxBytes) throws IOException {
+        if (maxBytes < 1024) {
+            throw new IllegalArgumentException("maxBytes must be at least 1024");
+        }
+        LocalTimelineStore store = new LocalTimelineStore(file, maxBytes);
+        store.map();
+        return store;
+    }
+
+    private LocalTimelineStore(File file, int maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Add a status unless one with the same id is already stored.
+     *
+     * @return true if the status was added
+     * @throws IOException
+     */
+    public boolean append(YambaStatus status) throws IOException {
+        lock.writeLock().lock();
+        try {
+            return appendLocked(status);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add statuses, skipping those already stored.
+     *
+     * @return number of statuses added
+     * @throws IOException
+     */
+    public int append(List<YambaStatus> statuses) throws IOException {
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            for (YambaStatus status : statuses) {
+                if (appendLocked(status)) {
+                    added++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    /**
+     * @return the status with the given id, or null
+     */
+    public YambaStatus get(long id) {
+        lock.readLock().lock();
+        try {
+            int index = idIndex.indexOf(id);
+            return (index < 0) ? null : read(idIndex.valueAt(index));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param count max number of statuses
+     * @return the statuses with the highest ids, newest first
+     */
+    public List<YambaStatus> getNewest(int count) {
+        return getRange(0, 0, count);
+    }
+
+    /**
+     * @param sinceId only statuses with a greater id, or 0
+     * @param maxId only statuses with a lower or equal id, or 0
+     * @param count max number of statuses
+     * @return matching statuses, newest first
+     */
+    public List<YambaStatus> getRange(long sinceId, long maxId, int count) {
+        List<YambaStatus> result = new ArrayList<>(Math.min(Math.max(count, 0), 256));
+        lock.readLock().lock();
+        try {
+            int index = (maxId > 0) ? idIndex.upperBound(maxId) : idIndex.size();
+            while (--index >= 0 && result.size() < count
+                    && idIndex.keyAt(index) > sinceId) {
+                result.add(read(idIndex.valueAt(index)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @param fromMillis earliest creation time, inclusive
+     * @param toMillis latest creation time, inclusive
+     * @param count max number of statuses
+     * @return statuses created in the interval, most recent first
+     */
+    public List<YambaStatus> getBetween(long fromMillis, long toMillis, int count) {
+        List<YambaStatus> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int index = timeIndex.upperBound(toMillis);
+            while (--index >= 0 && result.size() < count
+                    && timeIndex.keyAt(index) >= fromMillis) {
+                result.add(read(timeIndex.valueAt(index)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /** @return number of stored statuses */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the highest stored status id, or 0 if the store is empty */
+    public long getNewestId() {
+        lock.readLock().lock();
+        try {
+            int size = idIndex.size();
+            return (size == 0) ? 0 : idIndex.keyAt(size - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the log keeping only the newest statuses that fit in half of
+     * the size cap.
+     *
+     * @throws IOException
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            compactLocked(maxBytes / 2);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write pending changes through to the file.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (raf != null) {
+                buffer.force();
+                raf.close();
+                raf = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean appendLocked(YambaStatus status) throws IOException {
+        if (idIndex.indexOf(status.getId()) >= 0) {
+            return false;
+        }
+        byte[] user = encode(status.getUser());
+        byte[] message = encode(status.getMessage());
+        int length = RECORD_HEADER_SIZE + 4 + lengthOf(user) + 4 + lengthOf(message);
+        if (HEADER_SIZE + length > maxBytes / 2) {
+            throw new IOException("Status " + status.getId() + " is too large to store");
+        }
+        if (writePosition + length > maxBytes) {
+            compactLocked(maxBytes / 2 - length);
+        }
+
+        int position = writePosition;
+        buffer.putLong(position + 4, status.getId());
+        buffer.putLong(position + 12, status.getCreatedAtMillis());
+        int offset = writeBytes(position + RECORD_HEADER_SIZE, user);
+        writeBytes(offset, message);
+        //Writing the length last commits the record
+        buffer.putInt(position, length);
+
+        writePosition += length;
+        idIndex.add(status.getId(), position);
+        timeIndex.add(status.getCreatedAtMillis(), position);
+        return true;
+    }
+
+    private YambaStatus read(int position) {
+        long id = buffer.getLong(position + 4);
+        long createdAt = buffer.getLong(position + 12);
+        int offset = position + RECORD_HEADER_SIZE;
+        int userLength = buffer.getInt(offset);
+        String user = decode(offset + 4, userLength);
+        offset += 4 + Math.max(userLength, 0);
+        String message = decode(offset + 4, buffer.getInt(offset));
+        return new YambaStatus(id, createdAt, user, message);
+    }
+
+    private void map() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        boolean created = raf.length() == 0;
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, maxBytes);
+        if (created) {
+            buffer.putInt(0, MAGIC);
+        } else if (buffer.getInt(0) != MAGIC) {
+            raf.close();
+            throw new IOException(file + " is not a timeline store");
+        }
+        rebuildIndexes();
+    }
+
+    /* Scan record headers only; strings are left in place */
+    private void rebuildIndexes() {
+        idIndex.clear();
+        timeIndex.clear();
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= maxBytes) {
+            int length = buffer.getInt(position);
+            if (length < RECORD_HEADER_SIZE || position + length > maxBytes) {
+                break;
+            }
+            idIndex.add(buffer.getLong(position + 4), position);
+            timeIndex.add(buffer.getLong(position + 12), position);
+            position += length;
+        }
+        writePosition = position;
+    }
+
+    private void compactLocked(int budget) throws IOException {
+        //Pick the newest records that fit in the budget
+        int first = idIndex.size();
+        int total = HEADER_SIZE;
+        while (first > 0) {
+            int length = buffer.getInt(idIndex.valueAt(first - 1));
+            if (total + length > budget) {
+                break;
+            }
+            total += length;
+            first--;
+        }
+
+        File temp = new File(file.getPath() + ".compact");
+        RandomAccessFile out = new RandomAccessFile(temp, "rw");
+        try {
+            out.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            out.getChannel().write(header);
+            for (int i = first; i < idIndex.size(); i++) {
+                int position = idIndex.valueAt(i);
+                ByteBuffer record = buffer.duplicate();
+                record.position(position);
+                record.limit(position + buffer.getInt(position));
+                out.getChannel().write(record);
+            }
+        } finally {
+            out.close();
+        }
+
+        raf.close();
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            map();
+            throw new IOException("Failed to replace " + file);
+        }
+        map();
+    }
+
+    private int writeBytes(int position, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(position, -1);
+            return position + 4;
+        }
+        buffer.putInt(position, bytes.length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + 4);
+        target.put(bytes);
+        return position + 4 + bytes.length;
+    }
+
+    private String decode(int position, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static byte[] encode(String value) {
+        return (value == null) ? null : value.getBytes(UTF_8);
+    }
+
+    private static int lengthOf(byte[] bytes) {
+        return (bytes == null) ? 0 : bytes.length;
+    }
+}
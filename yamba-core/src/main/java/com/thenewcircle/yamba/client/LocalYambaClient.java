@@ -0,0 +1,132 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client that answers timeline requests from a {@link LocalTimelineStore}.
+ *
+ * <p>Reads never touch the network; call {@link #refresh(int)} to pull new
+ * statuses from the wrapped client into the store. Posts are passed straight
+ * through and show up locally after the next refresh.
+ */
+public final class LocalYambaClient implements CursorYambaClientInterface {
+
+    private final CursorYambaClientInterface client;
+    private final LocalTimelineStore store;
+
+    /* Guarded by this */
+    private TimelineSyncer syncer;
+    private int syncerPageSize;
+    /* Statuses fetched while a gap is still open, stored once it closes */
+    private final List<YambaStatus> held = new ArrayList<>();
+
+    /**
+     * @param client Network client used for posts and refreshes
+     * @param store Local storage for the timeline
+     */
+    public static LocalYambaClient wrap(CursorYambaClientInterface client,
+                                        LocalTimelineStore store) {
+        return new LocalYambaClient(client, store);
+    }
+
+    private LocalYambaClient(CursorYambaClientInterface client, LocalTimelineStore store) {
+        if (client == null || store == null) {
+            throw new IllegalArgumentException("Client and store must not be null");
+        }
+        this.client = client;
+        this.store = store;
+    }
+
+    /**
+     * Fetch statuses newer than the newest stored one and add them to the
+     * store.
+     *
+     * <p>Pages are fetched back with {@code max_id} until every newer
+     * status has been seen, up to {@link TimelineSyncer#DEFAULT_MAX_PAGES}
+     * pages per call. When more are waiting, the statuses fetched so far
+     * are held in memory and stored together once a later refresh closes
+     * the gap, so the store never has holes below its newest status.
+     *
+     * <p>An empty store starts from the newest page; older statuses are not
+     * fetched.
+     *
+     * @param maxPosts statuses requested per page
+     * @return number of statuses added; 0 while a gap is still being filled
+     * @throws YambaClientException
+     */
+    public synchronized int refresh(int maxPosts) throws YambaClientException {
+        if (maxPosts <= 0) {
+            throw new IllegalArgumentException("maxPosts must be positive");
+        }
+        if (syncer == null || (syncerPageSize != maxPosts && !syncer.hasGap())) {
+            //Paging back through the whole history would hold all of it in memory
+            long newestId = store.getNewestId();
+            syncer = new TimelineSyncer(client,
+                    (newestId == 0) ? TimelineSyncer.HEAD : newestId, maxPosts,
+                    TimelineSyncer.DEFAULT_MAX_PAGES);
+            syncerPageSize = maxPosts;
+        }
+        held.addAll(syncer.sync());
+        if (syncer.hasGap()) {
+            return 0;
+        }
+        int added;
+        try {
+            added = store.append(held);
+        } catch (IOException e) {
+            //Kept for the next refresh; statuses already stored are skipped
+            throw new YambaClientIOException("Failed to store timeline", e);
+        }
+        held.clear();
+        return added;
+    }
+
+    /** @return the backing store */
+    public LocalTimelineStore getStore() { return store; }
+
+    @Override
+    public void postStatus(String status) throws YambaClientException {
+        client.postStatus(status);
+    }
+
+    @Override
+    public void postStatus(String status, double latitude, double longitude)
+            throws YambaClientException {
+        client.postStatus(status, latitude, longitude);
+    }
+
+    @Override
+    public List<YambaStatus> getTimeline(int maxPosts) throws YambaClientException {
+        return store.getNewest(maxPosts);
+    }
+
+    @Override
+    public List<YambaStatus> getTimelineSince(long sinceId, int count)
+            throws YambaClientException {
+        return store.getRange(sinceId, 0, count);
+    }
+
+    @Override
+    public List<YambaStatus> getTimelineRange(long sinceId, long maxId, int count)
+            throws YambaClientException {
+        return store.getRange(sinceId, maxId, count);
+    }
+
+    @Override
+    public void fetchTimeline(long sinceId, long maxId, int count,
+                              YambaClient.TimelineProcessor processor)
+            throws YambaClientException {
+        List<YambaStatus> page = store.getRange(sinceId, maxId,
+                (count > 0) ? count : Integer.MAX_VALUE);
+
+        processor.onStartProcessingTimeline();
+        for (int i = 0; i < page.size() && processor.isRunnable(); i++) {
+            YambaStatus status = page.get(i);
+            processor.onTimelineStatus(status.getId(), status.getCreatedAt(),
+                    status.getUser(), status.getMessage());
+        }
+        processor.onEndProcessingTimeline();
+    }
+}
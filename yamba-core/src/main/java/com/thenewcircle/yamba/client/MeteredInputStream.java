@@ -0,0 +1,55 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it and the time spent blocked in reads.
+ */
+final class MeteredInputStream extends FilterInputStream {
+
+    private long bytes;
+    private long nanos;
+
+    MeteredInputStream(InputStream in) {
+        super(in);
+    }
+
+    /** @return bytes read so far */
+    long getBytes() { return bytes; }
+
+    /** @return nanoseconds spent inside read calls */
+    long getNanos() { return nanos; }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = super.read();
+        nanos += System.nanoTime() - start;
+        if (b != -1) {
+            bytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        long start = System.nanoTime();
+        int read = super.read(buffer, offset, count);
+        nanos += System.nanoTime() - start;
+        if (read > 0) {
+            bytes += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long byteCount) throws IOException {
+        long start = System.nanoTime();
+        long skipped = super.skip(byteCount);
+        nanos += System.nanoTime() - start;
+        bytes += skipped;
+        return skipped;
+    }
+}
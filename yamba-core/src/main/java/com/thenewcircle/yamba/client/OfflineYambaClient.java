@@ -0,0 +1,305 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stubbed client implementation for use in hermetic test cases
+ *
+ * <p>Statuses are kept in a fixed-size ring; once it is full each post
+ * replaces the oldest status. Posts claim an id and write their slot
+ * without locking. Readers only see statuses up to a watermark below
+ * which every slot is written, so a timeline never has a gap that a later
+ * since_id request would skip, and reads never block writers. Latency and
+ * failures can be injected and the ring preloaded with synthetic
+ * statuses through {@link Builder}.
+ */
+public class OfflineYambaClient implements CursorYambaClientInterface {
+    /**
+     * Default number of statuses retained
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private final AtomicReferenceArray<YambaStatus> slots;
+    private final int mask;
+    private final long maxAgeMillis;
+    private final int minLatencyMillis;
+    private final int maxLatencyMillis;
+    private final double failureRate;
+    /* Only consulted when latency or failures are injected */
+    private final Random random = new Random();
+
+    /* Last id handed out to a post */
+    private final AtomicLong claimed = new AtomicLong();
+    /* Every id up to this one has been written to its slot */
+    private final AtomicLong published = new AtomicLong();
+
+    public static CursorYambaClientInterface newClient() {
+        return new Builder().build();
+    }
+
+    /**
+     * Return an asynchronous client backed by a new offline client.
+     */
+    public static AsyncYambaClientInterface newAsyncClient() {
+        return AsyncYambaClient.wrap(newClient());
+    }
+
+    private OfflineYambaClient(Builder builder) {
+        int capacity = Integer.highestOneBit(builder.capacity);
+        if (capacity < builder.capacity) {
+            capacity <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.maxAgeMillis = builder.maxAgeMillis;
+        this.minLatencyMillis = builder.minLatencyMillis;
+        this.maxLatencyMillis = builder.maxLatencyMillis;
+        this.failureRate = builder.failureRate;
+
+        if (builder.generator != null) {
+            preload(builder.generator, builder.syntheticCount);
+        } else {
+            //Pre-load dummy entries
+            append("NewCircle Android");
+            append("Yamba Test Message");
+        }
+    }
+
+    /* Synthetic statuses end at the current time, spaced by the generator interval */
+    private void preload(StatusGenerator generator, int count) {
+        long interval = generator.getIntervalMillis();
+        long createdAt = System.currentTimeMillis() - (count - 1) * interval;
+        for (int i = 0; i < count; i++) {
+            long id = claimed.incrementAndGet();
+            slots.set((int) (id & mask), generator.next(id, createdAt));
+            createdAt += interval;
+        }
+        published.set(claimed.get());
+    }
+
+    /** @return number of statuses a timeline can currently return */
+    public int getSize() {
+        return (int) Math.min(published.get(), slots.length());
+    }
+
+    /* All posts are added to the ring */
+
+    @Override
+    public void postStatus(String status) throws YambaClientException {
+        postStatus(status, Double.NaN, Double.NaN);
+    }
+
+    @Override
+    public void postStatus(String status, double latitude, double longitude)
+            throws YambaClientException {
+        simulateNetwork();
+        //Kept only when in range, as the server would
+        if (-90.00 <= latitude && latitude <= 90.00
+                && -180.00 <= longitude && longitude <= 180.00) {
+            append(status, latitude, longitude);
+        } else {
+            append(status);
+        }
+    }
+
+    private void append(String status) {
+        append(status, Double.NaN, Double.NaN);
+    }
+
+    private void append(String status, double latitude, double longitude) {
+        long id = claimed.incrementAndGet();
+        slots.set((int) (id & mask), new YambaStatus(id,
+                System.currentTimeMillis(), "Offline Test User", status, latitude, longitude));
+
+        publish();
+    }
+
+    /*
+     * Move the watermark over every slot that has been written. A post
+     * that is still writing holds it back; whichever post finishes last
+     * carries it forward, so no thread ever waits for another.
+     */
+    private void publish() {
+        for (;;) {
+            long last = published.get();
+            YambaStatus next = slots.get((int) ((last + 1) & mask));
+            //An older id means the slot has not been written yet
+            if (next == null || next.getId() <= last) {
+                return;
+            }
+            published.compareAndSet(last, last + 1);
+        }
+    }
+
+    /* Timeline requests simply return the last N items */
+
+    @Override
+    public List<YambaStatus> getTimeline(int maxPosts)
+            throws YambaClientException {
+        simulateNetwork();
+        return snapshot(0, 0, maxPosts);
+    }
+
+    @Override
+    public List<YambaStatus> getTimelineSince(long sinceId, int count)
+            throws YambaClientException {
+        return getTimelineRange(sinceId, 0, count);
+    }
+
+    @Override
+    public List<YambaStatus> getTimelineRange(long sinceId, long maxId, int count)
+            throws YambaClientException {
+        simulateNetwork();
+        return snapshot(sinceId, maxId, count);
+    }
+
+    @Override
+    public void fetchTimeline(long sinceId, long maxId, int count,
+                              YambaClient.TimelineProcessor processor)
+            throws YambaClientException {
+        List<YambaStatus> page = getTimelineRange(sinceId, maxId,
+                (count > 0) ? count : Integer.MAX_VALUE);
+
+        processor.onStartProcessingTimeline();
+        for (int i = 0; i < page.size() && processor.isRunnable(); i++) {
+            YambaStatus status = page.get(i);
+            processor.onTimelineStatus(status.getId(), status.getCreatedAt(),
+                    status.getUser(), status.getMessage());
+        }
+        processor.onEndProcessingTimeline();
+    }
+
+    /**
+     * Walk back from the newest published status, as the server would,
+     * and return what was found newest first.
+     */
+    private List<YambaStatus> snapshot(long sinceId, long maxId, int count) {
+        long head = published.get();
+        long newest = (maxId > 0) ? Math.min(maxId, head) : head;
+        long oldest = Math.max(sinceId, head - slots.length()) + 1;
+        int size = (int) Math.max(0, Math.min(count, newest - oldest + 1));
+        long cutoff = (maxAgeMillis > 0)
+                ? System.currentTimeMillis() - maxAgeMillis : Long.MIN_VALUE;
+
+        YambaStatus[] found = new YambaStatus[size];
+        int n = 0;
+        for (long id = newest; n < size; id--) {
+            YambaStatus status = slots.get((int) (id & mask));
+            //Stop at slots a newer post has already taken over
+            if (status == null || status.getId() != id
+                    || status.getCreatedAtMillis() < cutoff) {
+                break;
+            }
+            found[n++] = status;
+        }
+
+        return new ArrayList<>(Arrays.asList(found).subList(0, n));
+    }
+
+    private void simulateNetwork() throws YambaClientException {
+        if (maxLatencyMillis > 0) {
+            int latency = minLatencyMillis;
+            if (maxLatencyMillis > minLatencyMillis) {
+                latency += random.nextInt(maxLatencyMillis - minLatencyMillis + 1);
+            }
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new YambaClientIOException("Interrupted", e);
+            }
+        }
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            throw new YambaClientIOException("Injected failure");
+        }
+    }
+
+    /**
+     * Builder for {@link OfflineYambaClient}
+     */
+    public static final class Builder {
+        private int capacity = DEFAULT_CAPACITY;
+        private long maxAgeMillis;
+        private int minLatencyMillis;
+        private int maxLatencyMillis;
+        private double failureRate;
+        private StatusGenerator generator;
+        private int syntheticCount;
+
+        public Builder() {
+        }
+
+        /**
+         * @param capacity statuses retained, rounded up to a power of two
+         */
+        public Builder setCapacity(int capacity) {
+            if (capacity <= 0 || capacity > (1 << 30)) {
+                throw new IllegalArgumentException("Invalid capacity");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param maxAgeMillis statuses older than this are no longer
+         *                     returned; 0, the default, keeps them
+         */
+        public Builder setMaxAge(long maxAgeMillis) {
+            if (maxAgeMillis < 0) {
+                throw new IllegalArgumentException("maxAgeMillis < 0");
+            }
+            this.maxAgeMillis = maxAgeMillis;
+            return this;
+        }
+
+        /**
+         * @param minMillis least time each call takes
+         * @param maxMillis most time each call takes
+         */
+        public Builder setLatency(int minMillis, int maxMillis) {
+            if (minMillis < 0 || maxMillis < minMillis) {
+                throw new IllegalArgumentException("Invalid latency range");
+            }
+            this.minLatencyMillis = minMillis;
+            this.maxLatencyMillis = maxMillis;
+            return this;
+        }
+
+        /**
+         * @param rate fraction of calls that throw
+         *             {@link YambaClientIOException}
+         */
+        public Builder setFailureRate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Rate must be between 0 and 1");
+            }
+            this.failureRate = rate;
+            return this;
+        }
+
+        /**
+         * Fill the ring with synthetic statuses instead of the two default
+         * entries.
+         *
+         * @param count number of statuses to generate
+         * @param generator source of the statuses
+         */
+        public Builder setSyntheticStatuses(int count, StatusGenerator generator) {
+            if (count < 0 || generator == null) {
+                throw new IllegalArgumentException("Invalid synthetic statuses");
+            }
+            this.syntheticCount = count;
+            this.generator = generator;
+            return this;
+        }
+
+        public OfflineYambaClient build() {
+            return new OfflineYambaClient(this);
+        }
+    }
+}
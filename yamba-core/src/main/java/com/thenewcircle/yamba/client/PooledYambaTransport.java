@@ -0,0 +1,243 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default transport that keeps HTTP/1.1 connections alive between requests.
+ *
+ * <p>{@link HttpURLConnection} already pools sockets per host, but only when
+ * the response body is read to the end and the stream is closed; calling
+ * {@link HttpURLConnection#disconnect()} throws the socket away. This
+ * transport releases connections the pool-friendly way and keeps a bounded
+ * record of the connections it released per host. The record follows the
+ * same size and idle-time limits that are handed to the platform pool, and
+ * {@link #getEstimatedHitCount()} and {@link #getEstimatedMissCount()} are
+ * derived from it. They are estimates: {@link HttpURLConnection} does not
+ * tell whether a socket was actually reused, and the platform may close an
+ * idle socket early.
+ *
+ * <p>The platform pool is configured through the process-wide
+ * {@code http.keepAlive}, {@code http.maxConnections} and
+ * {@code http.keepAliveDuration} system properties. The first transport
+ * created sets those the application has not set itself; later
+ * transports leave them alone, so their limits only apply to the record.
+ */
+public class PooledYambaTransport implements YambaTransport {
+    /**
+     * Default number of idle connections kept per host
+     */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * Default time an idle connection stays in the pool
+     */
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 5 * 60 * 1000;
+
+    /* Responses larger than this are not worth draining for reuse */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private static PooledYambaTransport sDefaultInstance;
+    private static boolean sPlatformConfigured;
+
+    private final int maxIdleConnections;
+    private final long keepAliveMillis;
+    private final ConcurrentMap<String, ArrayDeque<Long>> idleConnections =
+            new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Return the transport shared by all clients that were not given one.
+     */
+    public static synchronized PooledYambaTransport getDefault() {
+        if (sDefaultInstance == null) {
+            sDefaultInstance = new PooledYambaTransport(
+                    DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_MILLIS);
+        }
+        return sDefaultInstance;
+    }
+
+    /**
+     * Create a transport with custom pool limits. The platform connection
+     * pool is process wide and reads its limits once; only the first
+     * transport created hands them over, and only for properties the
+     * application has not set. Create it before the first request is made.
+     *
+     * @param maxIdleConnections idle connections kept per host
+     * @param keepAliveMillis time after which an idle connection is evicted
+     */
+    public PooledYambaTransport(int maxIdleConnections, long keepAliveMillis) {
+        if (maxIdleConnections < 0) {
+            throw new IllegalArgumentException("maxIdleConnections < 0");
+        }
+        if (keepAliveMillis <= 0) {
+            throw new IllegalArgumentException("keepAliveMillis <= 0");
+        }
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveMillis = keepAliveMillis;
+        configurePlatformPool(maxIdleConnections, keepAliveMillis);
+    }
+
+    private static synchronized void configurePlatformPool(int maxIdleConnections,
+                                                           long keepAliveMillis) {
+        if (sPlatformConfigured) {
+            return;
+        }
+        sPlatformConfigured = true;
+        setDefaultProperty("http.keepAlive", String.valueOf(maxIdleConnections > 0));
+        setDefaultProperty("http.maxConnections", String.valueOf(maxIdleConnections));
+        setDefaultProperty("http.keepAliveDuration", String.valueOf(keepAliveMillis));
+    }
+
+    /* Leaves settings made by the application untouched */
+    private static void setDefaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    @Override
+    public HttpURLConnection openConnection(URL endpoint) throws IOException {
+        ArrayDeque<Long> idle = getIdleConnections(endpoint);
+        boolean hit;
+        synchronized (idle) {
+            evictIdleConnections(idle, System.currentTimeMillis());
+            hit = idle.pollLast() != null;
+        }
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+
+        return (HttpURLConnection) endpoint.openConnection();
+    }
+
+    @Override
+    public void releaseConnection(HttpURLConnection connection, boolean reusable) {
+        if (!reusable || maxIdleConnections == 0 || !drain(connection)) {
+            connection.disconnect();
+            return;
+        }
+
+        ArrayDeque<Long> idle = getIdleConnections(connection.getURL());
+        synchronized (idle) {
+            if (idle.size() < maxIdleConnections) {
+                idle.addLast(System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Forget every idle connection that has outlived the keep-alive time.
+     */
+    public void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (ArrayDeque<Long> idle : idleConnections.values()) {
+            synchronized (idle) {
+                evictIdleConnections(idle, now);
+            }
+        }
+    }
+
+    /**
+     * @return number of requests made while a released connection to the
+     * host was recorded as idle; an estimate of how many reused a socket
+     */
+    public long getEstimatedHitCount() { return hits.get(); }
+
+    /**
+     * @return number of requests made with no released connection to the
+     * host recorded; an estimate of how many opened a new socket
+     */
+    public long getEstimatedMissCount() { return misses.get(); }
+
+    /**
+     * @return number of released connections recorded as idle; the
+     * platform may already have closed some of them
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (ArrayDeque<Long> idle : idleConnections.values()) {
+            synchronized (idle) {
+                count += idle.size();
+            }
+        }
+        return count;
+    }
+
+    private void evictIdleConnections(ArrayDeque<Long> idle, long now) {
+        Long releasedAt;
+        while ((releasedAt = idle.peekFirst()) != null
+                && now - releasedAt >= keepAliveMillis) {
+            idle.pollFirst();
+        }
+    }
+
+    private ArrayDeque<Long> getIdleConnections(URL endpoint) {
+        String key = getHostKey(endpoint);
+        ArrayDeque<Long> idle = idleConnections.get(key);
+        if (idle == null) {
+            ArrayDeque<Long> created = new ArrayDeque<>(maxIdleConnections);
+            idle = idleConnections.putIfAbsent(key, created);
+            if (idle == null) {
+                idle = created;
+            }
+        }
+        return idle;
+    }
+
+    private static String getHostKey(URL endpoint) {
+        int port = endpoint.getPort();
+        if (port == -1) {
+            port = endpoint.getDefaultPort();
+        }
+        return endpoint.getProtocol() + "://" + endpoint.getHost() + ":" + port;
+    }
+
+    /**
+     * Read the rest of the response so the socket goes back to the
+     * platform pool when the stream is closed.
+     *
+     * @return true if the response was fully consumed
+     */
+    private static boolean drain(HttpURLConnection connection) {
+        InputStream in = null;
+        try {
+            in = connection.getResponseCode() < 400
+                    ? connection.getInputStream()
+                    : connection.getErrorStream();
+            if (in == null) {
+                return true;
+            }
+            byte[] buffer = new byte[1024];
+            int total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > MAX_DRAIN_BYTES) {
+                    return false;
+                }
+            }
+            in.close();
+            in = null;
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
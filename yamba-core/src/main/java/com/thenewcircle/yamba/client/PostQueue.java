@@ -0,0 +1,420 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Durable queue of outbound status posts.
+ *
+ * <p>{@link #enqueue} records the post in a journal file and returns at
+ * once; a fixed number of sender threads deliver queued posts through the
+ * wrapped client. Timeouts and other I/O failures are retried with jittered
+ * exponential backoff until they succeed, while an authorization failure or
+ * any other error completes the post's future with that exception. Posts
+ * still in the journal when the queue is reopened are sent again.
+ *
+ * <p>With more than one sender, posts may be delivered out of order.
+ */
+public final class PostQueue implements Closeable {
+    /**
+     * Default number of posts in flight at once
+     */
+    public static final int DEFAULT_CONCURRENCY = 2;
+
+    /* Posts are never dropped for transient failures */
+    private static final RetryPolicy RETRY_POLICY =
+            new RetryPolicy(Integer.MAX_VALUE, 1000, 5 * 60 * 1000);
+    /* Rewrite the journal once it is this large and mostly finished posts */
+    private static final long COMPACT_THRESHOLD_BYTES = 64 * 1024;
+
+    private static final byte RECORD_POST = 1;
+    private static final byte RECORD_DONE = 2;
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final File journalFile;
+    private final YambaClientInterface client;
+    private final ScheduledThreadPoolExecutor executor;
+    private final ConcurrentMap<Long, PendingPost> pending = new ConcurrentHashMap<>();
+
+    /* Guarded by this */
+    private FileOutputStream journalOut;
+    private DataOutputStream journal;
+    private long journalBytes;
+    /* Bytes of the records of pending posts, the size of a rewritten journal */
+    private long liveBytes;
+    private long nextSequence = 1;
+    private boolean closed;
+    /* Each record is encoded here first, so a failure leaves no partial record */
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+
+    /**
+     * Handle for a queued post
+     */
+    private static final class PendingPost extends FutureTask<Void> {
+        final long sequence;
+        final String status;
+        final double latitude;
+        final double longitude;
+        int attempts;
+        /* Guarded by the queue */
+        int recordSize;
+
+        PendingPost(long sequence, String status, double latitude, double longitude) {
+            //Never run; completed by the queue
+            super(NO_OP, null);
+            this.sequence = sequence;
+            this.status = status;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        void succeed() {
+            set(null);
+        }
+
+        void fail(YambaClientException e) {
+            setException(e);
+        }
+    }
+
+    /**
+     * Open a queue, resending any posts left in the journal.
+     *
+     * @param journalFile file recording pending posts
+     * @param client client used to deliver posts
+     * @param concurrency number of posts in flight at once
+     * @throws IOException if the journal cannot be read or written
+     */
+    public static PostQueue open(File journalFile, YambaClientInterface client,
+                                 int concurrency) throws IOException {
+        if (client == null) {
+            throw new IllegalArgumentException("Client must not be null");
+        }
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        PostQueue queue = new PostQueue(journalFile, client, concurrency);
+        queue.recover();
+        return queue;
+    }
+
+    private PostQueue(File journalFile, YambaClientInterface client, int concurrency) {
+        this.journalFile = journalFile;
+        this.client = client;
+
+        final AtomicInteger count = new AtomicInteger(1);
+        this.executor = new ScheduledThreadPoolExecutor(concurrency, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PostQueue #" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queue a status without location.
+     *
+     * @param status
+     * @return a future that completes once the status is posted
+     * @throws YambaClientIOException if the post could not be journaled
+     */
+    public Future<Void> enqueue(String status) throws YambaClientIOException {
+        return enqueue(status, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Queue a status at location.
+     *
+     * @param status
+     * @param latitude
+     * @param longitude
+     * @return a future that completes once the status is posted
+     * @throws YambaClientIOException if the post could not be journaled
+     * @throws IllegalArgumentException if the status is null or longer than
+     * the journal can record
+     */
+    public Future<Void> enqueue(String status, double latitude, double longitude)
+            throws YambaClientIOException {
+        if (status == null) {
+            throw new IllegalArgumentException("Status must not be null");
+        }
+        PendingPost post;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Queue is closed");
+            }
+            post = new PendingPost(nextSequence, status, latitude, longitude);
+            try {
+                journalBytes += writePost(post, journal);
+                journal.flush();
+            } catch (UTFDataFormatException e) {
+                throw new IllegalArgumentException("Status too long", e);
+            } catch (IOException e) {
+                throw new YambaClientIOException("Failed to journal post", e);
+            }
+            nextSequence++;
+            pending.put(post.sequence, post);
+            liveBytes += post.recordSize;
+        }
+        try {
+            executor.execute(new Send(post));
+        } catch (RejectedExecutionException e) {
+            //Closed concurrently; the post stays in the journal
+        }
+        return post;
+    }
+
+    /** @return number of posts not yet delivered or failed */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Force the journal to the storage device. {@link #enqueue} only hands
+     * the journal to the operating system, which is enough to survive the
+     * process being killed but not a power loss.
+     *
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        if (journal != null) {
+            journal.flush();
+            journalOut.getFD().sync();
+        }
+    }
+
+    /**
+     * Stop sending. Undelivered posts stay in the journal for the next
+     * {@link #open}; their futures fail with a {@link YambaClientException}
+     * so no caller waits on them forever.
+     */
+    @Override
+    public void close() throws IOException {
+        List<PendingPost> undelivered;
+        synchronized (this) {
+            closed = true;
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            undelivered = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        executor.shutdownNow();
+        YambaClientException e = new YambaClientException(
+                "Queue closed before the post was sent; it is kept in the journal");
+        for (PendingPost post : undelivered) {
+            post.fail(e);
+        }
+    }
+
+    private final class Send implements Runnable {
+        private final PendingPost post;
+
+        Send(PendingPost post) {
+            this.post = post;
+        }
+
+        @Override
+        public void run() {
+            if (post.isCancelled()) {
+                finish(post);
+                return;
+            }
+            try {
+                post.attempts++;
+                client.postStatus(post.status, post.latitude, post.longitude);
+                finish(post);
+                post.succeed();
+            } catch (YambaClientUnauthorizedException e) {
+                finish(post);
+                post.fail(e);
+            } catch (YambaClientException e) {
+                if (RETRY_POLICY.shouldRetry(post.attempts, e)
+                        || e instanceof YambaClientCircuitOpenException) {
+                    retry(post);
+                } else {
+                    finish(post);
+                    post.fail(e);
+                }
+            } catch (RuntimeException e) {
+                //A faulty client must not leave the post's future pending forever
+                finish(post);
+                post.fail(new YambaClientException("Unexpected error in post", e));
+            }
+        }
+    }
+
+    private void retry(PendingPost post) {
+        long delay = RETRY_POLICY.getDelayMillis(post.attempts);
+        try {
+            executor.schedule(new Send(post), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            //Closed; the post stays in the journal
+        }
+    }
+
+    private synchronized void finish(PendingPost post) {
+        if (pending.remove(post.sequence) != null) {
+            liveBytes -= post.recordSize;
+        }
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.writeByte(RECORD_DONE);
+            journal.writeLong(post.sequence);
+            journal.flush();
+            journalBytes += 9;
+            //Posts may always be pending under steady load, so do not wait for none
+            if (journalBytes >= COMPACT_THRESHOLD_BYTES && journalBytes > 2 * liveBytes) {
+                rewriteJournal();
+            }
+        } catch (IOException e) {
+            //The post will be sent again after a restart; nothing else to do
+        }
+    }
+
+    private void recover() throws IOException {
+        List<PendingPost> recovered = readJournal();
+        synchronized (this) {
+            for (PendingPost post : recovered) {
+                pending.put(post.sequence, post);
+                nextSequence = Math.max(nextSequence, post.sequence + 1);
+            }
+            rewriteJournal();
+        }
+        for (PendingPost post : recovered) {
+            executor.execute(new Send(post));
+        }
+    }
+
+    private List<PendingPost> readJournal() throws IOException {
+        List<PendingPost> posts = new ArrayList<>();
+        if (!journalFile.isFile()) {
+            return posts;
+        }
+        Map<Long, PendingPost> open = new HashMap<>();
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(journalFile)));
+        try {
+            while (true) {
+                byte type = in.readByte();
+                long sequence = in.readLong();
+                if (type == RECORD_POST) {
+                    String status = in.readUTF();
+                    double latitude = in.readDouble();
+                    double longitude = in.readDouble();
+                    open.put(sequence, new PendingPost(sequence, status, latitude, longitude));
+                } else if (type == RECORD_DONE) {
+                    open.remove(sequence);
+                } else {
+                    break;
+                }
+            }
+        } catch (EOFException e) {
+            //End of journal, possibly a record cut short by a crash
+        } finally {
+            in.close();
+        }
+        posts.addAll(open.values());
+        Collections.sort(posts, new Comparator<PendingPost>() {
+            @Override
+            public int compare(PendingPost lhs, PendingPost rhs) {
+                return (lhs.sequence < rhs.sequence) ? -1
+                        : (lhs.sequence == rhs.sequence ? 0 : 1);
+            }
+        });
+        return posts;
+    }
+
+    /**
+     * Replace the journal with one holding only pending posts. The current
+     * journal stays in use until the new one has been renamed into place,
+     * so a failure leaves it as it was. Caller holds the lock.
+     */
+    private void rewriteJournal() throws IOException {
+        File temp = new File(journalFile.getPath() + ".tmp");
+        FileOutputStream tempOut = new FileOutputStream(temp);
+        DataOutputStream tempJournal = new DataOutputStream(new BufferedOutputStream(tempOut));
+        long bytes = 0;
+        boolean replaced = false;
+        try {
+            for (PendingPost post : pending.values()) {
+                bytes += writePost(post, tempJournal);
+            }
+            tempJournal.flush();
+            if (!temp.renameTo(journalFile)) {
+                throw new IOException("Failed to replace " + journalFile);
+            }
+            replaced = true;
+        } finally {
+            if (!replaced) {
+                tempJournal.close();
+                temp.delete();
+            }
+        }
+
+        //The new stream keeps appending to the file under its new name
+        DataOutputStream previous = journal;
+        journalOut = tempOut;
+        journal = tempJournal;
+        journalBytes = bytes;
+        liveBytes = bytes;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Write the whole record or, if it cannot be encoded, nothing. Caller
+     * holds the lock.
+     *
+     * @return bytes written
+     */
+    private int writePost(PendingPost post, OutputStream out) throws IOException {
+        recordBytes.reset();
+        record.writeByte(RECORD_POST);
+        record.writeLong(post.sequence);
+        record.writeUTF(post.status);
+        record.writeDouble(post.latitude);
+        record.writeDouble(post.longitude);
+        recordBytes.writeTo(out);
+        post.recordSize = recordBytes.size();
+        return post.recordSize;
+    }
+}
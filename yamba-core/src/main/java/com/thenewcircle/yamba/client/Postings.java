@@ -0,0 +1,76 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of ids, as kept by the in-memory indexes. Ids arrive mostly
+ * in ascending order and leave mostly from the front, so both are usually
+ * O(1).
+ */
+final class Postings {
+    private long[] ids = new long[4];
+    private int start;
+    private int end;
+
+    int size() { return end - start; }
+
+    long get(int index) { return ids[start + index]; }
+
+    void clear() {
+        start = 0;
+        end = 0;
+    }
+
+    boolean contains(long id) {
+        return Arrays.binarySearch(ids, start, end, id) >= 0;
+    }
+
+    /** @return number of ids less than or equal to the given one */
+    int upperBound(long id) {
+        int index = Arrays.binarySearch(ids, start, end, id);
+        return ((index >= 0) ? index + 1 : -index - 1) - start;
+    }
+
+    void add(long id) {
+        if (end == ids.length) {
+            int size = size();
+            long[] target = (size * 2 > ids.length) ? new long[ids.length * 2] : ids;
+            System.arraycopy(ids, start, target, 0, size);
+            ids = target;
+            start = 0;
+            end = size;
+        }
+        if (start == end || ids[end - 1] < id) {
+            ids[end++] = id;
+            return;
+        }
+        int index = Arrays.binarySearch(ids, start, end, id);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        System.arraycopy(ids, index, ids, index + 1, end - index);
+        ids[index] = id;
+        end++;
+    }
+
+    void remove(long id) {
+        if (start < end && ids[start] == id) {
+            start++;
+        } else {
+            int index = Arrays.binarySearch(ids, start, end, id);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(ids, index + 1, ids, index, end - index - 1);
+            end--;
+        }
+        //Give back space once most of the array is unused
+        int size = size();
+        if (ids.length > 16 && size < ids.length / 4) {
+            ids = Arrays.copyOfRange(ids, start, start + Math.max(size * 2, 4));
+            start = 0;
+            end = size;
+        }
+    }
+}
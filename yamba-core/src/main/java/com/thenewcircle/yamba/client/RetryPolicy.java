@@ -0,0 +1,72 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.Random;
+
+/**
+ * How often, and how far apart, a failed request is retried. Delays grow
+ * exponentially from the initial backoff up to the maximum, and each delay
+ * is drawn at random from the upper half of that range so that clients
+ * failing together do not retry together.
+ *
+ * <p>Only transient failures ({@link YambaClientIOException} and its
+ * subclasses) are retried.
+ */
+public final class RetryPolicy {
+    /**
+     * Policy that never retries
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private static final Random sRandom = new Random();
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * @param maxAttempts total attempts including the first one
+     * @param initialBackoffMillis delay ceiling before the first retry
+     * @param maxBackoffMillis upper bound on any delay
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Invalid backoff range");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /** @return total attempts including the first one */
+    public int getMaxAttempts() { return maxAttempts; }
+
+    /**
+     * @param attempts number of attempts made so far
+     * @param e the failure of the last attempt
+     * @return true if another attempt should be made
+     */
+    public boolean shouldRetry(int attempts, YambaClientException e) {
+        return attempts < maxAttempts
+                && e instanceof YambaClientIOException
+                && !(e instanceof YambaClientCircuitOpenException);
+    }
+
+    /**
+     * @param attempts number of attempts made so far
+     * @return delay in milliseconds before the next attempt
+     */
+    public long getDelayMillis(int attempts) {
+        long ceiling = initialBackoffMillis << Math.min(Math.max(attempts - 1, 0), 30);
+        if (ceiling < 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        double jitter;
+        synchronized (sRandom) {
+            jitter = sRandom.nextDouble();
+        }
+        return ceiling / 2 + (long) (jitter * (ceiling - ceiling / 2));
+    }
+}
@@ -0,0 +1,73 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.Arrays;
+
+/**
+ * Primitive long-to-int multimap kept in key order. Appending keys in
+ * ascending order is O(1); out-of-order keys are inserted with a binary
+ * search and an array shift.
+ */
+final class SortedIndex {
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    SortedIndex(int initialCapacity) {
+        keys = new long[Math.max(initialCapacity, 16)];
+        values = new int[keys.length];
+    }
+
+    int size() { return size; }
+
+    long keyAt(int index) { return keys[index]; }
+
+    int valueAt(int index) { return values[index]; }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add an entry after any existing entries with the same key.
+     */
+    void add(long key, int value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        int index = (size == 0 || keys[size - 1] <= key) ? size : upperBound(key);
+        if (index < size) {
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * @return position of an entry with the key, or -1
+     */
+    int indexOf(long key) {
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        return (index < 0) ? -1 : index;
+    }
+
+    /**
+     * @return position of the first entry with a key greater than the given one
+     */
+    int upperBound(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,191 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable condition on timeline statuses: an id range, a creation time
+ * range, a set of users and words that must all occur in the message.
+ *
+ * <p>Passed to {@link YambaClient#getTimelineRange(long, long, int, StatusFilter)}
+ * or {@link YambaClient#fetchTimeline(long, long, int, StatusFilter, YambaClient.TimelineProcessor)},
+ * a filter is tested as each status is parsed, so statuses that do not
+ * match are dropped before any object is made for them. The same filter
+ * queries a {@link TimelineIndex}.
+ *
+ * <p>Words match whole terms of the message, ignoring case; a term is a
+ * run of letters, digits and underscores, so {@code "#yamba"} and
+ * {@code "yamba"} both match the hashtag {@code #yamba}.
+ */
+public final class StatusFilter {
+    /* Terms are tracked in one bit each while matching */
+    private static final int MAX_WORDS = 64;
+
+    private final long sinceId;
+    private final long maxId;
+    private final long fromMillis;
+    private final long toMillis;
+    private final Set<String> users;
+    private final String[] terms;
+    private final long allTerms;
+
+    private StatusFilter(Builder builder) {
+        this.sinceId = builder.sinceId;
+        this.maxId = builder.maxId;
+        this.fromMillis = builder.fromMillis;
+        this.toMillis = builder.toMillis;
+        this.users = (builder.users == null) ? null
+                : Collections.unmodifiableSet(new HashSet<>(builder.users));
+        this.terms = builder.terms.toArray(new String[builder.terms.size()]);
+        this.allTerms = (terms.length == MAX_WORDS) ? -1L : (1L << terms.length) - 1;
+    }
+
+    /** @return statuses must have a greater id than this, or 0 */
+    public long getSinceId() { return sinceId; }
+
+    /** @return statuses must have an id less than or equal to this, or 0 */
+    public long getMaxId() { return maxId; }
+
+    /** @return the users a status must be from, or null for any user */
+    public Set<String> getUsers() { return users; }
+
+    /** @return the normalized terms a message must contain */
+    public List<String> getTerms() {
+        return Collections.unmodifiableList(Arrays.asList(terms));
+    }
+
+    String[] getTermArray() { return terms; }
+
+    /**
+     * @return true if the status matches
+     */
+    public boolean matches(YambaStatus status) {
+        return matches(status.getId(), status.getCreatedAtMillis(),
+                status.getUser(), status.getMessage());
+    }
+
+    /**
+     * Test a status given by its fields. The cheap conditions are checked
+     * first, and the message is scanned in place.
+     *
+     * @param createdAtMillis creation time, or {@code Long.MIN_VALUE} if unknown
+     * @return true if the status matches
+     */
+    public boolean matches(long id, long createdAtMillis, String user, CharSequence message) {
+        if (!matchesIdAndTime(id, createdAtMillis)) {
+            return false;
+        }
+        if (users != null && (user == null || !users.contains(user))) {
+            return false;
+        }
+        if (terms.length == 0) {
+            return true;
+        }
+        return message != null && Terms.match(message, terms) == allTerms;
+    }
+
+    boolean matchesIdAndTime(long id, long createdAtMillis) {
+        if (id <= sinceId || (maxId > 0 && id > maxId)) {
+            return false;
+        }
+        if (fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE) {
+            //Statuses without a date fall outside every time range
+            if (createdAtMillis == YambaStatus.NO_DATE
+                    || createdAtMillis < fromMillis || createdAtMillis > toMillis) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "StatusFilter[users=" + users + ", terms=" + Arrays.toString(terms)
+                + ", ids=(" + sinceId + ", " + maxId + "], time=[" + fromMillis
+                + ", " + toMillis + "]]";
+    }
+
+    /**
+     * Builder for {@link StatusFilter}. A builder with no conditions
+     * matches every status.
+     */
+    public static final class Builder {
+        private long sinceId;
+        private long maxId;
+        private long fromMillis = Long.MIN_VALUE;
+        private long toMillis = Long.MAX_VALUE;
+        private Set<String> users;
+        private final List<String> terms = new ArrayList<>();
+
+        public Builder() {
+        }
+
+        /**
+         * @param sinceId only statuses with a greater id, or 0
+         * @param maxId only statuses with a lower or equal id, or 0
+         */
+        public Builder setIdRange(long sinceId, long maxId) {
+            if (sinceId < 0 || maxId < 0 || (maxId > 0 && maxId <= sinceId)) {
+                throw new IllegalArgumentException("Invalid id range");
+            }
+            this.sinceId = sinceId;
+            this.maxId = maxId;
+            return this;
+        }
+
+        /**
+         * @param fromMillis earliest creation time, inclusive
+         * @param toMillis latest creation time, inclusive
+         */
+        public Builder setCreatedBetween(long fromMillis, long toMillis) {
+            if (toMillis < fromMillis) {
+                throw new IllegalArgumentException("Invalid time range");
+            }
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            return this;
+        }
+
+        /**
+         * Add a user statuses may be from. Statuses from any user match
+         * until one is added.
+         */
+        public Builder addUser(String user) {
+            if (user == null) {
+                throw new IllegalArgumentException("User must not be null");
+            }
+            if (users == null) {
+                users = new HashSet<>();
+            }
+            users.add(user);
+            return this;
+        }
+
+        /**
+         * Add a word the message must contain.
+         *
+         * @param word a single term, optionally with surrounding punctuation
+         */
+        public Builder addWord(String word) {
+            String term = (word == null) ? null : Terms.normalize(word);
+            if (term == null) {
+                throw new IllegalArgumentException("Not a single word: " + word);
+            }
+            if (!terms.contains(term)) {
+                if (terms.size() == MAX_WORDS) {
+                    throw new IllegalArgumentException("Too many words");
+                }
+                terms.add(term);
+            }
+            return this;
+        }
+
+        public StatusFilter build() {
+            return new StatusFilter(this);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.Random;
+
+/**
+ * Source of synthetic statuses for {@link OfflineYambaClient}.
+ *
+ * <p>Users and messages are drawn from a fixed vocabulary built up front,
+ * so generated statuses share their strings and millions of them fit in a
+ * modest heap. Output is repeatable for a given seed. Instances are not
+ * thread safe.
+ */
+public class StatusGenerator {
+    private static final int VOCABULARY_SIZE = 1024;
+
+    private static final String[] WORDS = {
+            "yamba", "android", "status", "timeline", "offline", "client",
+            "update", "server", "friends", "posted", "from", "the", "a", "new",
+            "test", "message", "hello", "world", "bootcamp", "newcircle",
+    };
+
+    private final Random random;
+    private final String[] users;
+    private final String[] messages;
+    private final long intervalMillis;
+
+    /**
+     * @param seed random seed
+     * @param users number of distinct authors
+     * @param messageLength length of each message
+     * @param intervalMillis time between consecutive statuses
+     */
+    public StatusGenerator(long seed, int users, int messageLength, long intervalMillis) {
+        if (users <= 0 || messageLength < 0 || intervalMillis < 0) {
+            throw new IllegalArgumentException("Invalid generator settings");
+        }
+        this.random = new Random(seed);
+        this.intervalMillis = intervalMillis;
+
+        this.users = new String[users];
+        for (int i = 0; i < users; i++) {
+            this.users[i] = "user" + i;
+        }
+
+        this.messages = new String[VOCABULARY_SIZE];
+        StringBuilder message = new StringBuilder(messageLength + 16);
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            message.setLength(0);
+            while (message.length() < messageLength) {
+                message.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            message.setLength(messageLength);
+            this.messages[i] = message.toString();
+        }
+    }
+
+    /** @return time between consecutive statuses, in milliseconds */
+    public long getIntervalMillis() { return intervalMillis; }
+
+    /**
+     * @param id id to give the status
+     * @param createdAt creation time to give the status
+     */
+    YambaStatus next(long id, long createdAt) {
+        return new YambaStatus(id, createdAt,
+                users[random.nextInt(users.length)],
+                messages[random.nextInt(messages.length)]);
+    }
+}
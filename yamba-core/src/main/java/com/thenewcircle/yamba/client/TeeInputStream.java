@@ -0,0 +1,66 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Keeps a copy of everything read through it, up to a limit, so that a
+ * response body can be cached while it is being parsed.
+ */
+final class TeeInputStream extends FilterInputStream {
+
+    private final int limit;
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+    TeeInputStream(InputStream in, int limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    /**
+     * @return the bytes read so far, or null if the limit was exceeded
+     */
+    byte[] getBytes() {
+        return (copy == null) ? null : copy.toByteArray();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1 && copy != null) {
+            copy.write(b);
+            checkLimit();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int read = super.read(buffer, offset, count);
+        if (read > 0 && copy != null) {
+            copy.write(buffer, offset, read);
+            checkLimit();
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long byteCount) throws IOException {
+        //Skipped bytes would leave a hole in the copy
+        copy = null;
+        return super.skip(byteCount);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void checkLimit() {
+        if (copy.size() > limit) {
+            copy = null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.Collection;
+
+/**
+ * Splits status text into search terms: runs of letters, digits and
+ * underscores, compared without regard to case. A hashtag or mention is
+ * found by its word alone.
+ */
+final class Terms {
+
+    private Terms() {
+    }
+
+    static boolean isTermChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * Normalize a search word the way terms are stored. Leading and
+     * trailing punctuation, such as the {@code #} of a hashtag, is dropped.
+     *
+     * @return the lower case term, or null if the word holds no term or
+     * more than one
+     */
+    static String normalize(String word) {
+        int start = 0;
+        int end = word.length();
+        while (start < end && !isTermChar(word.charAt(start))) {
+            start++;
+        }
+        while (end > start && !isTermChar(word.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        char[] out = new char[end - start];
+        for (int i = start; i < end; i++) {
+            char c = word.charAt(i);
+            if (!isTermChar(c)) {
+                return null;
+            }
+            out[i - start] = Character.toLowerCase(c);
+        }
+        return new String(out);
+    }
+
+    /**
+     * Add the terms of a text to a collection, in order and with repeats
+     * unless the collection is a set.
+     */
+    static void collect(CharSequence text, Collection<String> out) {
+        int length = text.length();
+        char[] term = null;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isTermChar(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && isTermChar(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                if (term == null || term.length < i - start) {
+                    term = new char[Math.max(i - start, 32)];
+                }
+                for (int j = start; j < i; j++) {
+                    term[j - start] = Character.toLowerCase(text.charAt(j));
+                }
+                out.add(new String(term, 0, i - start));
+            }
+        }
+    }
+
+    /**
+     * Find which of the given normalized terms occur in a text, without
+     * allocating.
+     *
+     * @param terms at most 64 normalized terms
+     * @return a mask with bit {@code i} set if {@code terms[i]} occurs
+     */
+    static long match(CharSequence text, String[] terms) {
+        long found = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isTermChar(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && isTermChar(text.charAt(i))) {
+                i++;
+            }
+            int termLength = i - start;
+            if (termLength == 0) {
+                continue;
+            }
+            for (int t = 0; t < terms.length; t++) {
+                if ((found & (1L << t)) == 0 && equalsIgnoreCase(text, start, termLength, terms[t])) {
+                    found |= 1L << t;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence text, int start, int length,
+                                            String term) {
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != term.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,313 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches deep timeline history with several requests at once.
+ *
+ * <p>The first page anchors the fetch at its newest id, so statuses posted
+ * while it runs cannot shift later pages. The ids below the first page
+ * are split into slices sized from the id density seen so far, and
+ * slices are fetched in parallel with {@code since_id} and {@code max_id};
+ * a slice denser than expected keeps paging back until it is drained.
+ * Statuses are delivered newest first and at most once, as soon as every
+ * slice above them is complete, so the result never has a gap.
+ */
+public class TimelineBackfill {
+    /**
+     * Default number of statuses requested per page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    /**
+     * Default number of requests in flight at once
+     */
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /* Slices are widened a little so most fit in one page */
+    private static final double SLICE_MARGIN = 1.1;
+
+    private static final Comparator<YambaStatus> NEWEST_FIRST = new Comparator<YambaStatus>() {
+        @Override
+        public int compare(YambaStatus lhs, YambaStatus rhs) {
+            return (lhs.getId() < rhs.getId()) ? 1 : (lhs.getId() == rhs.getId() ? 0 : -1);
+        }
+    };
+
+    /* Idle threads exit, so an unused backfill costs nothing */
+    private static final Executor sExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "TimelineBackfill #" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final CursorYambaClientInterface client;
+    private final int pageSize;
+    private final int concurrency;
+    private final Executor executor;
+
+    /**
+     * Receives statuses as they are ready
+     */
+    private interface Sink {
+        /** @return false to stop the fetch */
+        boolean onStatus(YambaStatus status);
+    }
+
+    /**
+     * Statuses in (lower, upper], fetched newest first. Everything above
+     * the cursor has been fetched.
+     */
+    private static final class Slice {
+        long lower;
+        long cursor;
+        boolean drained;
+        final List<YambaStatus> statuses = new ArrayList<>();
+        int delivered;
+
+        Slice(long lower, long upper) {
+            this.lower = lower;
+            this.cursor = upper;
+        }
+
+        /* Records a page fetched from the cursor down */
+        void add(List<YambaStatus> page, int pageSize) {
+            List<YambaStatus> sorted = new ArrayList<>(page);
+            Collections.sort(sorted, NEWEST_FIRST);
+            statuses.addAll(sorted);
+            if (sorted.size() < pageSize) {
+                drained = true;
+            } else {
+                cursor = sorted.get(sorted.size() - 1).getId() - 1;
+                drained = cursor <= lower;
+            }
+        }
+
+        /* Ends the slice at its cursor, leaving the ids below to other slices */
+        void truncate() {
+            lower = cursor;
+            drained = true;
+        }
+    }
+
+    /**
+     * Backfill with default paging and concurrency.
+     * @param client Client to fetch with; it must allow concurrent requests
+     */
+    public TimelineBackfill(CursorYambaClientInterface client) {
+        this(client, DEFAULT_PAGE_SIZE, DEFAULT_CONCURRENCY, sExecutor);
+    }
+
+    /**
+     * @param client Client to fetch with; it must allow concurrent requests
+     * @param pageSize Statuses requested per page
+     * @param concurrency Requests in flight at once
+     * @param executor Runs the requests, or null for a shared pool
+     */
+    public TimelineBackfill(CursorYambaClientInterface client, int pageSize, int concurrency,
+                            Executor executor) {
+        if (client == null) {
+            throw new IllegalArgumentException("Client must not be null");
+        }
+        if (pageSize <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("Paging limits must be positive");
+        }
+        this.client = client;
+        this.pageSize = pageSize;
+        this.concurrency = concurrency;
+        this.executor = (executor == null) ? sExecutor : executor;
+    }
+
+    /**
+     * Fetch the newest statuses of the timeline.
+     *
+     * @param maxPosts most statuses to return
+     * @return statuses newest first, without duplicates
+     * @throws YambaClientException
+     */
+    public List<YambaStatus> fetch(int maxPosts) throws YambaClientException {
+        final List<YambaStatus> result = new ArrayList<>(Math.min(maxPosts, 4096));
+        fetch(maxPosts, new Sink() {
+            @Override
+            public boolean onStatus(YambaStatus status) {
+                result.add(status);
+                return true;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Stream the newest statuses of the timeline to a processor, newest
+     * first and without duplicates. Statuses are handed over as soon as
+     * everything newer has been, while later pages are still being fetched.
+     *
+     * @param maxPosts most statuses to deliver
+     * @param processor callback handler for each status
+     * @throws YambaClientException
+     */
+    public void fetch(int maxPosts, final YambaClient.TimelineProcessor processor)
+            throws YambaClientException {
+        processor.onStartProcessingTimeline();
+        fetch(maxPosts, new Sink() {
+            @Override
+            public boolean onStatus(YambaStatus status) {
+                if (!processor.isRunnable()) {
+                    return false;
+                }
+                processor.onTimelineStatus(status.getId(), status.getCreatedAt(),
+                        status.getUser(), status.getMessage());
+                return true;
+            }
+        });
+        processor.onEndProcessingTimeline();
+    }
+
+    private void fetch(int maxPosts, Sink sink) throws YambaClientException {
+        if (maxPosts <= 0) {
+            return;
+        }
+        int firstCount = Math.min(pageSize, maxPosts);
+        List<YambaStatus> first = client.getTimelineRange(0, 0, firstCount);
+        if (first.isEmpty()) {
+            return;
+        }
+        long anchor = 0;
+        for (YambaStatus status : first) {
+            anchor = Math.max(anchor, status.getId());
+        }
+        //The first page holds everything from its oldest id up to the anchor
+        Slice top = new Slice(0, anchor);
+        top.add(first, firstCount);
+        if (!top.drained) {
+            top.truncate();
+        }
+
+        List<Slice> slices = new ArrayList<>();
+        slices.add(top);
+        Set<Long> seen = new HashSet<>();
+        int delivered = 0;
+        int next = 0;
+        long fetched = top.statuses.size();
+
+        for (;;) {
+            //Hand over everything with no unfetched status above it
+            while (next < slices.size()) {
+                Slice slice = slices.get(next);
+                while (slice.delivered < slice.statuses.size()) {
+                    YambaStatus status = slice.statuses.get(slice.delivered++);
+                    if (!seen.add(status.getId())) {
+                        continue;
+                    }
+                    if (!sink.onStatus(status) || ++delivered >= maxPosts) {
+                        return;
+                    }
+                }
+                if (!slice.drained) {
+                    break;
+                }
+                next++;
+            }
+            if (next == slices.size()) {
+                long lowest = slices.get(slices.size() - 1).lower;
+                if (lowest <= 0) {
+                    //Reached the oldest status
+                    return;
+                }
+                //Ids per status so far predicts how far back the rest reaches
+                double density = (double) (anchor - lowest) / Math.max(1, fetched);
+                addSlices(slices, lowest, maxPosts - delivered, density);
+            }
+
+            //Fetch the newest pending page of up to concurrency slices at once
+            List<Slice> wave = new ArrayList<>(concurrency);
+            for (int i = next; i < slices.size() && wave.size() < concurrency; i++) {
+                if (!slices.get(i).drained) {
+                    wave.add(slices.get(i));
+                }
+            }
+            fetched += fetchAll(wave);
+        }
+    }
+
+    private void addSlices(List<Slice> slices, long upper, int needed, double density) {
+        long width = Math.max(1, (long) Math.ceil(pageSize * density * SLICE_MARGIN));
+        int count = (needed + pageSize - 1) / pageSize;
+        for (int i = 0; i < count && upper > 0; i++) {
+            long lower = Math.max(0, upper - width);
+            slices.add(new Slice(lower, upper));
+            upper = lower;
+        }
+    }
+
+    /**
+     * Fetch one page of each slice in parallel.
+     *
+     * @return number of statuses fetched
+     */
+    private int fetchAll(List<Slice> wave) throws YambaClientException {
+        List<FutureTask<List<YambaStatus>>> tasks = new ArrayList<>(wave.size());
+        for (final Slice slice : wave) {
+            final long since = slice.lower;
+            final long max = slice.cursor;
+            tasks.add(new FutureTask<>(new Callable<List<YambaStatus>>() {
+                @Override
+                public List<YambaStatus> call() throws YambaClientException {
+                    return client.getTimelineRange(since, max, pageSize);
+                }
+            }));
+        }
+        //Run the newest page here rather than wait idle for it
+        for (int i = 1; i < tasks.size(); i++) {
+            executor.execute(tasks.get(i));
+        }
+        tasks.get(0).run();
+
+        int count = 0;
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                List<YambaStatus> page = tasks.get(i).get();
+                wave.get(i).add(page, pageSize);
+                count += page.size();
+            }
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            throw new YambaClientIOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            Throwable cause = e.getCause();
+            if (cause instanceof YambaClientException) {
+                throw (YambaClientException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new YambaClientException("Timeline fetch failed", cause);
+        }
+        return count;
+    }
+
+    private static void cancel(List<FutureTask<List<YambaStatus>>> tasks) {
+        for (FutureTask<List<YambaStatus>> task : tasks) {
+            task.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.thenewcircle.yamba.client;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Immutable timeline stored column by column, for holding large numbers
+ * of statuses in memory.
+ *
+ * <p>Ids and creation times are primitive arrays. Each distinct user name
+ * is stored once and referenced by index. Messages are packed into one
+ * UTF-8 byte array and decoded on every call to {@link #getMessage}, so a
+ * status costs roughly its encoded message plus a few array slots instead
+ * of a {@link YambaStatus}, its strings and a {@code Date}. Use
+ * {@link #asList()} where a {@code List<YambaStatus>} is expected.
+ */
+public final class TimelineBatch {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* Larger batches grow as statuses are added */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final int size;
+    private final long[] ids;
+    private final long[] createdAts;
+    /* Index into users, -1 for a status without a user */
+    private final int[] userIndexes;
+    private final String[] users;
+    private final byte[] messageBytes;
+    /* Message i spans messageOffsets[i] to messageOffsets[i + 1] */
+    private final int[] messageOffsets;
+    /* Set for messages that are null; null when there are none */
+    private final BitSet nullMessages;
+    /* Latitude and longitude of status i at 2i and 2i + 1, NaN for a
+       status without a location; null when no status has one */
+    private final double[] locations;
+
+    private TimelineBatch(Builder builder) {
+        this.size = builder.size;
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.createdAts = Arrays.copyOf(builder.createdAts, size);
+        this.userIndexes = Arrays.copyOf(builder.userIndexes, size);
+        this.users = builder.users.toArray(new String[builder.users.size()]);
+        this.messageBytes = Arrays.copyOf(builder.messageBytes, builder.messageLength);
+        this.messageOffsets = Arrays.copyOf(builder.messageOffsets, size + 1);
+        this.nullMessages = (builder.nullMessages == null)
+                ? null : (BitSet) builder.nullMessages.clone();
+        this.locations = (builder.locations == null)
+                ? null : Arrays.copyOf(builder.locations, size * 2);
+    }
+
+    /**
+     * Copy a list of statuses into a batch, keeping their order.
+     */
+    public static TimelineBatch of(List<YambaStatus> statuses) {
+        Builder builder = new Builder(statuses.size());
+        for (int i = 0; i < statuses.size(); i++) {
+            builder.add(statuses.get(i));
+        }
+        return builder.build();
+    }
+
+    /** @return number of statuses in the batch */
+    public int size() { return size; }
+
+    /** @return number of distinct users in the batch */
+    public int getUserCount() { return users.length; }
+
+    /** @return id of the status at {@code index} */
+    public long getId(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    /** @return creation time of the status at {@code index}, in milliseconds since the epoch */
+    public long getCreatedAtMillis(int index) {
+        checkIndex(index);
+        return createdAts[index];
+    }
+
+    /** @return owner of the status at {@code index} */
+    public String getUser(int index) {
+        checkIndex(index);
+        int user = userIndexes[index];
+        return (user < 0) ? null : users[user];
+    }
+
+    /** @return latitude of the status at {@code index}, or NaN if it has no location */
+    public double getLatitude(int index) {
+        checkIndex(index);
+        return (locations == null) ? Double.NaN : locations[index * 2];
+    }
+
+    /** @return longitude of the status at {@code index}, or NaN if it has no location */
+    public double getLongitude(int index) {
+        checkIndex(index);
+        return (locations == null) ? Double.NaN : locations[index * 2 + 1];
+    }
+
+    /**
+     * Decode the message of a status. Every call returns a new string;
+     * callers reading a message repeatedly should keep the result.
+     *
+     * @return message of the status at {@code index}
+     */
+    public String getMessage(int index) {
+        checkIndex(index);
+        if (nullMessages != null && nullMessages.get(index)) {
+            return null;
+        }
+        int start = messageOffsets[index];
+        return new String(messageBytes, start, messageOffsets[index + 1] - start, UTF_8);
+    }
+
+    /**
+     * @return a status view of the entry at {@code index}; its message is
+     * decoded when asked for
+     */
+    public YambaStatus get(int index) {
+        checkIndex(index);
+        return new StatusView(this, index);
+    }
+
+    /**
+     * @return an unmodifiable list view of the batch. Elements are created
+     * on access, so keep them only as long as needed.
+     */
+    public List<YambaStatus> asList() {
+        return new ListView(this);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+
+    private static final class StatusView extends YambaStatus {
+        private final TimelineBatch batch;
+        private final int index;
+
+        StatusView(TimelineBatch batch, int index) {
+            super(batch.ids[index], batch.createdAts[index], batch.getUser(index), null,
+                    batch.getLatitude(index), batch.getLongitude(index));
+            this.batch = batch;
+            this.index = index;
+        }
+
+        @Override
+        public String getMessage() {
+            return batch.getMessage(index);
+        }
+    }
+
+    private static final class ListView extends AbstractList<YambaStatus>
+            implements RandomAccess {
+        private final TimelineBatch batch;
+
+        ListView(TimelineBatch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public YambaStatus get(int index) {
+            return batch.get(index);
+        }
+
+        @Override
+        public int size() {
+            return batch.size;
+        }
+    }
+
+    /**
+     * Builder for {@link TimelineBatch}. Statuses keep the order they are
+     * added in.
+     */
+    public static final class Builder {
+        private int size;
+        private long[] ids;
+        private long[] createdAts;
+        private int[] userIndexes;
+        private final List<String> users = new ArrayList<>();
+        private final Map<String, Integer> userLookup = new HashMap<>();
+        private byte[] messageBytes;
+        private int messageLength;
+        private int[] messageOffsets;
+        private BitSet nullMessages;
+        private double[] locations;
+
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * @param expectedSize number of statuses expected; the batch grows
+         *                     past it as needed
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.min(Math.max(expectedSize, 1), MAX_INITIAL_CAPACITY);
+            ids = new long[capacity];
+            createdAts = new long[capacity];
+            userIndexes = new int[capacity];
+            messageOffsets = new int[capacity + 1];
+            messageBytes = new byte[capacity * 64];
+        }
+
+        /** @return number of statuses added so far */
+        public int size() { return size; }
+
+        /**
+         * Add a copy of a status.
+         */
+        public Builder add(YambaStatus status) {
+            return add(status.getId(), status.getCreatedAtMillis(), status.getUser(),
+                    status.getMessage(), status.getLatitude(), status.getLongitude());
+        }
+
+        /**
+         * @param id status id
+         * @param createdAtMillis creation time in milliseconds since the epoch
+         * @param user status owner, may be null
+         * @param message status text, may be null
+         */
+        public Builder add(long id, long createdAtMillis, String user, String message) {
+            return add(id, createdAtMillis, user, message, Double.NaN, Double.NaN);
+        }
+
+        /**
+         * @param id status id
+         * @param createdAtMillis creation time in milliseconds since the epoch
+         * @param user status owner, may be null
+         * @param message status text, may be null
+         * @param latitude latitude in degrees, or NaN if the status has no location
+         * @param longitude longitude in degrees, or NaN if the status has no location
+         */
+        public Builder add(long id, long createdAtMillis, String user, String message,
+                           double latitude, double longitude) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                createdAts = Arrays.copyOf(createdAts, capacity);
+                userIndexes = Arrays.copyOf(userIndexes, capacity);
+                messageOffsets = Arrays.copyOf(messageOffsets, capacity + 1);
+                if (locations != null) {
+                    locations = grow(locations, capacity * 2);
+                }
+            }
+            if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+                if (locations == null) {
+                    //Only batches with a located status pay for the column
+                    locations = grow(new double[0], ids.length * 2);
+                }
+                locations[size * 2] = latitude;
+                locations[size * 2 + 1] = longitude;
+            }
+            ids[size] = id;
+            createdAts[size] = createdAtMillis;
+            userIndexes[size] = indexOfUser(user);
+            if (message == null) {
+                if (nullMessages == null) {
+                    nullMessages = new BitSet();
+                }
+                nullMessages.set(size);
+            } else {
+                appendUtf8(message);
+            }
+            size++;
+            messageOffsets[size] = messageLength;
+            return this;
+        }
+
+        public TimelineBatch build() {
+            return new TimelineBatch(this);
+        }
+
+        private static double[] grow(double[] array, int length) {
+            double[] copy = Arrays.copyOf(array, length);
+            Arrays.fill(copy, array.length, length, Double.NaN);
+            return copy;
+        }
+
+        private int indexOfUser(String user) {
+            if (user == null) {
+                return -1;
+            }
+            Integer index = userLookup.get(user);
+            if (index == null) {
+                index = users.size();
+                users.add(user);
+                userLookup.put(user, index);
+            }
+            return index;
+        }
+
+        /* Encodes straight into the arena, as String.getBytes would */
+        private void appendUtf8(String text) {
+            int length = text.length();
+            //At most three bytes per char; a surrogate pair takes four for two
+            if (messageLength + length * 3 > messageBytes.length) {
+                messageBytes = Arrays.copyOf(messageBytes,
+                        Math.max(messageBytes.length * 2, messageLength + length * 3));
+            }
+            byte[] out = messageBytes;
+            int pos = messageLength;
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    out[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[pos++] = (byte) (0xc0 | (c >> 6));
+                    out[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int code = Character.toCodePoint(c, text.charAt(++i));
+                    out[pos++] = (byte) (0xf0 | (code >> 18));
+                    out[pos++] = (byte) (0x80 | ((code >> 12) & 0x3f));
+                    out[pos++] = (byte) (0x80 | ((code >> 6) & 0x3f));
+                    out[pos++] = (byte) (0x80 | (code & 0x3f));
+                } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    //Unpaired surrogates cannot be encoded
+                    out[pos++] = '?';
+                } else {
+                    out[pos++] = (byte) (0xe0 | (c >> 12));
+                    out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    out[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            messageLength = pos;
+        }
+    }
+}
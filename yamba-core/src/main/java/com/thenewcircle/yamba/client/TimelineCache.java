@@ -0,0 +1,339 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Response cache for timeline requests.
+ *
+ * <p>Responses that carry an {@code ETag} or {@code Last-Modified} header
+ * are kept in a small LRU memory tier and, optionally, a size-bounded
+ * directory on disk. Later requests for the same timeline are sent as
+ * conditional GETs; when the server answers {@code 304 Not Modified} the
+ * timeline is served from the cache without transferring or re-parsing
+ * the body. A cache may be shared by several clients.
+ */
+public class TimelineCache {
+    /**
+     * Largest response body that will be cached
+     */
+    public static final int DEFAULT_MAX_ENTRY_BYTES = 512 * 1024;
+
+    private static final int MAGIC = 0x59544331; // "YTC1"
+    private static final String FILE_SUFFIX = ".timeline";
+
+    private final File directory;
+    private final long maxDiskBytes;
+    private final Map<String, Entry> memory;
+    private final Object diskLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Cached response and its validators
+     */
+    static final class Entry {
+        final String key;
+        final String etag;
+        final String lastModified;
+        final byte[] body;
+        private volatile List<YambaStatus> statuses;
+
+        Entry(String key, String etag, String lastModified, byte[] body) {
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        /**
+         * @return the parsed timeline, parsing the body on first use
+         */
+        List<YambaStatus> getStatuses() throws YambaClientException {
+            List<YambaStatus> result = statuses;
+            if (result == null) {
+                result = parse(body).asList();
+                statuses = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Create a memory-only cache.
+     *
+     * @param maxMemoryEntries number of timelines kept in memory
+     */
+    public TimelineCache(int maxMemoryEntries) {
+        this(maxMemoryEntries, null, 0);
+    }
+
+    /**
+     * Create a cache with a memory tier backed by a directory on disk.
+     *
+     * @param maxMemoryEntries number of timelines kept in memory
+     * @param directory directory for cached responses, or null for none
+     * @param maxDiskBytes upper bound on the size of the directory
+     */
+    public TimelineCache(final int maxMemoryEntries, File directory, long maxDiskBytes) {
+        if (maxMemoryEntries <= 0) {
+            throw new IllegalArgumentException("maxMemoryEntries must be positive");
+        }
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TimelineCache.Entry> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+    }
+
+    /** @return number of requests answered from the cache */
+    public long getHitCount() { return hits.get(); }
+
+    /** @return number of cacheable requests that downloaded a full response */
+    public long getMissCount() { return misses.get(); }
+
+    /** @return response body bytes that did not have to be transferred */
+    public long getBytesSaved() { return bytesSaved.get(); }
+
+    /**
+     * Drop every cached response from memory and disk.
+     */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        if (directory != null) {
+            synchronized (diskLock) {
+                for (File file : listCacheFiles()) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the cached response for the key, or null
+     */
+    Entry get(String key) {
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        if (entry == null && directory != null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                synchronized (memory) {
+                    memory.put(key, entry);
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Store a complete response. Responses without validators are ignored
+     * since they could never be revalidated.
+     */
+    void put(String key, String etag, String lastModified, byte[] body) {
+        if (etag == null && lastModified == null) {
+            return;
+        }
+        Entry entry = new Entry(key, etag, lastModified, body);
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        if (directory != null) {
+            writeToDisk(entry);
+        }
+    }
+
+    void recordHit(Entry entry) {
+        hits.incrementAndGet();
+        bytesSaved.addAndGet(entry.body.length);
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    private Entry readFromDisk(String key) {
+        synchronized (diskLock) {
+            File file = getFile(key);
+            if (!file.isFile()) {
+                return null;
+            }
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new FileInputStream(file));
+                if (in.readInt() != MAGIC || !key.equals(in.readUTF())) {
+                    return null;
+                }
+                String etag = readOptionalUTF(in);
+                String lastModified = readOptionalUTF(in);
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                //Refresh the timestamp used for eviction order
+                file.setLastModified(System.currentTimeMillis());
+                return new Entry(key, etag, lastModified, body);
+            } catch (IOException e) {
+                file.delete();
+                return null;
+            } finally {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    private void writeToDisk(Entry entry) {
+        synchronized (diskLock) {
+            File file = getFile(entry.key);
+            File temp = new File(directory, file.getName() + ".tmp");
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new FileOutputStream(temp));
+                out.writeInt(MAGIC);
+                out.writeUTF(entry.key);
+                writeOptionalUTF(out, entry.etag);
+                writeOptionalUTF(out, entry.lastModified);
+                out.writeInt(entry.body.length);
+                out.write(entry.body);
+                out.close();
+                out = null;
+                if (!temp.renameTo(file)) {
+                    temp.delete();
+                    return;
+                }
+            } catch (IOException e) {
+                temp.delete();
+                return;
+            } finally {
+                closeQuietly(out);
+            }
+            trimToSize();
+        }
+    }
+
+    /* Delete least recently used files until the directory fits */
+    private void trimToSize() {
+        File[] files = listCacheFiles();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxDiskBytes) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return (l < r) ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && size > maxDiskBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File[] listCacheFiles() {
+        List<File> result = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(FILE_SUFFIX)) {
+                    result.add(file);
+                }
+            }
+        }
+        return result.toArray(new File[result.size()]);
+    }
+
+    private File getFile(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(hash.length * 2 + FILE_SUFFIX.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(directory, name.append(FILE_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException("Cannot hash cache key", e);
+        }
+    }
+
+    private static TimelineBatch parse(byte[] body) throws YambaClientException {
+        TimelineBatch.Builder batch = new TimelineBatch.Builder();
+        TimelineParser parser = TimelineParser.obtain(new ByteArrayInputStream(body),
+                WireFormat.detect(body));
+        try {
+            while (parser.nextStatus()) {
+                batch.add(parser.getId(), parser.getCreatedAt(), parser.getUser(),
+                        parser.getMessage(), parser.getLatitude(), parser.getLongitude());
+            }
+        } catch (Exception e) {
+            throw new YambaClientException("Failed to parse cached timeline", e);
+        } finally {
+            parser.recycle();
+        }
+        return batch.build();
+    }
+
+    private static String readOptionalUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeOptionalUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares timeline fetches between concurrent callers.
+ *
+ * <p>While a timeline request is in flight, identical requests for the
+ * same credentials, endpoint and range wait for it instead of starting
+ * their own. Each caller gets its own list, cut to the number of statuses
+ * it asked for; a caller asking for more than the request in flight starts
+ * a new one. Optionally, a completed result keeps being served for a short
+ * freshness window. Failures are passed to every waiting caller and are
+ * never kept. If the caller running the request is cancelled, the waiting
+ * callers are not failed with it but start over.
+ *
+ * <p>A coalescer may be shared by several clients through
+ * {@link YambaClientConfig.Builder#setTimelineCoalescer}.
+ */
+public class TimelineCoalescer {
+    /* Completed results are swept once this many keys are tracked */
+    private static final int SWEEP_THRESHOLD = 64;
+
+    private final long freshnessNanos;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * A request, run at most once per flight
+     */
+    interface Fetch {
+        List<YambaStatus> fetch(int count) throws YambaClientException;
+    }
+
+    /**
+     * One fetch and the callers waiting for it
+     */
+    private static final class Flight {
+        final int count;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile List<YambaStatus> result;
+        volatile YambaClientException error;
+        volatile long completedAt;
+        /* The owner was cancelled; there is no result to share */
+        volatile boolean abandoned;
+
+        Flight(int count) {
+            this.count = count;
+        }
+
+        void complete(List<YambaStatus> result, YambaClientException error) {
+            this.result = result;
+            this.error = error;
+            this.completedAt = System.nanoTime();
+            done.countDown();
+        }
+
+        void abandon() {
+            this.abandoned = true;
+            this.completedAt = System.nanoTime();
+            done.countDown();
+        }
+
+        boolean isDone() {
+            return done.getCount() == 0;
+        }
+    }
+
+    /**
+     * Coalesce only concurrent requests.
+     */
+    public TimelineCoalescer() {
+        this(0);
+    }
+
+    /**
+     * @param freshnessMillis how long a completed result is served to new
+     *                        callers; 0 shares only requests in flight
+     */
+    public TimelineCoalescer(long freshnessMillis) {
+        if (freshnessMillis < 0) {
+            throw new IllegalArgumentException("freshnessMillis < 0");
+        }
+        this.freshnessNanos = TimeUnit.MILLISECONDS.toNanos(freshnessMillis);
+    }
+
+    /** @return number of requests that went to the network */
+    public long getFetchCount() { return fetches.get(); }
+
+    /** @return number of requests served by another caller's fetch */
+    public long getCoalescedCount() { return coalesced.get(); }
+
+    /**
+     * Return a timeline, joining a matching request in flight or a fresh
+     * result when there is one.
+     *
+     * @param key identifies the credentials, endpoint and range
+     * @param count statuses wanted by this caller
+     * @param fetch runs the request when it cannot be shared
+     */
+    List<YambaStatus> get(String key, int count, Fetch fetch) throws YambaClientException {
+        for (;;) {
+            Flight flight = flights.get(key);
+            if (flight != null && flight.count >= count) {
+                if (!flight.isDone()) {
+                    coalesced.incrementAndGet();
+                    List<YambaStatus> shared = await(flight, count);
+                    if (shared != null) {
+                        return shared;
+                    }
+                    coalesced.decrementAndGet();
+                    continue;
+                }
+                if (!flight.abandoned && flight.error == null
+                        && System.nanoTime() - flight.completedAt < freshnessNanos) {
+                    coalesced.incrementAndGet();
+                    return slice(flight.result, count);
+                }
+            }
+
+            Flight mine = new Flight(count);
+            boolean started = (flight == null)
+                    ? flights.putIfAbsent(key, mine) == null
+                    : flights.replace(key, flight, mine);
+            if (started) {
+                return run(key, mine, fetch);
+            }
+            //Another caller got in first; look again
+        }
+    }
+
+    private List<YambaStatus> run(String key, Flight flight, Fetch fetch)
+            throws YambaClientException {
+        fetches.incrementAndGet();
+        if (flights.size() > SWEEP_THRESHOLD) {
+            sweep();
+        }
+        List<YambaStatus> result = null;
+        YambaClientException error = null;
+        try {
+            result = Collections.unmodifiableList(fetch.fetch(flight.count));
+            return slice(result, flight.count);
+        } catch (YambaClientException e) {
+            error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            error = new YambaClientException("Timeline fetch failed", e);
+            throw e;
+        } finally {
+            if (error != null && YambaCall.isCurrentCallCancelled()) {
+                //The failure is this caller's cancel; the others fetch again
+                flights.remove(key, flight);
+                flight.abandon();
+            } else {
+                flight.complete(result, error);
+                if (error != null || freshnessNanos == 0) {
+                    flights.remove(key, flight);
+                }
+            }
+        }
+    }
+
+    /* Returns null if the flight was abandoned */
+    private static List<YambaStatus> await(Flight flight, int count)
+            throws YambaClientException {
+        try {
+            flight.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new YambaClientIOException("Interrupted", e);
+        }
+        if (flight.abandoned) {
+            return null;
+        }
+        if (flight.error != null) {
+            throw flight.error;
+        }
+        return slice(flight.result, count);
+    }
+
+    /* Statuses are immutable, so callers can share them but not the list */
+    private static List<YambaStatus> slice(List<YambaStatus> result, int count) {
+        return new ArrayList<>(result.subList(0, Math.min(count, result.size())));
+    }
+
+    /* Drops completed results that are no longer fresh */
+    private void sweep() {
+        long now = System.nanoTime();
+        Iterator<Flight> it = flights.values().iterator();
+        while (it.hasNext()) {
+            Flight flight = it.next();
+            if (flight.isDone() && now - flight.completedAt >= freshnessNanos) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over a bounded number of statuses, answering
+ * {@link StatusFilter} queries without scanning every status.
+ *
+ * <p>Every message term and every user maps to the sorted ids of the
+ * statuses containing it. A query walks the shortest list that applies,
+ * newest first, checks the other terms by binary search and stops as soon
+ * as it has enough matches. Statuses can be added at any time, in any
+ * order; once the index is full the oldest statuses are dropped along
+ * with their postings. Safe for use from several threads.
+ */
+public final class TimelineIndex {
+    /**
+     * Default number of statuses held
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final int capacity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, YambaStatus> statuses = new HashMap<>();
+    private final Postings ids = new Postings();
+    private final Map<String, Postings> terms = new HashMap<>();
+    private final Map<String, Postings> users = new HashMap<>();
+    /* Reused while adding; guarded by the write lock */
+    private final Set<String> scratch = new LinkedHashSet<>();
+
+    public TimelineIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity most statuses held; the oldest are dropped beyond it
+     */
+    public TimelineIndex(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Index a status, unless one with the same id is already held or the
+     * index is full of newer statuses.
+     *
+     * @return true if the status was added
+     */
+    public boolean add(YambaStatus status) {
+        lock.writeLock().lock();
+        try {
+            return addLocked(status);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index several statuses, such as a timeline page.
+     *
+     * @return number of statuses added
+     */
+    public int addAll(List<YambaStatus> statuses) {
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < statuses.size(); i++) {
+                if (addLocked(statuses.get(i))) {
+                    added++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Drop a status from the index.
+     *
+     * @return true if it was held
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the newest statuses matching a filter.
+     *
+     * @param filter condition to meet
+     * @param limit most statuses to return
+     * @return matching statuses, newest first
+     */
+    public List<YambaStatus> query(StatusFilter filter, int limit) {
+        List<YambaStatus> result = new ArrayList<>(Math.min(limit, 64));
+        if (limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            String[] words = filter.getTermArray();
+            Set<String> from = filter.getUsers();
+
+            //Walk the shortest list that every match must be on
+            Postings driver = ids;
+            Postings[] required = new Postings[words.length];
+            for (int i = 0; i < words.length; i++) {
+                required[i] = terms.get(words[i]);
+                if (required[i] == null) {
+                    return result;
+                }
+                if (required[i].size() < driver.size()) {
+                    driver = required[i];
+                }
+            }
+            if (from != null) {
+                Postings[] lists = new Postings[from.size()];
+                int userTotal = 0;
+                int n = 0;
+                for (String user : from) {
+                    Postings list = users.get(user);
+                    if (list != null) {
+                        lists[n++] = list;
+                        userTotal += list.size();
+                    }
+                }
+                if (userTotal < driver.size()) {
+                    walkUsers(Arrays.copyOf(lists, n), required, filter, limit, result);
+                    return result;
+                }
+            }
+            walk(driver, required, filter, limit, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /** @return number of statuses held */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return statuses.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return number of distinct terms indexed */
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            statuses.clear();
+            ids.clear();
+            terms.clear();
+            users.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void walk(Postings driver, Postings[] required, StatusFilter filter, int limit,
+                      List<YambaStatus> result) {
+        long maxId = filter.getMaxId();
+        int index = (maxId > 0) ? driver.upperBound(maxId) : driver.size();
+        while (--index >= 0 && result.size() < limit) {
+            long id = driver.get(index);
+            if (id <= filter.getSinceId()) {
+                return;
+            }
+            accept(id, required, filter, result);
+        }
+    }
+
+    /* Merges the lists of several users, newest first */
+    private void walkUsers(Postings[] lists, Postings[] required, StatusFilter filter,
+                           int limit, List<YambaStatus> result) {
+        long maxId = filter.getMaxId();
+        int[] next = new int[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            next[i] = ((maxId > 0) ? lists[i].upperBound(maxId) : lists[i].size()) - 1;
+        }
+        while (result.size() < limit) {
+            int newest = -1;
+            for (int i = 0; i < lists.length; i++) {
+                if (next[i] >= 0 && (newest < 0
+                        || lists[i].get(next[i]) > lists[newest].get(next[newest]))) {
+                    newest = i;
+                }
+            }
+            if (newest < 0) {
+                return;
+            }
+            long id = lists[newest].get(next[newest]--);
+            if (id <= filter.getSinceId()) {
+                return;
+            }
+            accept(id, required, filter, result);
+        }
+    }
+
+    private void accept(long id, Postings[] required, StatusFilter filter,
+                        List<YambaStatus> result) {
+        for (Postings list : required) {
+            if (!list.contains(id)) {
+                return;
+            }
+        }
+        YambaStatus status = statuses.get(id);
+        Set<String> from = filter.getUsers();
+        if (from != null && !from.contains(status.getUser())) {
+            return;
+        }
+        if (filter.matchesIdAndTime(id, status.getCreatedAtMillis())) {
+            result.add(status);
+        }
+    }
+
+    private boolean addLocked(YambaStatus status) {
+        long id = status.getId();
+        if (statuses.containsKey(id)) {
+            return false;
+        }
+        if (statuses.size() >= capacity) {
+            if (id < ids.get(0)) {
+                return false;
+            }
+            removeLocked(ids.get(0));
+        }
+        statuses.put(id, status);
+        ids.add(id);
+        if (status.getUser() != null) {
+            postings(users, status.getUser()).add(id);
+        }
+        if (status.getMessage() != null) {
+            scratch.clear();
+            Terms.collect(status.getMessage(), scratch);
+            for (String term : scratch) {
+                postings(terms, term).add(id);
+            }
+        }
+        return true;
+    }
+
+    private boolean removeLocked(long id) {
+        YambaStatus status = statuses.remove(id);
+        if (status == null) {
+            return false;
+        }
+        ids.remove(id);
+        if (status.getUser() != null) {
+            unpost(users, status.getUser(), id);
+        }
+        if (status.getMessage() != null) {
+            scratch.clear();
+            Terms.collect(status.getMessage(), scratch);
+            for (String term : scratch) {
+                unpost(terms, term, id);
+            }
+        }
+        return true;
+    }
+
+    private static Postings postings(Map<String, Postings> map, String key) {
+        Postings list = map.get(key);
+        if (list == null) {
+            list = new Postings();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    private static void unpost(Map<String, Postings> map, String key, long id) {
+        Postings list = map.get(key);
+        if (list != null) {
+            list.remove(id);
+            if (list.size() == 0) {
+                //Drop rare terms with their last status, bounding memory
+                map.remove(key);
+            }
+        }
+    }
+}
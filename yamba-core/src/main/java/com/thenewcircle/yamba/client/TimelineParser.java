@@ -0,0 +1,233 @@
+package com.thenewcircle.yamba.client;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pull parser for a timeline response. Each call to {@link #nextStatus()}
+ * reads just far enough to complete one status.
+ *
+ * <p>There is one implementation per {@link WireFormat}. Parsers are
+ * expensive to set up and are recycled through a small pool per format;
+ * use {@link #obtain} and {@link #recycle()}.
+ */
+abstract class TimelineParser {
+
+    private static final int DEFAULT_POOL_SIZE = 8;
+
+    /* Idle parsers, indexed by wire format */
+    private static final Pool[] sPools = new Pool[WireFormat.values().length];
+    private static volatile int sMaxPoolSize = DEFAULT_POOL_SIZE;
+
+    static {
+        for (int i = 0; i < sPools.length; i++) {
+            sPools[i] = new Pool();
+        }
+    }
+
+    private static final class Pool {
+        final ConcurrentLinkedQueue<TimelineParser> parsers = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    /* Set by the implementations */
+    boolean finished;
+    long id;
+    long createdAt;
+    String user;
+    String message;
+    double latitude;
+    double longitude;
+
+    /**
+     * Return an XML parser reading the given stream, reusing a pooled
+     * instance when one is available.
+     */
+    static TimelineParser obtain(InputStream in) throws YambaClientException {
+        return obtain(in, WireFormat.XML);
+    }
+
+    /**
+     * Return a parser for the given format reading the given stream,
+     * reusing a pooled instance when one is available.
+     */
+    static TimelineParser obtain(InputStream in, WireFormat format)
+            throws YambaClientException {
+        Pool pool = sPools[format.ordinal()];
+        TimelineParser parser = pool.parsers.poll();
+        if (parser != null) {
+            pool.size.decrementAndGet();
+        } else if (format == WireFormat.JSON) {
+            parser = new JsonTimelineParser();
+        } else {
+            parser = XmlTimelineParser.create();
+        }
+        parser.reset(in);
+        return parser;
+    }
+
+    /**
+     * Let the pool hold at least this many idle parsers, so callers
+     * parsing on that many threads at once keep reusing them.
+     */
+    static synchronized void reservePoolCapacity(int parsers) {
+        if (parsers > sMaxPoolSize) {
+            sMaxPoolSize = parsers;
+        }
+    }
+
+    /**
+     * Return this parser to the pool. It must not be used afterwards.
+     */
+    void recycle() {
+        Pool pool = sPools[getFormat().ordinal()];
+        if (pool.size.incrementAndGet() <= sMaxPoolSize) {
+            pool.parsers.offer(this);
+        } else {
+            pool.size.decrementAndGet();
+        }
+    }
+
+    /** @return the format this parser reads */
+    abstract WireFormat getFormat();
+
+    /**
+     * Start reading a new document.
+     */
+    abstract void reset(InputStream in) throws YambaClientException;
+
+    /**
+     * Advance to the end of the next status.
+     *
+     * @return true if a status was read, false at the end of the document
+     */
+    abstract boolean nextStatus() throws XmlPullParserException, IOException, ParseException;
+
+    /**
+     * Read on to the end of the document, stopping at the next status.
+     *
+     * @return true if the document ended without another status
+     */
+    abstract boolean skipToEnd() throws XmlPullParserException, IOException, ParseException;
+
+    void clearStatus() {
+        id = -1;
+        createdAt = YambaStatus.NO_DATE;
+        user = null;
+        message = null;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+    }
+
+    /** @return true once the whole document has been read */
+    boolean isFinished() { return finished; }
+
+    long getId() { return id; }
+
+    long getCreatedAt() { return createdAt; }
+
+    String getUser() { return user; }
+
+    String getMessage() { return message; }
+
+    double getLatitude() { return latitude; }
+
+    double getLongitude() { return longitude; }
+
+    /**
+     * Make a status of the fields read.
+     */
+    YambaStatus toStatus() {
+        return new YambaStatus(id, createdAt, user, getMessage(), latitude, longitude);
+    }
+
+    /**
+     * Set the location, unless either coordinate is out of range.
+     */
+    void setLocation(double latitude, double longitude) {
+        if (latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /**
+     * Read a GeoRSS point, a latitude and a longitude separated by
+     * whitespace, straight from the parser's buffer. Malformed points are
+     * ignored.
+     */
+    void parsePoint(char[] text, int start, int length) {
+        int end = start + length;
+        int i = start;
+        while (i < end && text[i] <= ' ') {
+            i++;
+        }
+        int latStart = i;
+        while (i < end && text[i] > ' ') {
+            i++;
+        }
+        int latEnd = i;
+        while (i < end && text[i] <= ' ') {
+            i++;
+        }
+        int lonStart = i;
+        while (i < end && text[i] > ' ') {
+            i++;
+        }
+        if (latEnd == latStart || i == lonStart) {
+            return;
+        }
+        try {
+            setLocation(Double.parseDouble(new String(text, latStart, latEnd - latStart)),
+                    Double.parseDouble(new String(text, lonStart, i - lonStart)));
+        } catch (NumberFormatException e) {
+            //Keep the status without a location
+        }
+    }
+
+    /**
+     * @return the message of the current status, possibly as a view that
+     * is only valid until the parser moves on; for testing it without
+     * making a string
+     */
+    CharSequence getMessageText() { return getMessage(); }
+
+    /**
+     * Parse a decimal number straight from the parser's buffer.
+     */
+    static long parseLong(char[] text, int start, int length) {
+        int end = start + length;
+        while (start < end && text[start] <= ' ') {
+            start++;
+        }
+        while (end > start && text[end - 1] <= ' ') {
+            end--;
+        }
+        boolean negative = start < end && text[start] == '-';
+        if (negative) {
+            start++;
+        }
+        if (start == end || end - start > 19) {
+            throw new NumberFormatException("Invalid id: "
+                    + new String(text, start, end - start));
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid id: "
+                        + new String(text, start, end - start));
+            }
+            value = value * 10 + digit;
+        }
+        if (value < 0) {
+            throw new NumberFormatException("Id out of range");
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,421 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the timelines of subscribed accounts in the background and hands
+ * new statuses to every subscriber of the account.
+ *
+ * <p>Each account is fetched once per poll however many subscribers it
+ * has, and only statuses not delivered before are passed on. When more
+ * statuses arrive than one page holds, the poll pages back through them
+ * with a {@link TimelineSyncer}, so none are skipped. The delay between
+ * polls follows the account's observed post rate: busy accounts are
+ * polled often enough to keep a page from filling up, quiet ones less and
+ * less often, down to the maximum interval. Failed polls back off
+ * exponentially. All accounts share a small scheduler, so no thread is
+ * held between polls.
+ */
+public class TimelinePoller implements Closeable {
+    private static final String TAG = "TimelinePoller";
+
+    /**
+     * Default number of threads polling at once
+     */
+    public static final int DEFAULT_THREADS = 2;
+
+    /**
+     * Default number of statuses requested per poll
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Default shortest delay between polls of one account, in milliseconds
+     */
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 15 * 1000;
+
+    /**
+     * Default longest delay between polls of one account, in milliseconds
+     */
+    public static final long DEFAULT_MAX_INTERVAL_MILLIS = 15 * 60 * 1000;
+
+    /**
+     * Receives the results of polls. Methods are invoked on poller
+     * threads, one poll of an account at a time.
+     */
+    public interface Subscriber {
+        /**
+         * @param account account that was polled
+         * @param statuses statuses not delivered before, newest first; the
+         *                 list is shared by all subscribers and unmodifiable.
+         *                 After a burst too large for one poll, older
+         *                 statuses follow in the next polls.
+         */
+        void onStatuses(YambaAccount account, List<YambaStatus> statuses);
+
+        /**
+         * @param account account that was polled
+         * @param e the reason the poll failed
+         */
+        void onFailure(YambaAccount account, YambaClientException e);
+    }
+
+    private final String apiRoot;
+    private final YambaClientConfig config;
+    private final int pageSize;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final ScheduledThreadPoolExecutor executor;
+    private final ConcurrentMap<YambaAccount, Feed> feeds = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+
+    private TimelinePoller(Builder builder) {
+        this.apiRoot = builder.apiRoot;
+        this.config = (builder.config == null) ? YambaClientConfig.getDefault() : builder.config;
+        this.pageSize = builder.pageSize;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.minIntervalMillis);
+        this.maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxIntervalMillis);
+
+        final AtomicInteger count = new AtomicInteger(1);
+        this.executor = new ScheduledThreadPoolExecutor(builder.threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TimelinePoller #" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        //Cancelled polls of unsubscribed accounts should not linger
+        this.executor.setRemoveOnCancelPolicy(true);
+        TimelineParser.reservePoolCapacity(builder.threads);
+    }
+
+    /**
+     * Start delivering new statuses of an account to a subscriber. The
+     * first subscriber of an account starts polling it right away, and
+     * receives the newest page; later subscribers receive statuses from
+     * the next poll on.
+     */
+    public void subscribe(YambaAccount account, Subscriber subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("Subscriber must not be null");
+        }
+        for (;;) {
+            Feed feed = feeds.get(account);
+            if (feed == null) {
+                Feed created = new Feed(account, YambaClient.getCursorClient(
+                        account.getUsername(), account.getPassword(), apiRoot, config));
+                feed = feeds.putIfAbsent(account, created);
+                if (feed == null) {
+                    created.subscribers.add(subscriber);
+                    created.schedule(0);
+                    return;
+                }
+            }
+            synchronized (feed) {
+                //A feed that lost its last subscriber is gone; start over
+                if (!feed.stopped) {
+                    feed.subscribers.add(subscriber);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop delivering to a subscriber. An account without subscribers is
+     * no longer polled.
+     */
+    public void unsubscribe(YambaAccount account, Subscriber subscriber) {
+        Feed feed = feeds.get(account);
+        if (feed == null) {
+            return;
+        }
+        synchronized (feed) {
+            feed.subscribers.remove(subscriber);
+            if (!feed.subscribers.isEmpty()) {
+                return;
+            }
+            feed.stop();
+        }
+        feeds.remove(account, feed);
+    }
+
+    /**
+     * @return current delay between polls of an account in milliseconds,
+     * or -1 if it is not being polled
+     */
+    public long getIntervalMillis(YambaAccount account) {
+        Feed feed = feeds.get(account);
+        return (feed == null) ? -1 : TimeUnit.NANOSECONDS.toMillis(feed.cadence.getIntervalNanos());
+    }
+
+    /** @return number of accounts being polled */
+    public int size() {
+        return feeds.size();
+    }
+
+    /**
+     * Stop polling. Polls in progress complete but are not repeated.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The delay between polls of one account. The post rate is a moving
+     * average of new statuses per nanosecond; the next poll is due when
+     * about half a page is expected. Not thread safe.
+     */
+    static final class Cadence {
+        /* Weight of the latest poll in the rate average */
+        private static final double SMOOTHING = 0.5;
+
+        private final long minNanos;
+        private final long maxNanos;
+        private final double targetStatuses;
+        private final RetryPolicy backoff;
+
+        private double rate = -1;
+        /* Read by getIntervalMillis from other threads */
+        private volatile long intervalNanos;
+        private int failures;
+
+        Cadence(long minNanos, long maxNanos, int pageSize) {
+            this.minNanos = minNanos;
+            this.maxNanos = maxNanos;
+            this.targetStatuses = Math.max(1, pageSize / 2.0);
+            this.backoff = new RetryPolicy(Integer.MAX_VALUE,
+                    TimeUnit.NANOSECONDS.toMillis(minNanos),
+                    TimeUnit.NANOSECONDS.toMillis(maxNanos));
+            this.intervalNanos = minNanos;
+        }
+
+        long getIntervalNanos() { return intervalNanos; }
+
+        /**
+         * @param received new statuses found by the poll
+         * @param elapsedNanos time since the previous poll, or 0 for the first
+         * @param full true if the poll returned a whole page, so more may
+         *             have been missed
+         * @return delay until the next poll
+         */
+        long onSuccess(int received, long elapsedNanos, boolean full) {
+            failures = 0;
+            if (elapsedNanos > 0) {
+                double sample = (double) received / elapsedNanos;
+                rate = (rate < 0) ? sample : SMOOTHING * sample + (1 - SMOOTHING) * rate;
+            }
+            if (full || rate < 0) {
+                intervalNanos = minNanos;
+            } else if (rate == 0) {
+                //Nothing seen yet to estimate from
+                intervalNanos = Math.min(maxNanos, intervalNanos * 2);
+            } else {
+                intervalNanos = (long) Math.max(minNanos, Math.min(maxNanos, targetStatuses / rate));
+            }
+            return intervalNanos;
+        }
+
+        /**
+         * @return delay until the next poll
+         */
+        long onFailure(YambaClientException e) {
+            failures++;
+            if (e instanceof YambaClientUnauthorizedException) {
+                //Retrying soon will not fix the credentials
+                intervalNanos = maxNanos;
+            } else {
+                intervalNanos = TimeUnit.MILLISECONDS.toNanos(backoff.getDelayMillis(failures));
+            }
+            return intervalNanos;
+        }
+    }
+
+    /**
+     * One account: its syncer, subscribers and polling state. At most one
+     * poll of a feed is scheduled or running at any time.
+     */
+    private final class Feed implements Runnable {
+        final YambaAccount account;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final Cadence cadence = new Cadence(minIntervalNanos, maxIntervalNanos, pageSize);
+
+        /* Guarded by this */
+        boolean stopped;
+        private ScheduledFuture<?> next;
+
+        /* Only touched by this feed's polls, which never overlap */
+        private final TimelineSyncer syncer;
+        private long polledAt;
+
+        Feed(YambaAccount account, CursorYambaClientInterface client) {
+            this.account = account;
+            this.syncer = new TimelineSyncer(client, TimelineSyncer.HEAD, pageSize,
+                    TimelineSyncer.DEFAULT_MAX_PAGES);
+        }
+
+        synchronized void schedule(long delayNanos) {
+            if (stopped) {
+                return;
+            }
+            try {
+                next = executor.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                //Poller is closed
+                stopped = true;
+            }
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            if (next != null) {
+                next.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            long delay = maxIntervalNanos;
+            try {
+                delay = poll();
+            } finally {
+                schedule(jitter(delay));
+            }
+        }
+
+        private long poll() {
+            long now = System.nanoTime();
+            long elapsed = (polledAt == 0) ? 0 : now - polledAt;
+            polledAt = now;
+
+            List<YambaStatus> fresh;
+            try {
+                fresh = syncer.sync();
+            } catch (YambaClientException e) {
+                for (Subscriber subscriber : subscribers) {
+                    try {
+                        subscriber.onFailure(account, e);
+                    } catch (RuntimeException failure) {
+                        log(failure);
+                    }
+                }
+                return cadence.onFailure(e);
+            }
+
+            if (!fresh.isEmpty()) {
+                List<YambaStatus> delivered = Collections.unmodifiableList(fresh);
+                for (Subscriber subscriber : subscribers) {
+                    try {
+                        subscriber.onStatuses(account, delivered);
+                    } catch (RuntimeException failure) {
+                        log(failure);
+                    }
+                }
+            }
+            //A whole page or more, or a gap left open, means the account is busy
+            return cadence.onSuccess(fresh.size(), elapsed,
+                    fresh.size() >= pageSize || syncer.hasGap());
+        }
+    }
+
+    /* Spreads polls by up to a tenth so accounts started together drift apart */
+    private long jitter(long delayNanos) {
+        double factor;
+        synchronized (random) {
+            factor = 0.9 + 0.2 * random.nextDouble();
+        }
+        return (long) (delayNanos * factor);
+    }
+
+    private static void log(RuntimeException e) {
+        YambaPlatform platform = YambaPlatform.get();
+        if (platform.isDebugEnabled(TAG)) {
+            platform.logDebug(TAG, "Subscriber failed: " + e);
+        }
+    }
+
+    /**
+     * Builder for {@link TimelinePoller}
+     */
+    public static final class Builder {
+        private String apiRoot;
+        private YambaClientConfig config;
+        private int threads = DEFAULT_THREADS;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private long minIntervalMillis = DEFAULT_MIN_INTERVAL_MILLIS;
+        private long maxIntervalMillis = DEFAULT_MAX_INTERVAL_MILLIS;
+
+        public Builder() {
+        }
+
+        /**
+         * @param apiRoot endpoint of every account; defaults to
+         *                {@link YambaClient#DEFAULT_API_ROOT}
+         */
+        public Builder setApiRoot(String apiRoot) {
+            this.apiRoot = apiRoot;
+            return this;
+        }
+
+        /**
+         * @param config configuration shared by every client
+         */
+        public Builder setConfig(YambaClientConfig config) {
+            this.config = config;
+            return this;
+        }
+
+        /**
+         * @param threads polls run at once across all accounts
+         */
+        public Builder setThreads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads <= 0");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param pageSize statuses requested per poll
+         */
+        public Builder setPageSize(int pageSize) {
+            if (pageSize <= 0) {
+                throw new IllegalArgumentException("pageSize <= 0");
+            }
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * @param minMillis shortest delay between polls of one account
+         * @param maxMillis longest delay, reached by idle or failing accounts
+         */
+        public Builder setIntervals(long minMillis, long maxMillis) {
+            if (minMillis <= 0 || maxMillis < minMillis) {
+                throw new IllegalArgumentException("Invalid poll intervals");
+            }
+            this.minIntervalMillis = minMillis;
+            this.maxIntervalMillis = maxMillis;
+            return this;
+        }
+
+        public TimelinePoller build() {
+            return new TimelinePoller(this);
+        }
+    }
+}
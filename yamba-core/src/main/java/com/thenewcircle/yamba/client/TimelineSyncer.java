@@ -0,0 +1,198 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incrementally synchronizes a timeline, fetching only statuses that have
+ * not been seen yet.
+ *
+ * <p>Each {@link #sync()} asks the server for statuses newer than the last
+ * one delivered. When a page comes back full there may be more statuses
+ * between that page and the last delivered one; the syncer keeps paging
+ * back with {@code max_id} until the gap is closed. If the gap cannot be
+ * closed within the page budget of one call, it is remembered and filled
+ * first on the next call, so no status is skipped.
+ */
+public class TimelineSyncer {
+    /**
+     * Default number of statuses requested per page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Default number of pages fetched by a single sync
+     */
+    public static final int DEFAULT_MAX_PAGES = 10;
+
+    /**
+     * Pass as {@code sinceId} to start from the current head of the
+     * timeline: the first sync returns only the newest page, and nothing
+     * older is backfilled.
+     */
+    public static final long HEAD = -1;
+
+    private static final Comparator<YambaStatus> NEWEST_FIRST = new Comparator<YambaStatus>() {
+        @Override
+        public int compare(YambaStatus lhs, YambaStatus rhs) {
+            return (lhs.getId() < rhs.getId()) ? 1 : (lhs.getId() == rhs.getId() ? 0 : -1);
+        }
+    };
+
+    private final CursorYambaClientInterface client;
+    private final int pageSize;
+    private final int maxPages;
+
+    /* Everything up to and including this id has been delivered */
+    private long sinceId;
+    /* When non-zero, statuses in (sinceId, gapMaxId] are still missing */
+    private long gapMaxId;
+    /* Newest id delivered so far */
+    private long headId;
+
+    private int pagesLeft;
+
+    /**
+     * Sync from the current head of the timeline with default paging; see
+     * {@link #HEAD}.
+     * @param client Client to fetch with
+     */
+    public TimelineSyncer(CursorYambaClientInterface client) {
+        this(client, HEAD, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * @param client Client to fetch with
+     * @param sinceId Id of the newest status already held by the caller, 0
+     *                to fetch the whole timeline, or {@link #HEAD}
+     * @param pageSize Statuses requested per page
+     * @param maxPages Pages fetched by a single sync
+     */
+    public TimelineSyncer(CursorYambaClientInterface client, long sinceId,
+                          int pageSize, int maxPages) {
+        if (client == null) {
+            throw new IllegalArgumentException("Client must not be null");
+        }
+        if (sinceId < HEAD) {
+            throw new IllegalArgumentException("Invalid sinceId");
+        }
+        if (pageSize <= 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("Paging limits must be positive");
+        }
+        this.client = client;
+        this.sinceId = sinceId;
+        this.headId = Math.max(sinceId, 0);
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Fetch the statuses posted since the previous sync.
+     *
+     * @return new statuses, newest first; empty if nothing changed
+     * @throws YambaClientException
+     */
+    public synchronized List<YambaStatus> sync() throws YambaClientException {
+        List<YambaStatus> fetched = new ArrayList<>();
+        pagesLeft = maxPages;
+
+        if (sinceId == HEAD) {
+            //Start from the newest page; older statuses are not wanted
+            pagesLeft--;
+            fetched.addAll(client.getTimelineRange(0, 0, pageSize));
+            headId = maxId(fetched);
+            sinceId = headId;
+            return deduplicate(fetched);
+        }
+
+        if (gapMaxId != 0) {
+            //Finish the backfill left over from the previous sync
+            long remaining = fetchRange(sinceId, gapMaxId, fetched);
+            if (remaining != 0) {
+                gapMaxId = remaining;
+                return deduplicate(fetched);
+            }
+            gapMaxId = 0;
+            sinceId = headId;
+        }
+
+        if (pagesLeft > 0) {
+            List<YambaStatus> newer = new ArrayList<>();
+            long remaining = fetchRange(sinceId, 0, newer);
+            fetched.addAll(newer);
+            long newest = maxId(newer);
+            if (newest > headId) {
+                headId = newest;
+            }
+            if (remaining != 0) {
+                gapMaxId = remaining;
+            } else {
+                sinceId = headId;
+            }
+        }
+
+        return deduplicate(fetched);
+    }
+
+    /** @return id of the newest status delivered so far */
+    public synchronized long getLastId() { return headId; }
+
+    /** @return true if older statuses are still waiting to be backfilled */
+    public synchronized boolean hasGap() { return gapMaxId != 0; }
+
+    /**
+     * Page back through (since, max] until a short page shows the range is
+     * exhausted or the page budget runs out.
+     *
+     * @return 0 if the range was drained, otherwise the max id still to fetch
+     */
+    private long fetchRange(long since, long max, List<YambaStatus> out)
+            throws YambaClientException {
+        long cursor = max;
+        while (pagesLeft > 0) {
+            pagesLeft--;
+            List<YambaStatus> page = client.getTimelineRange(since, cursor, pageSize);
+            out.addAll(page);
+            if (page.size() < pageSize) {
+                return 0;
+            }
+            cursor = minId(page) - 1;
+            if (cursor <= since) {
+                return 0;
+            }
+        }
+        return cursor;
+    }
+
+    private static long minId(List<YambaStatus> statuses) {
+        long min = Long.MAX_VALUE;
+        for (YambaStatus status : statuses) {
+            min = Math.min(min, status.getId());
+        }
+        return min;
+    }
+
+    private static long maxId(List<YambaStatus> statuses) {
+        long max = 0;
+        for (YambaStatus status : statuses) {
+            max = Math.max(max, status.getId());
+        }
+        return max;
+    }
+
+    private static List<YambaStatus> deduplicate(List<YambaStatus> statuses) {
+        Set<Long> seen = new HashSet<>(statuses.size() * 2);
+        List<YambaStatus> result = new ArrayList<>(statuses.size());
+        for (YambaStatus status : statuses) {
+            if (seen.add(status.getId())) {
+                result.add(status);
+            }
+        }
+        Collections.sort(result, NEWEST_FIRST);
+        return result;
+    }
+}
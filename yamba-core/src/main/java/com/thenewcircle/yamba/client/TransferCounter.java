@@ -0,0 +1,43 @@
+package com.thenewcircle.yamba.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts bytes on the wire against the bytes they decode to, showing what
+ * compression saves. Share one instance between clients through
+ * {@link YambaClientConfig.Builder#setTransferCounter}.
+ */
+public final class TransferCounter {
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong decodedBytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong uncompressedBytesSent = new AtomicLong();
+
+    /** @return response body bytes read from the network */
+    public long getBytesReceived() { return bytesReceived.get(); }
+
+    /** @return response body bytes after decompression */
+    public long getDecodedBytesReceived() { return decodedBytesReceived.get(); }
+
+    /** @return request body bytes written to the network */
+    public long getBytesSent() { return bytesSent.get(); }
+
+    /** @return request body bytes before compression */
+    public long getUncompressedBytesSent() { return uncompressedBytesSent.get(); }
+
+    /** @return bytes kept off the network by compression in both directions */
+    public long getBytesSaved() {
+        return decodedBytesReceived.get() - bytesReceived.get()
+                + uncompressedBytesSent.get() - bytesSent.get();
+    }
+
+    void recordReceived(long wireBytes, long decodedBytes) {
+        bytesReceived.addAndGet(wireBytes);
+        decodedBytesReceived.addAndGet(decodedBytes);
+    }
+
+    void recordSent(long wireBytes, long uncompressedBytes) {
+        bytesSent.addAndGet(wireBytes);
+        uncompressedBytesSent.addAndGet(uncompressedBytes);
+    }
+}
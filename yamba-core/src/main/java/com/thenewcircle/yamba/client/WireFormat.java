@@ -0,0 +1,37 @@
+package com.thenewcircle.yamba.client;
+
+/**
+ * Representation requested from the server. Both formats carry the same
+ * statuses; JSON responses are usually smaller and cheaper to parse.
+ */
+public enum WireFormat {
+    XML(".xml"),
+    JSON(".json");
+
+    private final String extension;
+
+    WireFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /** @return suffix of the endpoints serving this format */
+    String getExtension() { return extension; }
+
+    /**
+     * Guess the format of a response body from its first significant byte.
+     */
+    static WireFormat detect(byte[] body) {
+        int i = 0;
+        if (body.length >= 3 && (body[0] & 0xff) == 0xef
+                && (body[1] & 0xff) == 0xbb && (body[2] & 0xff) == 0xbf) {
+            //Skip a UTF-8 byte order mark
+            i = 3;
+        }
+        for (; i < body.length; i++) {
+            if (body[i] > ' ') {
+                return (body[i] == '[' || body[i] == '{') ? JSON : XML;
+            }
+        }
+        return XML;
+    }
+}
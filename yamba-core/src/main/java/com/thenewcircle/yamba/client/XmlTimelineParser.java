@@ -0,0 +1,168 @@
+package com.thenewcircle.yamba.client;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+
+/**
+ * Timeline parser for the XML endpoints, on top of the platform's
+ * {@link XmlPullParser}.
+ *
+ * <p>Element names are mapped to small integer codes as they are opened
+ * and kept on a fixed-size stack, so matching a text node against its
+ * enclosing elements costs two array reads.
+ */
+final class XmlTimelineParser extends TimelineParser {
+
+    /* Element codes */
+    private static final int TAG_OTHER = 0;
+    private static final int TAG_STATUS = 1;
+    private static final int TAG_ID = 2;
+    private static final int TAG_CREATED_AT = 3;
+    private static final int TAG_TEXT = 4;
+    private static final int TAG_USER = 5;
+    private static final int TAG_NAME = 6;
+    private static final int TAG_GEO = 7;
+    private static final int TAG_POINT = 8;
+
+    /* Deeper elements are tracked by depth only */
+    private static final int MAX_DEPTH = 32;
+
+    private final XmlPullParser xpp;
+    private final int[] tags = new int[MAX_DEPTH];
+    private final int[] textBounds = new int[2];
+    private int depth;
+
+    static XmlTimelineParser create() throws YambaClientException {
+        try {
+            return new XmlTimelineParser(YambaPlatform.get().newPullParser());
+        } catch (Exception e) {
+            throw new YambaClientException("Failed to create parser", e);
+        }
+    }
+
+    private XmlTimelineParser(XmlPullParser xpp) {
+        this.xpp = xpp;
+    }
+
+    @Override
+    WireFormat getFormat() { return WireFormat.XML; }
+
+    @Override
+    void reset(InputStream in) throws YambaClientException {
+        try {
+            xpp.setInput(in, "UTF-8");
+        } catch (XmlPullParserException e) {
+            throw new YambaClientException("Failed to create parser", e);
+        }
+        depth = 0;
+        finished = false;
+    }
+
+    @Override
+    boolean nextStatus() throws XmlPullParserException, IOException, ParseException {
+        clearStatus();
+
+        while (!finished) {
+            switch (xpp.next()) {
+                case XmlPullParser.END_DOCUMENT:
+                    finished = true;
+                    break;
+                case XmlPullParser.START_TAG:
+                    if (depth < MAX_DEPTH) {
+                        tags[depth] = getTagCode(xpp.getName());
+                    }
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    if (depth < MAX_DEPTH && tags[depth] == TAG_STATUS) {
+                        return true;
+                    }
+                    break;
+                case XmlPullParser.TEXT:
+                    if (depth < 2 || depth > MAX_DEPTH) {
+                        break;
+                    }
+                    int parent = tags[depth - 2];
+                    int tag = tags[depth - 1];
+                    if (parent == TAG_STATUS) {
+                        if (tag == TAG_ID) {
+                            char[] text = xpp.getTextCharacters(textBounds);
+                            id = parseLong(text, textBounds[0], textBounds[1]);
+                        } else if (tag == TAG_CREATED_AT) {
+                            char[] text = xpp.getTextCharacters(textBounds);
+                            createdAt = CreatedAtDecoder.decode(
+                                    text, textBounds[0], textBounds[1]);
+                        } else if (tag == TAG_TEXT) {
+                            message = xpp.getText();
+                        }
+                    } else if (parent == TAG_USER && tag == TAG_NAME) {
+                        user = xpp.getText();
+                    } else if (parent == TAG_GEO && tag == TAG_POINT
+                            && depth >= 3 && tags[depth - 3] == TAG_STATUS) {
+                        char[] text = xpp.getTextCharacters(textBounds);
+                        parsePoint(text, textBounds[0], textBounds[1]);
+                    }
+                    break;
+            } // switch
+        }
+        return false;
+    }
+
+    @Override
+    boolean skipToEnd() throws XmlPullParserException, IOException {
+        while (!finished) {
+            switch (xpp.next()) {
+                case XmlPullParser.END_DOCUMENT:
+                    finished = true;
+                    break;
+                case XmlPullParser.START_TAG:
+                    if (getTagCode(xpp.getName()) == TAG_STATUS) {
+                        return false;
+                    }
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Map an element name to its code, checking the length before the
+     * characters so most names are rejected without a full comparison.
+     */
+    private static int getTagCode(String name) {
+        switch (name.length()) {
+            case 2:
+                return "id".equals(name) ? TAG_ID : TAG_OTHER;
+            case 3:
+                return "geo".equals(name) ? TAG_GEO : TAG_OTHER;
+            case 4:
+                if ("text".equals(name)) {
+                    return TAG_TEXT;
+                }
+                if ("user".equals(name)) {
+                    return TAG_USER;
+                }
+                return "name".equals(name) ? TAG_NAME : TAG_OTHER;
+            case 5:
+                //GeoRSS point, from a namespace aware parser
+                return "point".equals(name) ? TAG_POINT : TAG_OTHER;
+            case 6:
+                return "status".equals(name) ? TAG_STATUS : TAG_OTHER;
+            case 10:
+                return "created_at".equals(name) ? TAG_CREATED_AT : TAG_OTHER;
+            case 12:
+                return "georss:point".equals(name) ? TAG_POINT : TAG_OTHER;
+            default:
+                return TAG_OTHER;
+        }
+    }
+}
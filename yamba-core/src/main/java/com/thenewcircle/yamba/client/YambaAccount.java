@@ -0,0 +1,50 @@
+package com.thenewcircle.yamba.client;
+
+/**
+ * Credentials of one user, as managed by {@link YambaClientPool}.
+ */
+public final class YambaAccount {
+    private final String username;
+    private final String password;
+
+    /**
+     * @param username Account username
+     * @param password Account password
+     */
+    public YambaAccount(String username, String password) {
+        if (username == null || password == null) {
+            throw new IllegalArgumentException("Credentials must not be null");
+        }
+        this.username = username;
+        this.password = password;
+    }
+
+    /** @return the account username */
+    public String getUsername() { return username; }
+
+    /** @return the account password */
+    public String getPassword() { return password; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof YambaAccount)) {
+            return false;
+        }
+        YambaAccount other = (YambaAccount) o;
+        return username.equals(other.username) && password.equals(other.password);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * username.hashCode() + password.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        //Never print the password
+        return "YambaAccount[" + username + "]";
+    }
+}
@@ -0,0 +1,147 @@
+package com.thenewcircle.yamba.client;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A single asynchronous request. While the request runs, the connection
+ * opened by {@link YambaClient} is attached to it so that cancellation can
+ * abort the blocking socket read instead of waiting for it to time out.
+ *
+ * <p>The callback runs on the executor. A cancellation completes the task on
+ * the thread calling {@link #cancel(boolean)}, so its failure is posted back
+ * to the executor rather than reported on that thread.
+ */
+final class YambaCall<T> extends FutureTask<T> {
+
+    private static final ThreadLocal<YambaCall<?>> sCurrentCall = new ThreadLocal<>();
+
+    private final YambaCallback<T> callback;
+    private final Executor executor;
+    private HttpURLConnection connection;
+
+    YambaCall(Callable<T> request, YambaCallback<T> callback, Executor executor) {
+        super(request);
+        this.callback = callback;
+        this.executor = executor;
+    }
+
+    /**
+     * Register the connection used by the call running on this thread, if any.
+     */
+    static void attach(HttpURLConnection connection) {
+        YambaCall<?> call = sCurrentCall.get();
+        if (call != null) {
+            call.setConnection(connection);
+        }
+    }
+
+    /**
+     * Unregister the connection used by the call running on this thread.
+     */
+    static void detach() {
+        YambaCall<?> call = sCurrentCall.get();
+        if (call != null) {
+            call.setConnection(null);
+        }
+    }
+
+    /**
+     * @return true if the call running on this thread has been cancelled
+     */
+    static boolean isCurrentCallCancelled() {
+        YambaCall<?> call = sCurrentCall.get();
+        return call != null && call.isCancelled();
+    }
+
+    @Override
+    public void run() {
+        sCurrentCall.set(this);
+        try {
+            super.run();
+        } finally {
+            sCurrentCall.remove();
+        }
+    }
+
+    /**
+     * Complete the call with a failure without running it, for an executor
+     * that drops it.
+     */
+    void fail(YambaClientException e) {
+        setException(e);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!super.cancel(mayInterruptIfRunning)) {
+            return false;
+        }
+        HttpURLConnection active;
+        synchronized (this) {
+            active = connection;
+            connection = null;
+        }
+        if (active != null) {
+            active.disconnect();
+        }
+        return true;
+    }
+
+    @Override
+    protected void done() {
+        if (callback == null) {
+            return;
+        }
+        T result;
+        try {
+            result = get();
+        } catch (CancellationException e) {
+            reportCancelled(new YambaClientException("Request cancelled", e));
+            return;
+        } catch (InterruptedException e) {
+            //Not reachable once the task is done
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            callback.onFailure(unwrap(e.getCause()));
+            return;
+        }
+        callback.onSuccess(result);
+    }
+
+    private void reportCancelled(final YambaClientException e) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onFailure(e);
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            //Executor is shut down; report on this thread rather than never
+            callback.onFailure(e);
+        }
+    }
+
+    private synchronized void setConnection(HttpURLConnection connection) {
+        if (connection != null && isCancelled()) {
+            //Cancelled before the connection was attached
+            connection.disconnect();
+            return;
+        }
+        this.connection = connection;
+    }
+
+    private static YambaClientException unwrap(Throwable cause) {
+        if (cause instanceof YambaClientException) {
+            return (YambaClientException) cause;
+        }
+        return new YambaClientException("Unexpected error in request", cause);
+    }
+}
@@ -0,0 +1,20 @@
+package com.thenewcircle.yamba.client;
+
+/**
+ * Completion callback for {@link AsyncYambaClientInterface} requests.
+ * Methods are invoked on a thread of the executor that runs the request,
+ * including the failure reported when a request is cancelled. Only if that
+ * executor rejects the report is it delivered on the cancelling thread.
+ */
+public interface YambaCallback<T> {
+
+    /**
+     * @param result the value produced by the request
+     */
+    void onSuccess(T result);
+
+    /**
+     * @param e the reason the request failed or was cancelled
+     */
+    void onFailure(YambaClientException e);
+}
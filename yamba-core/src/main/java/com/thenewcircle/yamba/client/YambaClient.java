@@ -0,0 +1,907 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.thenewcircle.yamba.client.YambaClientMetrics.Operation;
+
+/**
+ * YambaClient
+ */
+public final class YambaClient implements CursorYambaClientInterface {
+    /**
+     * The default Yamba service
+     */
+    public static final String DEFAULT_API_ROOT = "http://yamba.newcircle.com/api";
+
+    /**
+     * Created at format
+     */
+    public static final String DATE_FORMAT_PATTERN = "EEE MMM dd HH:mm:ss Z yyyy";
+
+    private static final String TAG = "YambaClient";
+    private static final String DEFAULT_USER_AGENT = "YambaClient/2.0";
+
+    /**
+     * TimelineProcessor
+     */
+    public static interface TimelineProcessor {
+        /**
+         * @return true if the processor can accept more data
+         */
+        public boolean isRunnable();
+
+        /**
+         * Called before the first entry in the timeline
+         */
+        public void onStartProcessingTimeline();
+
+        /**
+         * Called after the last entry in the timeline
+         */
+        public void onEndProcessingTimeline();
+
+        /**
+         * @param id        the unique id for the status message
+         * @param createdAt creation time for the status message
+         * @param user      user posting the status message
+         * @param msg       the text of the status message
+         */
+        public void onTimelineStatus(long id, Date createdAt, String user, String msg);
+    }
+
+    /**
+     * Pull-based reader over an open timeline response. Statuses are parsed
+     * only as they are requested, so a consumer reading slowly holds back the
+     * network read. Always close the cursor; closing it early aborts the
+     * connection instead of downloading the remainder.
+     */
+    public static final class TimelineCursor implements Closeable {
+        private final YambaClient client;
+        private final HttpURLConnection connection;
+        private final TimelineParser parser;
+        private final int count;
+        /* Set when the response is being copied into the cache */
+        private final String cacheKey;
+        private final TeeInputStream cacheStream;
+        /* Set when the timeline is served from the cache */
+        private final List<YambaStatus> cachedStatuses;
+        private int position;
+        private boolean closed;
+        /* Statuses not matching are skipped; null to keep all */
+        private StatusFilter filter;
+        /* Request measurements, reported when the cursor is closed */
+        private long metricsTag;
+        private long startNanos;
+        private MeteredInputStream meter;
+        private MeteredInputStream decoded;
+        private InputStream decoder;
+        private long parseNanos;
+        private YambaClientException failure;
+
+        private TimelineCursor(YambaClient client, HttpURLConnection connection,
+                               TimelineParser parser, int count,
+                               String cacheKey, TeeInputStream cacheStream) {
+            this.client = client;
+            this.connection = connection;
+            this.parser = parser;
+            this.count = count;
+            this.cacheKey = cacheKey;
+            this.cacheStream = cacheStream;
+            this.cachedStatuses = null;
+        }
+
+        private TimelineCursor(YambaClient client, List<YambaStatus> cachedStatuses) {
+            this.client = client;
+            this.connection = null;
+            this.parser = null;
+            this.count = 0;
+            this.cacheKey = null;
+            this.cacheStream = null;
+            this.cachedStatuses = cachedStatuses;
+        }
+
+        /**
+         * @return the next status, or null once the timeline is exhausted
+         * @throws YambaClientException
+         */
+        public YambaStatus next() throws YambaClientException {
+            if (!moveToNext()) {
+                return null;
+            }
+            if (cachedStatuses != null) {
+                return cachedStatuses.get(position - 1);
+            }
+            return parser.toStatus();
+        }
+
+        /**
+         * Release the connection. Safe to call more than once.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (parser == null) {
+                return;
+            }
+
+            boolean reusable = parser.isFinished();
+            if (!reusable && count > 0 && position >= count) {
+                //A full page was consumed; keep the connection if nothing follows
+                try {
+                    reusable = parser.skipToEnd();
+                } catch (Exception e) {
+                    reusable = false;
+                }
+            }
+            parser.recycle();
+            if (reusable && cacheStream != null) {
+                byte[] body = cacheStream.getBytes();
+                if (body != null) {
+                    client.timelineCache.put(cacheKey,
+                            connection.getHeaderField("ETag"),
+                            connection.getHeaderField("Last-Modified"), body);
+                }
+            }
+            YambaCall.detach();
+            client.transport.releaseConnection(connection, reusable);
+            ContentEncoding.release(decoder);
+
+            TransferCounter counter = client.config.getTransferCounter();
+            if (counter != null) {
+                counter.recordReceived(meter.getBytes(), decoded.getBytes());
+            }
+            YambaClientMetrics metrics = client.metrics;
+            if (metrics != YambaClientMetrics.NO_OP) {
+                metrics.onTransfer(metricsTag, Operation.FETCH_TIMELINE,
+                        meter.getNanos(), 0, meter.getBytes());
+                metrics.onParse(metricsTag, Operation.FETCH_TIMELINE, parseNanos, position);
+                metrics.onRequestEnd(metricsTag, Operation.FETCH_TIMELINE,
+                        System.nanoTime() - startNanos, failure);
+            }
+        }
+
+        private boolean moveToNext() throws YambaClientException {
+            while (advance()) {
+                if (filter == null) {
+                    return true;
+                }
+                //Tested before any object is made for the status
+                boolean matches = (cachedStatuses != null)
+                        ? filter.matches(cachedStatuses.get(position - 1))
+                        : filter.matches(parser.getId(), parser.getCreatedAt(),
+                                parser.getUser(), parser.getMessageText());
+                if (matches) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean advance() throws YambaClientException {
+            if (closed) {
+                return false;
+            }
+            if (cachedStatuses != null) {
+                if (position < cachedStatuses.size()) {
+                    position++;
+                    return true;
+                }
+                close();
+                return false;
+            }
+            try {
+                boolean found;
+                if (meter == null) {
+                    found = parser.nextStatus();
+                } else {
+                    //Parse time excludes time spent blocked on the network
+                    long readNanos = meter.getNanos();
+                    long start = System.nanoTime();
+                    found = parser.nextStatus();
+                    parseNanos += System.nanoTime() - start - (meter.getNanos() - readNanos);
+                }
+                if (found) {
+                    position++;
+                    return true;
+                }
+            } catch (Exception e) {
+                failure = client.translateException(e);
+                close();
+                throw failure;
+            }
+            close();
+            return false;
+        }
+    }
+
+    private final String username;
+    private final String authorization;
+    private final String apiRoot;
+    private final URL postEndpoint;
+    private final YambaTransport transport;
+    private final TimelineCache timelineCache;
+    private final TimelineCoalescer timelineCoalescer;
+    private final YambaClientConfig config;
+    private final CircuitBreaker circuitBreaker;
+    private final YambaClientMetrics metrics;
+    private final WireFormat wireFormat;
+
+    /**
+     * A single attempt at a request, repeated by the retry loop
+     */
+    private interface Request<T> {
+        T execute() throws YambaClientException;
+    }
+
+    /* Singleton injected instance, read without locking on every getClient */
+    private static volatile YambaClientInterface sClientInstance;
+
+    /**
+     * Return a new client for the default endpoint
+     * @param username Account username
+     * @param password Account password
+     */
+    public static YambaClientInterface getClient(String username,
+                                                 String password) {
+        return getClient(username, password, null);
+    }
+
+    /**
+     * Return a new client for the default endpoint
+     * @param username Account username
+     * @param password Account password
+     * @param apiRoot Custom API endpoint URL
+     */
+    public static YambaClientInterface getClient(String username,
+                                                 String password,
+                                                 String apiRoot) {
+        return getClient(username, password, apiRoot, null);
+    }
+
+    /**
+     * Return a new client for a custom endpoint and configuration
+     * @param username Account username
+     * @param password Account password
+     * @param apiRoot Custom API endpoint URL
+     * @param config Client configuration, or null for the default
+     */
+    public static YambaClientInterface getClient(String username,
+                                                 String password,
+                                                 String apiRoot,
+                                                 YambaClientConfig config) {
+        YambaClientInterface injected = sClientInstance;
+        if (injected == null) {
+            return new YambaClient(username, password, apiRoot, config);
+        }
+
+        return injected;
+    }
+
+    /**
+     * Return a new client for a custom endpoint and configuration that
+     * supports cursor paging. An injected instance is returned only if it
+     * implements {@link CursorYambaClientInterface}.
+     * @param username Account username
+     * @param password Account password
+     * @param apiRoot Custom API endpoint URL
+     * @param config Client configuration, or null for the default
+     * @throws IllegalStateException if the injected instance cannot page
+     */
+    public static CursorYambaClientInterface getCursorClient(String username,
+                                                             String password,
+                                                             String apiRoot,
+                                                             YambaClientConfig config) {
+        YambaClientInterface injected = sClientInstance;
+        if (injected == null) {
+            return new YambaClient(username, password, apiRoot, config);
+        }
+        if (!(injected instanceof CursorYambaClientInterface)) {
+            throw new IllegalStateException(
+                    "Injected client does not implement CursorYambaClientInterface");
+        }
+
+        return (CursorYambaClientInterface) injected;
+    }
+
+    /**
+     * Inject a client instance. For use in automated test cases.
+     */
+    public static void setClientInstance(YambaClientInterface client) {
+        sClientInstance = client;
+    }
+
+    private YambaClient(String username, String password, String apiRoot,
+                        YambaClientConfig config) {
+        if (isEmpty(username)) {
+            throw new IllegalArgumentException("Username must not be blank");
+        }
+        this.username = username;
+
+        if (isEmpty(password)) {
+            throw new IllegalArgumentException("Password must not be blank");
+        }
+
+        if (isEmpty(apiRoot)) {
+            apiRoot = DEFAULT_API_ROOT;
+        }
+        try {
+            URL url = new URL(apiRoot);
+            this.apiRoot = apiRoot;
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid API Root: " + apiRoot);
+        }
+
+        this.authorization = getBasicAuthorization(username, password);
+
+        if (config == null) {
+            config = YambaClientConfig.getDefault();
+        }
+        this.config = config;
+        this.transport = config.getTransport();
+        this.timelineCache = config.getTimelineCache();
+        this.timelineCoalescer = config.getTimelineCoalescer();
+        this.metrics = config.getMetrics();
+        this.wireFormat = config.getWireFormat();
+        try {
+            this.postEndpoint = this.getUri("/statuses/update" + wireFormat.getExtension());
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid API Root: " + apiRoot);
+        }
+        this.circuitBreaker = CircuitBreaker.forEndpoint(this.apiRoot,
+                config.getBreakerThreshold(), config.getBreakerOpenMillis());
+    }
+
+    @Override
+    public void postStatus(String status) throws YambaClientException {
+        postStatus(status, Double.NaN, Double.NaN);
+    }
+
+    @Override
+    public void postStatus(final String status, final double latitude,
+                           final double longitude)
+            throws YambaClientException {
+        execute(config.getPostRetryPolicy(), new Request<Void>() {
+            @Override
+            public Void execute() throws YambaClientException {
+                sendStatus(status, latitude, longitude);
+                return null;
+            }
+        });
+    }
+
+    private void sendStatus(String status, double latitude, double longitude)
+            throws YambaClientException {
+        URL endpoint = this.postEndpoint;
+        long startNanos = System.nanoTime();
+        long tag = metrics.onRequestStart(Operation.POST_STATUS, endpoint);
+        long writeNanos = 0;
+        long bytesSent = 0;
+        YambaClientException error = null;
+        FormEncoder form = FormEncoder.obtain();
+        try {
+            form.add("status", status);
+            if (-90.00 <= latitude && latitude <= 90.00
+                    && -180.00 <= longitude && longitude <= 180.00) {
+                form.add("lat", String.valueOf(latitude));
+                form.add("long", String.valueOf(longitude));
+            }
+
+            HttpURLConnection connection = getConnection(endpoint,
+                    config.getPostConnectTimeout(), config.getPostReadTimeout());
+            byte[] body = form.getBuffer();
+            int bodyLength = form.getLength();
+            boolean completed = false;
+            try {
+                YambaPlatform platform = YambaPlatform.get();
+                if (platform.isDebugEnabled(TAG)) {
+                    platform.logDebug(TAG, "Submitting " + status + " to " + endpoint);
+                }
+                this.attachBasicAuthentication(connection);
+                connection.setRequestProperty("Content-Type", FormEncoder.CONTENT_TYPE);
+                if (config.isCompressPosts()) {
+                    body = ContentEncoding.gzip(body, bodyLength);
+                    bodyLength = body.length;
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                }
+                connection.setDoOutput(true);
+                //Stream the body as is instead of buffering a copy of it
+                connection.setFixedLengthStreamingMode(bodyLength);
+                connection.connect();
+                metrics.onConnect(tag, Operation.POST_STATUS, System.nanoTime() - startNanos);
+
+                //Write the form data
+                long writeStart = System.nanoTime();
+                OutputStream output = connection.getOutputStream();
+                try {
+                    output.write(body, 0, bodyLength);
+                } finally {
+                    output.close();
+                }
+                writeNanos = System.nanoTime() - writeStart;
+                bytesSent = bodyLength;
+                TransferCounter counter = config.getTransferCounter();
+                if (counter != null) {
+                    counter.recordSent(bodyLength, form.getLength());
+                }
+
+                //Verify response
+                connection.getResponseCode();
+                metrics.onFirstByte(tag, Operation.POST_STATUS, System.nanoTime() - startNanos);
+                this.checkResponse(connection);
+                completed = true;
+            } finally {
+                YambaCall.detach();
+                transport.releaseConnection(connection, completed);
+            }
+        } catch (Exception e) {
+            error = translateException(e);
+            throw error;
+        } finally {
+            form.recycle();
+            metrics.onTransfer(tag, Operation.POST_STATUS, writeNanos, bytesSent, 0);
+            metrics.onRequestEnd(tag, Operation.POST_STATUS,
+                    System.nanoTime() - startNanos, error);
+        }
+    }
+
+    @Override
+    public List<YambaStatus> getTimeline(final int maxPosts) throws YambaClientException {
+        return getTimelineRange(0, 0, maxPosts);
+    }
+
+    @Override
+    public List<YambaStatus> getTimelineSince(long sinceId, int count)
+            throws YambaClientException {
+        return getTimelineRange(sinceId, 0, count);
+    }
+
+    @Override
+    public List<YambaStatus> getTimelineRange(final long sinceId, final long maxId, int count)
+            throws YambaClientException {
+        if (timelineCoalescer == null) {
+            return readTimeline(sinceId, maxId, count, null);
+        }
+        //Same credentials, endpoint and range; the count is matched by the coalescer
+        String key = this.authorization + " " + this.apiRoot + wireFormat.getExtension()
+                + " " + sinceId + " " + maxId;
+        return timelineCoalescer.get(key, count, new TimelineCoalescer.Fetch() {
+            @Override
+            public List<YambaStatus> fetch(int count) throws YambaClientException {
+                return readTimeline(sinceId, maxId, count, null);
+            }
+        });
+    }
+
+    /**
+     * Fetch a page of the friends timeline, keeping only the statuses that
+     * match a filter. Statuses are tested as they are parsed and no object
+     * is made for those that do not match. Filtered requests are never
+     * coalesced.
+     *
+     * @param sinceId only statuses with a greater id, or 0
+     * @param maxId only statuses with a lower or equal id, or 0
+     * @param count number of statuses requested from the server
+     * @param filter condition the returned statuses meet
+     * @return the matching statuses, newest first
+     * @throws YambaClientException
+     */
+    public List<YambaStatus> getTimelineRange(long sinceId, long maxId, int count,
+                                              StatusFilter filter)
+            throws YambaClientException {
+        return readTimeline(sinceId, maxId, count, filter);
+    }
+
+    private List<YambaStatus> readTimeline(long sinceId, long maxId, int count,
+                                           StatusFilter filter)
+            throws YambaClientException {
+        List<YambaStatus> statuses = new ArrayList<YambaStatus>();
+
+        TimelineCursor cursor = openTimeline(sinceId, maxId, count, filter);
+        try {
+            YambaStatus status;
+            while (statuses.size() < count && (status = cursor.next()) != null) {
+                statuses.add(status);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return statuses;
+    }
+
+    /**
+     * Fetch a page of the friends timeline into a compact batch. Statuses
+     * go straight from the parser into the batch, without intermediate
+     * {@link YambaStatus} or {@code Date} objects.
+     *
+     * @param sinceId only statuses with a greater id, or 0
+     * @param maxId only statuses with a lower or equal id, or 0
+     * @param count max on length of the timeline
+     * @return the statuses, newest first
+     * @throws YambaClientException
+     */
+    public TimelineBatch getTimelineBatch(long sinceId, long maxId, int count)
+            throws YambaClientException {
+        TimelineBatch.Builder batch = new TimelineBatch.Builder(count);
+
+        TimelineCursor cursor = openTimeline(sinceId, maxId, count);
+        try {
+            TimelineParser parser = cursor.parser;
+            while (batch.size() < count && cursor.moveToNext()) {
+                if (parser == null) {
+                    batch.add(cursor.cachedStatuses.get(cursor.position - 1));
+                } else {
+                    batch.add(parser.getId(), parser.getCreatedAt(), parser.getUser(),
+                            parser.getMessage(), parser.getLatitude(), parser.getLongitude());
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return batch.build();
+    }
+
+    /**
+     * Stream the friends timeline to a processor. Statuses are handed over
+     * as they are parsed; once the processor stops accepting data the
+     * connection is aborted rather than read to the end.
+     *
+     * @param sinceId only statuses with a greater id, or 0
+     * @param maxId only statuses with a lower or equal id, or 0
+     * @param count number of statuses requested from the server, or 0
+     * @param hdlr callback handler for each status
+     * @throws YambaClientException
+     */
+    @Override
+    public void fetchTimeline(long sinceId, long maxId, int count,
+                              TimelineProcessor hdlr)
+            throws YambaClientException {
+        fetchTimeline(sinceId, maxId, count, null, hdlr);
+    }
+
+    /**
+     * Stream the statuses of the friends timeline that match a filter to a
+     * processor. Statuses that do not match are skipped as they are
+     * parsed, without making any object for them.
+     *
+     * @param sinceId only statuses with a greater id, or 0
+     * @param maxId only statuses with a lower or equal id, or 0
+     * @param count number of statuses requested from the server, or 0
+     * @param filter condition the statuses handed over meet, or null for all
+     * @param hdlr callback handler for each status
+     * @throws YambaClientException
+     */
+    public void fetchTimeline(long sinceId, long maxId, int count, StatusFilter filter,
+                              TimelineProcessor hdlr)
+            throws YambaClientException {
+        TimelineCursor cursor = openTimeline(sinceId, maxId, count, filter);
+        try {
+            hdlr.onStartProcessingTimeline();
+            TimelineParser parser = cursor.parser;
+            while (hdlr.isRunnable() && cursor.moveToNext()) {
+                if (parser == null) {
+                    YambaStatus status = cursor.cachedStatuses.get(cursor.position - 1);
+                    hdlr.onTimelineStatus(status.getId(), status.getCreatedAt(),
+                            status.getUser(), status.getMessage());
+                    continue;
+                }
+                long createdAt = parser.getCreatedAt();
+                hdlr.onTimelineStatus(parser.getId(),
+                        (createdAt == YambaStatus.NO_DATE) ? null : new Date(createdAt),
+                        parser.getUser(), parser.getMessage());
+            }
+            hdlr.onEndProcessingTimeline();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Open the friends timeline for reading one status at a time. Nothing
+     * is read from the network until {@link TimelineCursor#next()} asks for
+     * it. The cursor must be closed; closing it before the end aborts the
+     * connection.
+     *
+     * @param sinceId only statuses with a greater id, or 0
+     * @param maxId only statuses with a lower or equal id, or 0
+     * @param count number of statuses requested from the server, or 0
+     * @return an open cursor positioned before the first status
+     * @throws YambaClientException
+     */
+    public TimelineCursor openTimeline(long sinceId, long maxId, int count)
+            throws YambaClientException {
+        return openTimeline(sinceId, maxId, count, null);
+    }
+
+    /**
+     * Open the friends timeline for reading the statuses that match a
+     * filter, one at a time. Statuses that do not match are skipped as
+     * they are parsed.
+     *
+     * @param sinceId only statuses with a greater id, or 0
+     * @param maxId only statuses with a lower or equal id, or 0
+     * @param count number of statuses requested from the server, or 0
+     * @param filter condition the statuses returned meet, or null for all
+     * @return an open cursor positioned before the first matching status
+     * @throws YambaClientException
+     */
+    public TimelineCursor openTimeline(long sinceId, long maxId, int count,
+                                       StatusFilter filter)
+            throws YambaClientException {
+        if (filter != null) {
+            //The server can apply the id range itself
+            sinceId = Math.max(sinceId, filter.getSinceId());
+            if (filter.getMaxId() > 0) {
+                maxId = (maxId > 0) ? Math.min(maxId, filter.getMaxId()) : filter.getMaxId();
+            }
+        }
+        TimelineCursor cursor = openCursor(sinceId, maxId, count);
+        cursor.filter = filter;
+        return cursor;
+    }
+
+    private TimelineCursor openCursor(final long sinceId, final long maxId, final int count)
+            throws YambaClientException {
+        return execute(config.getTimelineRetryPolicy(), new Request<TimelineCursor>() {
+            @Override
+            public TimelineCursor execute() throws YambaClientException {
+                return connectTimeline(sinceId, maxId, count);
+            }
+        });
+    }
+
+    private TimelineCursor connectTimeline(long sinceId, long maxId, int count)
+            throws YambaClientException {
+        URL endpoint;
+        try {
+            endpoint = this.getUri("/statuses/friends_timeline" + wireFormat.getExtension()
+                    + getTimelineQuery(sinceId, maxId, count));
+        } catch (MalformedURLException e) {
+            throw translateException(e);
+        }
+        long startNanos = System.nanoTime();
+        long tag = metrics.onRequestStart(Operation.FETCH_TIMELINE, endpoint);
+        try {
+            HttpURLConnection connection = this.getConnection(endpoint,
+                    config.getTimelineConnectTimeout(), config.getTimelineReadTimeout());
+            TimelineCursor cursor = null;
+            InputStream decoder = null;
+            try {
+                YambaPlatform platform = YambaPlatform.get();
+                if (platform.isDebugEnabled(TAG)) {
+                    platform.logDebug(TAG, "Getting " + endpoint);
+                }
+                this.attachBasicAuthentication(connection);
+                connection.setDoInput(true);
+                if (config.isAcceptCompression()) {
+                    connection.setRequestProperty("Accept-Encoding",
+                            ContentEncoding.ACCEPT_ENCODING);
+                }
+
+                //Revalidate a cached copy instead of downloading it again
+                String cacheKey = null;
+                TimelineCache.Entry cached = null;
+                if (timelineCache != null) {
+                    cacheKey = this.username + " " + endpoint;
+                    cached = timelineCache.get(cacheKey);
+                    if (cached != null) {
+                        if (cached.etag != null) {
+                            connection.setRequestProperty("If-None-Match", cached.etag);
+                        }
+                        if (cached.lastModified != null) {
+                            connection.setRequestProperty("If-Modified-Since",
+                                    cached.lastModified);
+                        }
+                    }
+                }
+
+                connection.connect();
+                metrics.onConnect(tag, Operation.FETCH_TIMELINE, System.nanoTime() - startNanos);
+                int responseCode = connection.getResponseCode();
+                metrics.onFirstByte(tag, Operation.FETCH_TIMELINE, System.nanoTime() - startNanos);
+                if (cached != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    timelineCache.recordHit(cached);
+                    List<YambaStatus> statuses = cached.getStatuses();
+                    YambaCall.detach();
+                    transport.releaseConnection(connection, true);
+                    cursor = new TimelineCursor(this, statuses);
+                    metrics.onRequestEnd(tag, Operation.FETCH_TIMELINE,
+                            System.nanoTime() - startNanos, null);
+                    return cursor;
+                }
+                //Verify response
+                this.checkResponse(connection);
+
+                //The cursor owns the connection from here on
+                TransferCounter counter = config.getTransferCounter();
+                InputStream in = connection.getInputStream();
+                MeteredInputStream meter = null;
+                if (metrics != YambaClientMetrics.NO_OP || counter != null) {
+                    meter = new MeteredInputStream(in);
+                    in = meter;
+                }
+                //Decode whatever the server sent, asked for or not
+                decoder = ContentEncoding.decode(in, connection.getContentEncoding());
+                in = decoder;
+                MeteredInputStream decoded = null;
+                if (counter != null) {
+                    decoded = new MeteredInputStream(in);
+                    in = decoded;
+                }
+                TeeInputStream cacheStream = null;
+                if (timelineCache != null) {
+                    timelineCache.recordMiss();
+                    cacheStream = new TeeInputStream(in, TimelineCache.DEFAULT_MAX_ENTRY_BYTES);
+                    in = cacheStream;
+                }
+                cursor = new TimelineCursor(this, connection, TimelineParser.obtain(in, wireFormat),
+                        count, cacheKey, cacheStream);
+                cursor.metricsTag = tag;
+                cursor.startNanos = startNanos;
+                cursor.meter = meter;
+                cursor.decoded = decoded;
+                cursor.decoder = decoder;
+                return cursor;
+            } finally {
+                if (cursor == null) {
+                    YambaCall.detach();
+                    transport.releaseConnection(connection, false);
+                    ContentEncoding.release(decoder);
+                }
+            }
+        } catch (Exception e) {
+            YambaClientException error = translateException(e);
+            metrics.onRequestEnd(tag, Operation.FETCH_TIMELINE,
+                    System.nanoTime() - startNanos, error);
+            throw error;
+        }
+    }
+
+    /**
+     * Run a request under the circuit breaker, retrying transient failures
+     * as the policy allows.
+     */
+    private <T> T execute(RetryPolicy policy, Request<T> request)
+            throws YambaClientException {
+        int attempts = 0;
+        while (true) {
+            if (!circuitBreaker.allowRequest()) {
+                throw new YambaClientCircuitOpenException(
+                        "Too many failures communicating to " + this.apiRoot);
+            }
+            try {
+                T result = request.execute();
+                circuitBreaker.recordSuccess();
+                return result;
+            } catch (YambaClientException e) {
+                if (YambaCall.isCurrentCallCancelled()) {
+                    //Aborted by the caller, not a failure of the service
+                    throw e;
+                }
+                if (e instanceof YambaClientIOException) {
+                    circuitBreaker.recordFailure();
+                } else {
+                    //The server answered, so it is reachable
+                    circuitBreaker.recordSuccess();
+                }
+
+                attempts++;
+                if (!policy.shouldRetry(attempts, e)) {
+                    throw e;
+                }
+                long delay = policy.getDelayMillis(attempts);
+                YambaPlatform platform = YambaPlatform.get();
+                if (platform.isDebugEnabled(TAG)) {
+                    platform.logDebug(TAG, "Retrying in " + delay + " ms after " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void checkResponse(HttpURLConnection connection)
+            throws YambaClientException, IOException {
+        int responseCode = connection.getResponseCode();
+        String reason = connection.getResponseMessage();
+        switch (responseCode) {
+            case 200:
+                return;
+            case 401:
+                throw new YambaClientUnauthorizedException(reason);
+            default:
+                if (responseCode >= 500) {
+                    //Server side trouble is worth retrying
+                    throw new YambaClientIOException("Server error ["
+                            + responseCode + "] from " + this.apiRoot + ": " + reason);
+                }
+                throw new YambaClientException("Unexpected response ["
+                        + responseCode + "] while posting update: " + reason);
+        }
+    }
+
+    private HttpURLConnection getConnection(URL endpoint, int connectTimeout,
+                                            int readTimeout) throws IOException {
+        HttpURLConnection connection = transport.openConnection(endpoint);
+        connection.setReadTimeout(readTimeout);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setRequestProperty("User-Agent", DEFAULT_USER_AGENT);
+        YambaCall.attach(connection);
+
+        return connection;
+    }
+
+    /* Package visible for benchmarks */
+    void attachBasicAuthentication(URLConnection connection) {
+        connection.setRequestProperty("Authorization", this.authorization);
+    }
+
+    /**
+     * @return value of the Authorization header for Basic authentication
+     */
+    static String getBasicAuthorization(String username, String password) {
+        String userpassword = username + ":" + password;
+        return "Basic " + YambaPlatform.get().encodeBase64(
+                userpassword.getBytes(Charset.forName("UTF-8")));
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.length() == 0;
+    }
+
+    private static String getTimelineQuery(long sinceId, long maxId, int count) {
+        StringBuilder query = new StringBuilder();
+        if (count > 0) {
+            query.append("&count=").append(count);
+        }
+        if (sinceId > 0) {
+            query.append("&since_id=").append(sinceId);
+        }
+        if (maxId > 0) {
+            query.append("&max_id=").append(maxId);
+        }
+        if (query.length() > 0) {
+            query.setCharAt(0, '?');
+        }
+        return query.toString();
+    }
+
+    private URL getUri(String relativePath) throws MalformedURLException {
+        return new URL(apiRoot + relativePath);
+    }
+
+    private YambaClientException translateException(Exception e) {
+        if (e instanceof YambaClientException) {
+            return (YambaClientException) e;
+        } else if (e instanceof SocketTimeoutException) {
+            return new YambaClientTimeoutException(
+                    "Timeout while communicating to " + this.apiRoot, e);
+        } else if (e instanceof IOException) {
+            return new YambaClientIOException(
+                    "I/O error while communicating to " + this.apiRoot, e);
+        } else {
+            return new YambaClientException(
+                    "Unexpected error while communicating to " + this.apiRoot, e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.thenewcircle.yamba.client;
+
+public class YambaClientCircuitOpenException extends YambaClientIOException {
+
+    private static final long serialVersionUID = 2849611804366101237L;
+
+    public YambaClientCircuitOpenException(String detailMessage) {
+        super(detailMessage);
+    }
+
+    public YambaClientCircuitOpenException(String detailMessage, Throwable throwable) {
+        super(detailMessage, throwable);
+    }
+}
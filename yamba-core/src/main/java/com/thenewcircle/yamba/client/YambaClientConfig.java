@@ -0,0 +1,295 @@
+package com.thenewcircle.yamba.client;
+
+/**
+ * Per-client settings for {@link YambaClient}. Instances are immutable and
+ * may be shared between clients; use {@link Builder} to create one.
+ */
+public final class YambaClientConfig {
+    /**
+     * Default connect and read timeout
+     */
+    public static final int DEFAULT_TIMEOUT = 60000;
+
+    /**
+     * Default number of consecutive failures that opens the circuit breaker;
+     * 0, so the breaker is off unless enabled with
+     * {@link Builder#setCircuitBreaker}
+     */
+    public static final int DEFAULT_BREAKER_THRESHOLD = 0;
+
+    /**
+     * Default time the circuit breaker stays open, once enabled
+     */
+    public static final long DEFAULT_BREAKER_OPEN_MILLIS = 30000;
+
+    private static YambaClientConfig sDefaultConfig;
+
+    private final YambaTransport transport;
+    private final TimelineCache timelineCache;
+    private final TimelineCoalescer timelineCoalescer;
+    private final int timelineConnectTimeout;
+    private final int timelineReadTimeout;
+    private final int postConnectTimeout;
+    private final int postReadTimeout;
+    private final RetryPolicy timelineRetryPolicy;
+    private final RetryPolicy postRetryPolicy;
+    private final int breakerThreshold;
+    private final long breakerOpenMillis;
+    private final YambaClientMetrics metrics;
+    private final boolean acceptCompression;
+    private final boolean compressPosts;
+    private final TransferCounter transferCounter;
+    private final WireFormat wireFormat;
+
+    /**
+     * Return the configuration used when none is supplied.
+     */
+    public static synchronized YambaClientConfig getDefault() {
+        if (sDefaultConfig == null) {
+            sDefaultConfig = new Builder().build();
+        }
+        return sDefaultConfig;
+    }
+
+    private YambaClientConfig(Builder builder) {
+        this.transport = (builder.transport == null)
+                ? PooledYambaTransport.getDefault() : builder.transport;
+        this.timelineCache = builder.timelineCache;
+        this.timelineCoalescer = builder.timelineCoalescer;
+        this.timelineConnectTimeout = builder.timelineConnectTimeout;
+        this.timelineReadTimeout = builder.timelineReadTimeout;
+        this.postConnectTimeout = builder.postConnectTimeout;
+        this.postReadTimeout = builder.postReadTimeout;
+        this.timelineRetryPolicy = builder.timelineRetryPolicy;
+        this.postRetryPolicy = builder.postRetryPolicy;
+        this.breakerThreshold = builder.breakerThreshold;
+        this.breakerOpenMillis = builder.breakerOpenMillis;
+        this.metrics = builder.metrics;
+        this.acceptCompression = builder.acceptCompression;
+        this.compressPosts = builder.compressPosts;
+        this.transferCounter = builder.transferCounter;
+        this.wireFormat = builder.wireFormat;
+    }
+
+    /** @return the transport used to open and recycle connections */
+    public YambaTransport getTransport() { return transport; }
+
+    /** @return the timeline response cache, or null if caching is off */
+    public TimelineCache getTimelineCache() { return timelineCache; }
+
+    /** @return the coalescer shared by concurrent timeline requests, or null if off */
+    public TimelineCoalescer getTimelineCoalescer() { return timelineCoalescer; }
+
+    /** @return connect timeout for timeline requests, in milliseconds */
+    public int getTimelineConnectTimeout() { return timelineConnectTimeout; }
+
+    /** @return read timeout for timeline requests, in milliseconds */
+    public int getTimelineReadTimeout() { return timelineReadTimeout; }
+
+    /** @return connect timeout for status posts, in milliseconds */
+    public int getPostConnectTimeout() { return postConnectTimeout; }
+
+    /** @return read timeout for status posts, in milliseconds */
+    public int getPostReadTimeout() { return postReadTimeout; }
+
+    /** @return retry policy for timeline requests */
+    public RetryPolicy getTimelineRetryPolicy() { return timelineRetryPolicy; }
+
+    /** @return retry policy for status posts */
+    public RetryPolicy getPostRetryPolicy() { return postRetryPolicy; }
+
+    /** @return consecutive failures that open the circuit breaker, 0 if disabled */
+    public int getBreakerThreshold() { return breakerThreshold; }
+
+    /** @return time the circuit breaker stays open, in milliseconds */
+    public long getBreakerOpenMillis() { return breakerOpenMillis; }
+
+    /** @return instrumentation hooks, never null */
+    public YambaClientMetrics getMetrics() { return metrics; }
+
+    /** @return true if timeline responses may be gzip or deflate encoded */
+    public boolean isAcceptCompression() { return acceptCompression; }
+
+    /** @return true if status posts are sent gzip encoded */
+    public boolean isCompressPosts() { return compressPosts; }
+
+    /** @return counter of compressed and decoded bytes, or null */
+    public TransferCounter getTransferCounter() { return transferCounter; }
+
+    /** @return format of the endpoints used, never null */
+    public WireFormat getWireFormat() { return wireFormat; }
+
+    /**
+     * Builder for {@link YambaClientConfig}
+     */
+    public static final class Builder {
+        private YambaTransport transport;
+        private TimelineCache timelineCache;
+        private TimelineCoalescer timelineCoalescer;
+        private int timelineConnectTimeout = DEFAULT_TIMEOUT;
+        private int timelineReadTimeout = DEFAULT_TIMEOUT;
+        private int postConnectTimeout = DEFAULT_TIMEOUT;
+        private int postReadTimeout = DEFAULT_TIMEOUT;
+        private RetryPolicy timelineRetryPolicy = RetryPolicy.NONE;
+        private RetryPolicy postRetryPolicy = RetryPolicy.NONE;
+        private int breakerThreshold = DEFAULT_BREAKER_THRESHOLD;
+        private long breakerOpenMillis = DEFAULT_BREAKER_OPEN_MILLIS;
+        private YambaClientMetrics metrics = YambaClientMetrics.NO_OP;
+        private boolean acceptCompression = true;
+        private boolean compressPosts;
+        private TransferCounter transferCounter;
+        private WireFormat wireFormat = WireFormat.XML;
+
+        public Builder() {
+        }
+
+        /**
+         * @param transport connection source; defaults to the shared
+         *                  {@link PooledYambaTransport}
+         */
+        public Builder setTransport(YambaTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param timelineCache cache for timeline responses; null, the
+         *                      default, disables caching
+         */
+        public Builder setTimelineCache(TimelineCache timelineCache) {
+            this.timelineCache = timelineCache;
+            return this;
+        }
+
+        /**
+         * @param timelineCoalescer lets concurrent identical timeline
+         *                          requests share one fetch; null, the
+         *                          default, sends every request
+         */
+        public Builder setTimelineCoalescer(TimelineCoalescer timelineCoalescer) {
+            this.timelineCoalescer = timelineCoalescer;
+            return this;
+        }
+
+        /**
+         * @param connectMillis connect timeout for timeline requests
+         * @param readMillis read timeout for timeline requests
+         */
+        public Builder setTimelineTimeouts(int connectMillis, int readMillis) {
+            checkTimeouts(connectMillis, readMillis);
+            this.timelineConnectTimeout = connectMillis;
+            this.timelineReadTimeout = readMillis;
+            return this;
+        }
+
+        /**
+         * @param connectMillis connect timeout for status posts
+         * @param readMillis read timeout for status posts
+         */
+        public Builder setPostTimeouts(int connectMillis, int readMillis) {
+            checkTimeouts(connectMillis, readMillis);
+            this.postConnectTimeout = connectMillis;
+            this.postReadTimeout = readMillis;
+            return this;
+        }
+
+        /**
+         * @param policy retries for timeline requests; defaults to
+         *               {@link RetryPolicy#NONE}
+         */
+        public Builder setTimelineRetryPolicy(RetryPolicy policy) {
+            this.timelineRetryPolicy = (policy == null) ? RetryPolicy.NONE : policy;
+            return this;
+        }
+
+        /**
+         * Posts are not idempotent; a retried post whose first attempt
+         * reached the server is published twice.
+         *
+         * @param policy retries for status posts; defaults to
+         *               {@link RetryPolicy#NONE}
+         */
+        public Builder setPostRetryPolicy(RetryPolicy policy) {
+            this.postRetryPolicy = (policy == null) ? RetryPolicy.NONE : policy;
+            return this;
+        }
+
+        /**
+         * Enable the circuit breaker, which is off by default. Once open it
+         * fails requests fast with {@link YambaClientCircuitOpenException}.
+         * The breaker is shared by clients of the same API root configured
+         * with the same limits.
+         *
+         * @param failureThreshold consecutive failures that open the
+         *                         breaker, or 0 to disable it
+         * @param openMillis time the breaker rejects requests once open
+         */
+        public Builder setCircuitBreaker(int failureThreshold, long openMillis) {
+            if (failureThreshold < 0 || openMillis < 0) {
+                throw new IllegalArgumentException("Invalid circuit breaker limits");
+            }
+            this.breakerThreshold = failureThreshold;
+            this.breakerOpenMillis = openMillis;
+            return this;
+        }
+
+        /**
+         * @param metrics instrumentation hooks; defaults to
+         *                {@link YambaClientMetrics#NO_OP}
+         */
+        public Builder setMetrics(YambaClientMetrics metrics) {
+            this.metrics = (metrics == null) ? YambaClientMetrics.NO_OP : metrics;
+            return this;
+        }
+
+        /**
+         * @param accept ask for gzip or deflate encoded timelines, which
+         *               are decoded as they are parsed; defaults to true
+         */
+        public Builder setAcceptCompression(boolean accept) {
+            this.acceptCompression = accept;
+            return this;
+        }
+
+        /**
+         * Only enable this for servers known to accept a gzip encoded
+         * request body.
+         *
+         * @param compress send status posts gzip encoded; defaults to false
+         */
+        public Builder setCompressPosts(boolean compress) {
+            this.compressPosts = compress;
+            return this;
+        }
+
+        /**
+         * @param counter receives compressed and decoded byte counts;
+         *                null, the default, disables counting
+         */
+        public Builder setTransferCounter(TransferCounter counter) {
+            this.transferCounter = counter;
+            return this;
+        }
+
+        /**
+         * @param format endpoints to use; defaults to {@link WireFormat#XML}
+         */
+        public Builder setWireFormat(WireFormat format) {
+            if (format == null) {
+                throw new IllegalArgumentException("Wire format must not be null");
+            }
+            this.wireFormat = format;
+            return this;
+        }
+
+        private static void checkTimeouts(int connectMillis, int readMillis) {
+            if (connectMillis < 0 || readMillis < 0) {
+                throw new IllegalArgumentException("Timeouts must not be negative");
+            }
+        }
+
+        public YambaClientConfig build() {
+            return new YambaClientConfig(this);
+        }
+    }
+}
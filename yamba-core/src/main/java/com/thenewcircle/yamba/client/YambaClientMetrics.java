@@ -0,0 +1,104 @@
+package com.thenewcircle.yamba.client;
+
+import java.net.URL;
+
+/**
+ * Instrumentation hooks called by {@link YambaClient} for every request.
+ *
+ * <p>Callbacks run on the requesting thread, so implementations must be
+ * thread-safe and cheap. Every argument is a primitive or an object that
+ * already exists, so no garbage is created to report a measurement. All
+ * durations are in nanoseconds. The value returned by
+ * {@link #onRequestStart} is passed back to the other callbacks for the
+ * same request, which lets tracing implementations correlate them.
+ */
+public interface YambaClientMetrics {
+
+    /**
+     * Request types reported to the hooks
+     */
+    enum Operation {
+        POST_STATUS,
+        FETCH_TIMELINE
+    }
+
+    /**
+     * Metrics implementation that ignores everything
+     */
+    YambaClientMetrics NO_OP = new YambaClientMetrics() {
+        @Override
+        public long onRequestStart(Operation operation, URL endpoint) {
+            return 0;
+        }
+
+        @Override
+        public void onConnect(long tag, Operation operation, long nanos) {
+        }
+
+        @Override
+        public void onFirstByte(long tag, Operation operation, long nanos) {
+        }
+
+        @Override
+        public void onTransfer(long tag, Operation operation, long nanos,
+                               long bytesSent, long bytesReceived) {
+        }
+
+        @Override
+        public void onParse(long tag, Operation operation, long nanos, int statuses) {
+        }
+
+        @Override
+        public void onRequestEnd(long tag, Operation operation, long nanos,
+                                 YambaClientException error) {
+        }
+    };
+
+    /**
+     * A request is about to be sent.
+     *
+     * @return a tag passed to the other callbacks for this request
+     */
+    long onRequestStart(Operation operation, URL endpoint);
+
+    /**
+     * The connection was established.
+     *
+     * @param nanos time from request start
+     */
+    void onConnect(long tag, Operation operation, long nanos);
+
+    /**
+     * The response status line arrived.
+     *
+     * @param nanos time from request start
+     */
+    void onFirstByte(long tag, Operation operation, long nanos);
+
+    /**
+     * The response body was read.
+     *
+     * @param nanos time spent waiting on the network for the body
+     * @param bytesSent request body bytes
+     * @param bytesReceived response body bytes
+     */
+    void onTransfer(long tag, Operation operation, long nanos,
+                    long bytesSent, long bytesReceived);
+
+    /**
+     * The response body was parsed.
+     *
+     * @param nanos time spent parsing, excluding network waits
+     * @param statuses number of statuses parsed
+     */
+    void onParse(long tag, Operation operation, long nanos, int statuses);
+
+    /**
+     * The request finished.
+     *
+     * @param nanos time from request start
+     * @param error the failure, or null on success
+     */
+    void onRequestEnd(long tag, Operation operation, long nanos,
+                      YambaClientException error);
+}
@@ -0,0 +1,445 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Clients for many accounts of one service, sharing a single
+ * configuration (and with it the transport and response cache), one
+ * executor and the parser pool.
+ *
+ * <p>Every account has its own queue of requests and runs at most one
+ * at a time. Accounts with queued work take turns on the executor, one
+ * request per turn, so a large batch for one account cannot starve the
+ * others. An optional per-account rate limit delays an account's turn
+ * without holding a thread.
+ */
+public class YambaClientPool implements Closeable {
+    /**
+     * Default number of requests run at once
+     */
+    public static final int DEFAULT_THREADS = 8;
+
+    /**
+     * Receives the results of {@link #fetchTimelines}. Methods are invoked
+     * on pool threads, for each account as soon as its fetch completes.
+     */
+    public interface TimelineCallback {
+        /**
+         * @param account account that was fetched
+         * @param statuses statuses not returned by a previous fetch of the
+         *                 account, newest first
+         */
+        void onTimeline(YambaAccount account, List<YambaStatus> statuses);
+
+        /**
+         * @param account account that was fetched
+         * @param e the reason the fetch failed
+         */
+        void onFailure(YambaAccount account, YambaClientException e);
+    }
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final String apiRoot;
+    private final YambaClientConfig config;
+    private final ScheduledThreadPoolExecutor executor;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final ConcurrentMap<YambaAccount, Member> members = new ConcurrentHashMap<>();
+    /* Members with queued requests, including ones removed from the pool */
+    private final Set<Member> scheduled =
+            Collections.newSetFromMap(new ConcurrentHashMap<Member, Boolean>());
+
+    private YambaClientPool(Builder builder) {
+        this.apiRoot = builder.apiRoot;
+        this.config = (builder.config == null) ? YambaClientConfig.getDefault() : builder.config;
+        this.permitsPerSecond = builder.permitsPerSecond;
+        this.burst = builder.burst;
+
+        final AtomicInteger count = new AtomicInteger(1);
+        this.executor = new ScheduledThreadPoolExecutor(builder.threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "YambaClientPool #" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        TimelineParser.reservePoolCapacity(builder.threads);
+    }
+
+    /**
+     * Return the client for an account, creating it on first use.
+     */
+    public CursorYambaClientInterface getClient(YambaAccount account) {
+        return getMember(account).client;
+    }
+
+    /**
+     * Return an asynchronous client for an account whose requests go
+     * through the account's queue, subject to its rate limit.
+     */
+    public AsyncYambaClientInterface getAsyncClient(YambaAccount account) {
+        final Member member = getMember(account);
+        return AsyncYambaClient.wrap(member.client, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                member.submit(command);
+            }
+        });
+    }
+
+    /**
+     * Fetch the timelines of many accounts. Each account returns the
+     * statuses posted since its previous fetch through this pool, or the
+     * newest {@code count} on its first fetch.
+     *
+     * <p>An account with more new statuses than one request returns pages
+     * back with {@code max_id} until it has them all, through a
+     * {@link TimelineSyncer}. At most {@link TimelineSyncer#DEFAULT_MAX_PAGES}
+     * pages are fetched per account and call; any statuses left over are
+     * returned by the account's next fetches, older after newer, so none
+     * are skipped.
+     *
+     * @param accounts accounts to fetch
+     * @param count statuses requested per page
+     * @param callback receives each result as it completes
+     * @return completes once every account has been reported; cancelling
+     * it skips the fetches that have not started. It fails if the pool is
+     * closed before every fetch has run.
+     */
+    public Future<Void> fetchTimelines(Collection<YambaAccount> accounts, final int count,
+                                       final TimelineCallback callback) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        Batch batch = new Batch();
+        if (accounts.isEmpty()) {
+            batch.run();
+            return batch;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(accounts.size());
+        for (YambaAccount account : accounts) {
+            Member member = getMember(account);
+            member.submit(new Fetch(member, count, callback, batch, remaining));
+        }
+        return batch;
+    }
+
+    /**
+     * Forget an account. Requests already queued for it still run.
+     */
+    public void remove(YambaAccount account) {
+        members.remove(account);
+    }
+
+    /** @return number of accounts with a client in the pool */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Stop the pool. Requests that have not started fail with a
+     * {@link YambaClientException}, as do requests submitted afterwards.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (Member member : scheduled) {
+            member.failPending();
+        }
+    }
+
+    private Member getMember(YambaAccount account) {
+        Member member = members.get(account);
+        if (member == null) {
+            Member created = new Member(account, YambaClient.getCursorClient(
+                    account.getUsername(), account.getPassword(), apiRoot, config));
+            member = members.putIfAbsent(account, created);
+            if (member == null) {
+                member = created;
+            }
+        }
+        return member;
+    }
+
+    private void dispatch(Member member, long delayNanos) {
+        try {
+            if (delayNanos > 0) {
+                executor.schedule(member, delayNanos, TimeUnit.NANOSECONDS);
+            } else {
+                executor.execute(member);
+            }
+        } catch (RejectedExecutionException e) {
+            //Pool is closed; nothing will run the queued requests
+            member.failPending();
+        }
+    }
+
+    /**
+     * Completes once every account of a {@link #fetchTimelines} call has
+     * been reported
+     */
+    private static final class Batch extends FutureTask<Void> {
+        Batch() {
+            super(NO_OP, null);
+        }
+
+        void fail(YambaClientException e) {
+            setException(e);
+        }
+    }
+
+    /**
+     * Fetch of one account on behalf of a batch
+     */
+    private static final class Fetch implements Runnable {
+        private final Member member;
+        private final int count;
+        private final TimelineCallback callback;
+        private final Batch batch;
+        private final AtomicInteger remaining;
+
+        Fetch(Member member, int count, TimelineCallback callback, Batch batch,
+              AtomicInteger remaining) {
+            this.member = member;
+            this.count = count;
+            this.callback = callback;
+            this.batch = batch;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!batch.isDone()) {
+                    member.fetch(count, callback);
+                }
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    batch.run();
+                }
+            }
+        }
+
+        void fail(YambaClientException e) {
+            try {
+                callback.onFailure(member.account, e);
+            } finally {
+                batch.fail(e);
+            }
+        }
+    }
+
+    /**
+     * One account: its client, request queue and rate limit state. It is
+     * on the executor queue at most once, which is what makes the
+     * scheduling round robin.
+     */
+    private final class Member implements Runnable {
+        final YambaAccount account;
+        final CursorYambaClientInterface client;
+
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private boolean queued;
+        private double permits;
+        private long refilledAt;
+
+        /* Only touched by this member's requests, which never overlap */
+        private TimelineSyncer syncer;
+        private int syncerPageSize;
+
+        Member(YambaAccount account, CursorYambaClientInterface client) {
+            this.account = account;
+            this.client = client;
+            this.permits = burst;
+            this.refilledAt = System.nanoTime();
+        }
+
+        void submit(Runnable request) {
+            synchronized (this) {
+                pending.add(request);
+                if (queued) {
+                    return;
+                }
+                queued = true;
+                scheduled.add(this);
+            }
+            dispatch(this, 0);
+        }
+
+        /**
+         * Fail every request that has not started, once the pool is closed.
+         */
+        void failPending() {
+            List<Runnable> dropped;
+            synchronized (this) {
+                dropped = new ArrayList<>(pending);
+                pending.clear();
+                queued = false;
+                scheduled.remove(this);
+            }
+            YambaClientException e = new YambaClientException("Pool closed");
+            for (Runnable request : dropped) {
+                try {
+                    if (request instanceof Fetch) {
+                        ((Fetch) request).fail(e);
+                    } else if (request instanceof YambaCall) {
+                        ((YambaCall<?>) request).fail(e);
+                    }
+                } catch (RuntimeException thrown) {
+                    //A failing callback must not keep the other requests waiting
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable request;
+            long wait;
+            synchronized (this) {
+                wait = acquirePermit();
+                request = (wait == 0) ? pending.poll() : null;
+            }
+            try {
+                if (request != null) {
+                    request.run();
+                }
+            } finally {
+                boolean more;
+                synchronized (this) {
+                    more = !pending.isEmpty();
+                    queued = more;
+                    if (!more) {
+                        scheduled.remove(this);
+                    }
+                }
+                if (more) {
+                    dispatch(this, wait);
+                }
+            }
+        }
+
+        void fetch(int count, TimelineCallback callback) {
+            if (syncer == null) {
+                syncer = new TimelineSyncer(client, TimelineSyncer.HEAD, count,
+                        TimelineSyncer.DEFAULT_MAX_PAGES);
+                syncerPageSize = count;
+            } else if (syncerPageSize != count && !syncer.hasGap()) {
+                //Carry on from the newest status returned so far
+                syncer = new TimelineSyncer(client, syncer.getLastId(), count,
+                        TimelineSyncer.DEFAULT_MAX_PAGES);
+                syncerPageSize = count;
+            }
+            List<YambaStatus> statuses;
+            try {
+                statuses = syncer.sync();
+            } catch (YambaClientException e) {
+                callback.onFailure(account, e);
+                return;
+            }
+            callback.onTimeline(account, statuses);
+        }
+
+        /**
+         * Take a permit from the token bucket.
+         *
+         * @return 0 if a permit was taken, otherwise nanoseconds until one
+         * will be available
+         */
+        private long acquirePermit() {
+            if (permitsPerSecond <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            permits = Math.min(burst, permits + (now - refilledAt) * permitsPerSecond / 1e9);
+            refilledAt = now;
+            if (permits >= 1) {
+                permits -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - permits) * 1e9 / permitsPerSecond));
+        }
+    }
+
+    /**
+     * Builder for {@link YambaClientPool}
+     */
+    public static final class Builder {
+        private String apiRoot;
+        private YambaClientConfig config;
+        private int threads = DEFAULT_THREADS;
+        private double permitsPerSecond;
+        private int burst = 1;
+
+        public Builder() {
+        }
+
+        /**
+         * @param apiRoot endpoint of every account; defaults to
+         *                {@link YambaClient#DEFAULT_API_ROOT}
+         */
+        public Builder setApiRoot(String apiRoot) {
+            this.apiRoot = apiRoot;
+            return this;
+        }
+
+        /**
+         * @param config configuration shared by every client
+         */
+        public Builder setConfig(YambaClientConfig config) {
+            this.config = config;
+            return this;
+        }
+
+        /**
+         * @param threads requests run at once across all accounts
+         */
+        public Builder setThreads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads <= 0");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param permitsPerSecond sustained requests per second allowed for
+         *                         each account, or 0 for no limit
+         * @param burst requests an idle account may make back to back
+         */
+        public Builder setRateLimit(double permitsPerSecond, int burst) {
+            if (permitsPerSecond < 0 || burst < 1) {
+                throw new IllegalArgumentException("Invalid rate limit");
+            }
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        public YambaClientPool build() {
+            return new YambaClientPool(this);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.thenewcircle.yamba.client;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Services the client needs from the runtime it is running on: debug
+ * logging, Base64 encoding and XML pull parsers.
+ *
+ * <p>The base class works on any Java 7 JVM, logging through
+ * {@code java.util.logging} and loading a parser through
+ * {@link XmlPullParserFactory}, so an implementation such as kXML must be
+ * on the classpath. On Android the {@code yamba-client} module supplies a
+ * subclass backed by the framework, which is picked up automatically.
+ * Call {@link #install} before the first request to use something else.
+ */
+public class YambaPlatform {
+    private static final String ANDROID_PLATFORM =
+            "com.thenewcircle.yamba.client.AndroidYambaPlatform";
+
+    private static final char[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+                    .toCharArray();
+
+    private static volatile YambaPlatform sPlatform;
+
+    private XmlPullParserFactory factory;
+
+    /**
+     * Return the platform in use, detecting it on first call.
+     */
+    public static YambaPlatform get() {
+        YambaPlatform platform = sPlatform;
+        if (platform == null) {
+            synchronized (YambaPlatform.class) {
+                platform = sPlatform;
+                if (platform == null) {
+                    platform = findPlatform();
+                    sPlatform = platform;
+                }
+            }
+        }
+        return platform;
+    }
+
+    /**
+     * Replace the detected platform.
+     *
+     * @param platform platform to use from now on
+     */
+    public static void install(YambaPlatform platform) {
+        if (platform == null) {
+            throw new IllegalArgumentException("Platform must not be null");
+        }
+        sPlatform = platform;
+    }
+
+    /*
+     * The Android adapter lives in the Android module and is only looked
+     * up by name, so this module carries no reference to the framework.
+     */
+    private static YambaPlatform findPlatform() {
+        try {
+            Class.forName("android.os.Build");
+            return (YambaPlatform) Class.forName(ANDROID_PLATFORM).newInstance();
+        } catch (Exception e) {
+            return new YambaPlatform();
+        } catch (LinkageError e) {
+            return new YambaPlatform();
+        }
+    }
+
+    /**
+     * @param tag log tag of the caller
+     * @return true if debug messages for the tag would be written
+     */
+    public boolean isDebugEnabled(String tag) {
+        return Logger.getLogger(tag).isLoggable(Level.FINE);
+    }
+
+    /**
+     * Write a debug message.
+     *
+     * @param tag log tag of the caller
+     * @param message text to log
+     */
+    public void logDebug(String tag, String message) {
+        Logger.getLogger(tag).fine(message);
+    }
+
+    /**
+     * Encode bytes as unwrapped, padded Base64.
+     */
+    public String encodeBase64(byte[] data) {
+        char[] out = new char[(data.length + 2) / 3 * 4];
+        int o = 0;
+        int i = 0;
+        for (; i + 2 < data.length; i += 3) {
+            int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+            out[o++] = BASE64_ALPHABET[bits >>> 18];
+            out[o++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = BASE64_ALPHABET[(bits >>> 6) & 0x3f];
+            out[o++] = BASE64_ALPHABET[bits & 0x3f];
+        }
+        int remaining = data.length - i;
+        if (remaining > 0) {
+            int bits = (data[i] & 0xff) << 16;
+            if (remaining == 2) {
+                bits |= (data[i + 1] & 0xff) << 8;
+            }
+            out[o++] = BASE64_ALPHABET[bits >>> 18];
+            out[o++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = (remaining == 2) ? BASE64_ALPHABET[(bits >>> 6) & 0x3f] : '=';
+            out[o] = '=';
+        }
+        return new String(out);
+    }
+
+    /**
+     * Create a new, non namespace aware pull parser.
+     */
+    public synchronized XmlPullParser newPullParser() throws XmlPullParserException {
+        if (factory == null) {
+            factory = XmlPullParserFactory.newInstance();
+            factory.setNamespaceAware(false);
+        }
+        return factory.newPullParser();
+    }
+}
@@ -0,0 +1,68 @@
+package com.thenewcircle.yamba.client;
+
+
+import java.util.Date;
+
+/**
+ * YambaStatus
+ */
+public class YambaStatus {
+    /**
+     * Creation time of a status the server sent without one
+     */
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    private final long id;
+    private final long createdAt;
+    private final String user;
+    private final String message;
+    /* NaN when the status has no location */
+    private final double latitude;
+    private final double longitude;
+    private volatile Date createdAtDate;
+
+    YambaStatus(long id, long createdAt, String user, String message) {
+        this(id, createdAt, user, message, Double.NaN, Double.NaN);
+    }
+
+    YambaStatus(long id, long createdAt, String user, String message,
+                double latitude, double longitude) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.user = user;
+        this.message = message;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /** @return the record id */
+    public long getId() { return id; }
+
+    /** @return the record creation date */
+    public Date getCreatedAt() {
+        Date date = createdAtDate;
+        if (date == null && createdAt != NO_DATE) {
+            date = new Date(createdAt);
+            createdAtDate = date;
+        }
+        return date;
+    }
+
+    /** @return the record creation time in milliseconds since the epoch */
+    public long getCreatedAtMillis() { return createdAt; }
+
+    /** @return the record owner */
+    public String getUser() { return user; }
+
+    /** @return the message */
+    public String getMessage() { return message; }
+
+    /** @return true if the status was posted with a location */
+    public boolean hasLocation() { return !Double.isNaN(latitude); }
+
+    /** @return latitude the status was posted from, or NaN if it has no location */
+    public double getLatitude() { return latitude; }
+
+    /** @return longitude the status was posted from, or NaN if it has no location */
+    public double getLongitude() { return longitude; }
+}
@@ -0,0 +1,30 @@
+package com.thenewcircle.yamba.client;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Supplies and recycles the HTTP connections used by {@link YambaClient}.
+ */
+public interface YambaTransport {
+
+    /**
+     * Open a connection to the given endpoint. The connection is not yet
+     * connected; the caller configures and connects it.
+     *
+     * @param endpoint the request URL
+     * @return an unconnected HTTP connection
+     * @throws IOException
+     */
+    HttpURLConnection openConnection(URL endpoint) throws IOException;
+
+    /**
+     * Hand a connection back once the caller is finished with it.
+     *
+     * @param connection a connection obtained from {@link #openConnection(URL)}
+     * @param reusable true if the exchange completed normally and the
+     *                 underlying socket may be kept alive for another request
+     */
+    void releaseConnection(HttpURLConnection connection, boolean reusable);
+}
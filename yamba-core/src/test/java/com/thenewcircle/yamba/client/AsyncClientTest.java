@@ -0,0 +1,108 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class AsyncClientTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    AsyncYambaClientInterface mClient;
+
+    @Before
+    public void initClient() {
+        mClient = OfflineYambaClient.newAsyncClient();
+    }
+
+    @Test
+    public void postIsVisibleThroughFuture() throws Exception {
+        String statusMessage = "Yamba Async Test";
+        mClient.postStatus(statusMessage, null)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        List<YambaStatus> list = mClient.getTimeline(1, null)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(list.get(0).getMessage())
+                .named("status message")
+                .isEqualTo(statusMessage);
+    }
+
+    @Test
+    public void callbackReceivesTimeline() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<List<YambaStatus>> result = new AtomicReference<>();
+
+        mClient.getTimeline(1, new YambaCallback<List<YambaStatus>>() {
+            @Override
+            public void onSuccess(List<YambaStatus> statuses) {
+                result.set(statuses);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(YambaClientException e) {
+                latch.countDown();
+            }
+        });
+
+        assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(result.get()).isNotNull();
+        assertThat(result.get().size()).isAtMost(1);
+    }
+
+    @Test
+    public void cancellationIsReportedOnExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch blocked = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            final CountDownLatch latch = new CountDownLatch(1);
+            final AtomicReference<Thread> failedOn = new AtomicReference<>();
+            AsyncYambaClientInterface client =
+                    AsyncYambaClient.wrap(OfflineYambaClient.newClient(), executor);
+
+            Future<List<YambaStatus>> future = client.getTimeline(1,
+                    new YambaCallback<List<YambaStatus>>() {
+                        @Override
+                        public void onSuccess(List<YambaStatus> statuses) {
+                            latch.countDown();
+                        }
+
+                        @Override
+                        public void onFailure(YambaClientException e) {
+                            failedOn.set(Thread.currentThread());
+                            latch.countDown();
+                        }
+                    });
+            assertThat(future.cancel(true)).isTrue();
+            assertThat(failedOn.get()).isNull();
+            blocked.countDown();
+
+            assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+            assertThat(failedOn.get()).isNotNull();
+            assertThat(failedOn.get()).isNotSameAs(Thread.currentThread());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
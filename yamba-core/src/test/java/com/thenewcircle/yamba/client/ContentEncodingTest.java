@@ -0,0 +1,84 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class ContentEncodingTest {
+    private static final byte[] BODY = ("<statuses><status><id>1</id><text>Hello</text>"
+            + "</status></statuses>").getBytes(Charset.forName("UTF-8"));
+
+    @Test
+    public void passesIdentityThrough() throws Exception {
+        InputStream in = new ByteArrayInputStream(BODY);
+        assertThat(ContentEncoding.decode(in, null)).isSameAs(in);
+        assertThat(ContentEncoding.decode(in, "identity")).isSameAs(in);
+    }
+
+    @Test
+    public void decodesGzip() throws Exception {
+        InputStream decoded = ContentEncoding.decode(
+                new ByteArrayInputStream(ContentEncoding.gzip(BODY)), "GZIP");
+        assertThat(readFully(decoded)).isEqualTo(BODY);
+        ContentEncoding.release(decoded);
+    }
+
+    @Test
+    public void decodesZlibAndRawDeflate() throws Exception {
+        for (boolean nowrap : new boolean[]{false, true}) {
+            InputStream decoded = ContentEncoding.decode(
+                    new ByteArrayInputStream(deflate(BODY, nowrap)), "deflate");
+            assertThat(readFully(decoded)).isEqualTo(BODY);
+            ContentEncoding.release(decoded);
+        }
+    }
+
+    @Test
+    public void rejectsUnknownEncoding() throws Exception {
+        try {
+            ContentEncoding.decode(new ByteArrayInputStream(BODY), "br");
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void countsTransferredBytes() {
+        TransferCounter counter = new TransferCounter();
+        counter.recordReceived(40, 100);
+        counter.recordSent(30, 50);
+        assertThat(counter.getBytesReceived()).isEqualTo(40L);
+        assertThat(counter.getDecodedBytesReceived()).isEqualTo(100L);
+        assertThat(counter.getBytesSent()).isEqualTo(30L);
+        assertThat(counter.getUncompressedBytesSent()).isEqualTo(50L);
+        assertThat(counter.getBytesSaved()).isEqualTo(80L);
+    }
+
+    private static byte[] deflate(byte[] data, boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out,
+                new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap));
+        deflater.write(data);
+        deflater.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,43 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CreatedAtDecoderTest {
+
+    private static final String[] SAMPLES = {
+            "Tue Oct 13 18:42:07 +0000 2015",
+            "Thu Jan 01 00:00:00 +0000 1970",
+            "Mon Feb 29 23:59:59 -0800 2016",
+            "Sat Dec 31 12:30:45 +0530 1999",
+            "Wed Mar 01 01:02:03 -0330 2000",
+    };
+
+    @Test
+    public void matchesSimpleDateFormat() throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat(
+                YambaClient.DATE_FORMAT_PATTERN, Locale.US);
+        for (String sample : SAMPLES) {
+            assertThat(CreatedAtDecoder.decode(sample))
+                    .named(sample)
+                    .isEqualTo(format.parse(sample).getTime());
+        }
+    }
+
+    @Test
+    public void decodesFromBufferOffset() throws ParseException {
+        char[] buffer = ("  " + SAMPLES[0] + "\n").toCharArray();
+        assertThat(CreatedAtDecoder.decode(buffer, 0, buffer.length))
+                .isEqualTo(CreatedAtDecoder.decode(SAMPLES[0]));
+    }
+
+    @Test(expected = ParseException.class)
+    public void rejectsGarbage() throws ParseException {
+        CreatedAtDecoder.decode("not a date");
+    }
+}
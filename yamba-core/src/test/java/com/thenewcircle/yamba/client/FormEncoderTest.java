@@ -0,0 +1,60 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.net.URLEncoder;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class FormEncoderTest {
+
+    @Test
+    public void encodesLikeUrlEncoder() throws Exception {
+        String[] values = {
+                "",
+                "plain",
+                "Hello & welcome, 100% *._-~!'()",
+                "caf\u00e9 \u4e16\u754c \ud83d\ude00",
+                "unpaired \ud800 surrogate",
+        };
+        for (String value : values) {
+            FormEncoder form = FormEncoder.obtain();
+            try {
+                form.add("status", value).add("lat", "37.5");
+                assertThat(new String(form.getBuffer(), 0, form.getLength(), "US-ASCII"))
+                        .isEqualTo("status=" + URLEncoder.encode(value, "UTF-8") + "&lat=37.5");
+            } finally {
+                form.recycle();
+            }
+        }
+    }
+
+    @Test
+    public void startsEmptyAfterRecycling() {
+        FormEncoder form = FormEncoder.obtain();
+        form.add("status", "first");
+        form.recycle();
+
+        form = FormEncoder.obtain();
+        assertThat(form.getLength()).isEqualTo(0);
+        form.recycle();
+    }
+
+    @Test
+    public void growsForLongValues() throws Exception {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append('\u00e9');
+        }
+        FormEncoder form = FormEncoder.obtain();
+        form.add("status", value);
+        assertThat(form.getLength()).isEqualTo("status=".length() + 1000 * 6);
+        form.recycle();
+    }
+
+    @Test
+    public void precomputesBasicAuthorization() {
+        assertThat(YambaClient.getBasicAuthorization("student", "password"))
+                .isEqualTo("Basic c3R1ZGVudDpwYXNzd29yZA==");
+    }
+}
@@ -0,0 +1,93 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class GeoIndexTest {
+
+    private static List<Long> ids(List<YambaStatus> statuses) {
+        Long[] ids = new Long[statuses.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = statuses.get(i).getId();
+        }
+        return Arrays.asList(ids);
+    }
+
+    private static YambaStatus at(long id, double latitude, double longitude) {
+        return new YambaStatus(id, id * 1000, "student", "Status " + id, latitude, longitude);
+    }
+
+    private static GeoIndex newIndex(int capacity) {
+        GeoIndex index = new GeoIndex(capacity, GeoIndex.DEFAULT_CELL_DEGREES);
+        index.addAll(Arrays.asList(
+                at(1, 37.7749, -122.4194),      //San Francisco
+                at(2, 37.8044, -122.2712),      //Oakland
+                at(3, 51.5074, -0.1278),        //London
+                at(4, 37.3382, -121.8863),      //San Jose
+                at(5, -17.7134, 178.0650),      //Fiji
+                at(6, -16.9000, -179.9000),     //Across the antimeridian
+                new YambaStatus(7, 7000, "student", "No location")));
+        return index;
+    }
+
+    @Test
+    public void ignoresStatusesWithoutLocation() {
+        GeoIndex index = newIndex(100);
+
+        assertThat(index.size()).isEqualTo(6);
+        assertThat(index.add(new YambaStatus(8, 8000, "student", "Still none"))).isFalse();
+    }
+
+    @Test
+    public void findsStatusesInBoxNewestFirst() {
+        GeoIndex index = newIndex(100);
+
+        assertThat(ids(index.within(37, -123, 38, -121, 10)))
+                .containsExactly(4L, 2L, 1L).inOrder();
+        assertThat(ids(index.within(37, -123, 38, -121, 2))).containsExactly(4L, 2L).inOrder();
+        assertThat(index.within(0, 0, 10, 10, 10)).isEmpty();
+    }
+
+    @Test
+    public void boxMayCrossAntimeridian() {
+        GeoIndex index = newIndex(100);
+
+        assertThat(ids(index.within(-20, 170, -10, -170, 10))).containsExactly(6L, 5L).inOrder();
+    }
+
+    @Test
+    public void findsNearestByDistance() {
+        GeoIndex index = newIndex(100);
+
+        //Berkeley is closest to Oakland, then San Francisco, then San Jose
+        assertThat(ids(index.nearest(37.8715, -122.2730, 3)))
+                .containsExactly(2L, 1L, 4L).inOrder();
+        assertThat(ids(index.nearest(48.8566, 2.3522, 1))).containsExactly(3L);
+        assertThat(ids(index.nearest(-17, 179.99, 2))).containsExactly(6L, 5L).inOrder();
+        assertThat(index.nearest(0, 0, 100)).hasSize(6);
+    }
+
+    @Test
+    public void dropsOldestStatusesWhenFull() {
+        GeoIndex index = newIndex(3);
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(ids(index.nearest(37.8715, -122.2730, 3))).doesNotContain(1L);
+        assertThat(index.add(at(2, 0, 0))).isFalse();
+        assertThat(index.remove(6)).isTrue();
+        assertThat(index.remove(6)).isFalse();
+        assertThat(index.getCellCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void measuresGreatCircleDistance() {
+        //London to Paris is about 344 km
+        assertThat(GeoIndex.distanceMeters(51.5074, -0.1278, 48.8566, 2.3522))
+                .isWithin(1000.0).of(343500.0);
+        assertThat(GeoIndex.distanceMeters(10, 20, 10, 20)).isWithin(1e-6).of(0.0);
+    }
+}
@@ -0,0 +1,146 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class JsonTimelineParserTest {
+    private static final String TIMELINE = "[{\"id\":42,"
+            + "\"created_at\":\"Tue Oct 13 18:42:07 +0000 2015\","
+            + "\"entities\":{\"urls\":[{\"text\":\"]}\\\"\"}]},"
+            + "\"text\":\"Caf\\u00e9 \\\"au lait\\\" \u4e16\ud83d\ude00\","
+            + "\"retweeted_status\":{\"id\":7,\"user\":{\"name\":\"other\"}},"
+            + "\"user\":{\"id\":3,\"name\":\"student\"},\"favorited\":false},"
+            + "{\"id\":\"43\",\"text\":null,\"user\":{\"name\":\"student\"}}]\n";
+
+    @Test
+    public void readsStatusFieldsOnly() throws Exception {
+        TimelineParser parser = TimelineParser.obtain(stream(TIMELINE, 8192), WireFormat.JSON);
+        try {
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.getId()).isEqualTo(42L);
+            assertThat(parser.getCreatedAt()).isEqualTo(1444761727000L);
+            assertThat(parser.getUser()).isEqualTo("student");
+            assertThat(parser.getMessage()).isEqualTo("Caf\u00e9 \"au lait\" \u4e16\ud83d\ude00");
+
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.getId()).isEqualTo(43L);
+            assertThat(parser.getCreatedAt()).isEqualTo(YambaStatus.NO_DATE);
+            assertThat(parser.getMessage()).isNull();
+
+            assertThat(parser.nextStatus()).isFalse();
+            assertThat(parser.isFinished()).isTrue();
+        } finally {
+            parser.recycle();
+        }
+    }
+
+    @Test
+    public void filtersMessageBeforeMakingString() throws Exception {
+        StatusFilter filter = new StatusFilter.Builder().addWord("LAIT").build();
+        TimelineParser parser = TimelineParser.obtain(stream(TIMELINE, 8192), WireFormat.JSON);
+        try {
+            assertThat(parser.nextStatus()).isTrue();
+            CharSequence text = parser.getMessageText();
+            assertThat(text).isNotInstanceOf(String.class);
+            assertThat(filter.matches(parser.getId(), parser.getCreatedAt(),
+                    parser.getUser(), text)).isTrue();
+
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.getMessageText()).isNull();
+            assertThat(filter.matches(parser.getId(), parser.getCreatedAt(),
+                    parser.getUser(), parser.getMessageText())).isFalse();
+        } finally {
+            parser.recycle();
+        }
+    }
+
+    @Test
+    public void readsGeoPoint() throws Exception {
+        TimelineParser parser = TimelineParser.obtain(stream("[{\"id\":2,\"geo\":{\"type\":"
+                + "\"Point\",\"coordinates\":[-33.86,151.2,5]},\"text\":\"Sydney\"},"
+                + "{\"id\":1,\"geo\":null,\"text\":\"Nowhere\"}]", 1), WireFormat.JSON);
+        try {
+            assertThat(parser.nextStatus()).isTrue();
+            YambaStatus status = parser.toStatus();
+            assertThat(status.hasLocation()).isTrue();
+            assertThat(status.getLatitude()).isWithin(1e-9).of(-33.86);
+            assertThat(status.getLongitude()).isWithin(1e-9).of(151.2);
+            assertThat(status.getMessage()).isEqualTo("Sydney");
+
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.toStatus().hasLocation()).isFalse();
+        } finally {
+            parser.recycle();
+        }
+    }
+
+    @Test
+    public void readsAcrossBufferBoundaries() throws Exception {
+        //One byte per read splits every token and UTF-8 sequence
+        TimelineParser parser = TimelineParser.obtain(stream(TIMELINE, 1), WireFormat.JSON);
+        try {
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.getMessage()).isEqualTo("Caf\u00e9 \"au lait\" \u4e16\ud83d\ude00");
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.nextStatus()).isFalse();
+        } finally {
+            parser.recycle();
+        }
+    }
+
+    @Test
+    public void skipsToEndAfterLastStatus() throws Exception {
+        TimelineParser parser = TimelineParser.obtain(
+                stream("[{\"id\":1},{\"id\":2}]", 8192), WireFormat.JSON);
+        assertThat(parser.nextStatus()).isTrue();
+        assertThat(parser.skipToEnd()).isFalse();
+        parser.recycle();
+
+        parser = TimelineParser.obtain(stream("[{\"id\":1}] ", 8192), WireFormat.JSON);
+        assertThat(parser.nextStatus()).isTrue();
+        assertThat(parser.skipToEnd()).isTrue();
+        assertThat(parser.isFinished()).isTrue();
+        parser.recycle();
+    }
+
+    @Test
+    public void rejectsTruncatedTimeline() throws Exception {
+        TimelineParser parser = TimelineParser.obtain(
+                stream("[{\"id\":1},{\"text\":\"cut", 8192), WireFormat.JSON);
+        try {
+            assertThat(parser.nextStatus()).isTrue();
+            parser.nextStatus();
+            fail();
+        } catch (ParseException expected) {
+        } finally {
+            parser.recycle();
+        }
+    }
+
+    @Test
+    public void detectsFormatOfCachedBody() {
+        Charset utf8 = Charset.forName("UTF-8");
+        assertThat(WireFormat.detect(" [{}]".getBytes(utf8))).isEqualTo(WireFormat.JSON);
+        assertThat(WireFormat.detect("<?xml version=\"1.0\"?>".getBytes(utf8)))
+                .isEqualTo(WireFormat.XML);
+    }
+
+    private static InputStream stream(String json, final int chunk) {
+        return new FilterInputStream(new ByteArrayInputStream(
+                json.getBytes(Charset.forName("UTF-8")))) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, chunk));
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LocalTimelineStoreTest {
+
+    private static final int MAX_BYTES = 64 * 1024;
+
+    File mFile;
+    LocalTimelineStore mStore;
+
+    @Before
+    public void openStore() throws IOException {
+        mFile = new File(System.getProperty("java.io.tmpdir"),
+                "timeline-store-test.log");
+        mFile.delete();
+        mStore = LocalTimelineStore.open(mFile, MAX_BYTES);
+    }
+
+    @After
+    public void deleteStore() throws IOException {
+        mStore.close();
+        mFile.delete();
+    }
+
+    private static YambaStatus status(long id) {
+        return new YambaStatus(id, id * 1000, "user" + (id % 3), "message " + id);
+    }
+
+    @Test
+    public void duplicatesAreSkipped() throws IOException {
+        assertThat(mStore.append(status(1))).isTrue();
+        assertThat(mStore.append(status(1))).isFalse();
+        assertThat(mStore.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void newestAreReturnedFirst() throws IOException {
+        for (long id = 10; id > 0; id--) {
+            mStore.append(status(id));
+        }
+
+        List<YambaStatus> newest = mStore.getNewest(3);
+        assertThat(newest.size()).isEqualTo(3);
+        assertThat(newest.get(0).getId()).isEqualTo(10L);
+        assertThat(newest.get(2).getId()).isEqualTo(8L);
+        assertThat(newest.get(2).getMessage()).isEqualTo("message 8");
+
+        List<YambaStatus> range = mStore.getRange(4, 6, 10);
+        assertThat(range.size()).isEqualTo(2);
+        assertThat(range.get(0).getId()).isEqualTo(6L);
+
+        List<YambaStatus> between = mStore.getBetween(2000, 3000, 10);
+        assertThat(between.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void refreshLeavesNoGaps() throws Exception {
+        OfflineYambaClient network = new OfflineYambaClient.Builder().build();
+        LocalYambaClient local = LocalYambaClient.wrap(network, mStore);
+        local.refresh(5);
+        int posts = 5 * TimelineSyncer.DEFAULT_MAX_PAGES + 7;
+        for (int i = 0; i < posts; i++) {
+            network.postStatus("Gap Test " + i);
+        }
+
+        //More than one refresh can fetch; nothing is stored until the gap closes
+        assertThat(local.refresh(5)).isEqualTo(0);
+        assertThat(local.refresh(5)).isEqualTo(posts);
+        assertThat(mStore.getRange(0, 0, Integer.MAX_VALUE).size())
+                .isEqualTo(network.getSize());
+    }
+
+    @Test
+    public void refreshOfEmptyStoreStartsAtNewestPage() throws Exception {
+        OfflineYambaClient network = new OfflineYambaClient.Builder().build();
+        for (int i = 0; i < 2 * 5 * TimelineSyncer.DEFAULT_MAX_PAGES; i++) {
+            network.postStatus("History " + i);
+        }
+        LocalYambaClient local = LocalYambaClient.wrap(network, mStore);
+
+        assertThat(local.refresh(5)).isEqualTo(5);
+        assertThat(mStore.getNewestId()).isEqualTo(network.getTimeline(1).get(0).getId());
+
+        network.postStatus("After");
+        assertThat(local.refresh(5)).isEqualTo(1);
+        assertThat(mStore.size()).isEqualTo(6);
+    }
+
+    @Test
+    public void storeSurvivesReopen() throws IOException {
+        mStore.append(status(7));
+        mStore.close();
+
+        mStore = LocalTimelineStore.open(mFile, MAX_BYTES);
+        assertThat(mStore.get(7).getUser()).isEqualTo("user1");
+        assertThat(mStore.getNewestId()).isEqualTo(7L);
+    }
+
+    @Test
+    public void compactionKeepsNewestWithinCap() throws IOException {
+        for (long id = 1; id <= 5000; id++) {
+            mStore.append(status(id));
+        }
+
+        assertThat(mStore.size()).isLessThan(5000);
+        assertThat(mStore.getNewestId()).isEqualTo(5000L);
+        assertThat(mFile.length()).isAtMost((long) MAX_BYTES);
+    }
+}
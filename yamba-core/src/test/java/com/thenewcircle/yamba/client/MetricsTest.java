@@ -0,0 +1,43 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import com.thenewcircle.yamba.client.YambaClientMetrics.Operation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class MetricsTest {
+
+    @Test
+    public void histogramPercentilesBoundRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000000);      // 1 ms
+        }
+        histogram.record(1000000000);       // 1 s
+
+        assertThat(histogram.getCount()).isEqualTo(100L);
+        assertThat(histogram.getPercentileNanos(50)).isAtLeast(1000000L);
+        assertThat(histogram.getPercentileNanos(50)).isLessThan(2100000L);
+        assertThat(histogram.getPercentileNanos(100)).isAtLeast(1000000000L);
+    }
+
+    @Test
+    public void countingMetricsTracksErrorsByType() {
+        CountingYambaClientMetrics metrics = new CountingYambaClientMetrics();
+        long tag = metrics.onRequestStart(Operation.POST_STATUS, null);
+        metrics.onTransfer(tag, Operation.POST_STATUS, 10, 42, 0);
+        metrics.onRequestEnd(tag, Operation.POST_STATUS, 100,
+                new YambaClientTimeoutException("timed out"));
+
+        CountingYambaClientMetrics.OperationStats stats =
+                metrics.getStats(Operation.POST_STATUS);
+        assertThat(stats.getRequestCount()).isEqualTo(1L);
+        assertThat(stats.getErrorCount()).isEqualTo(1L);
+        assertThat(stats.getBytesSent()).isEqualTo(42L);
+        assertThat(metrics.getErrorCounts().get(YambaClientTimeoutException.class))
+                .isEqualTo(1L);
+        assertThat(metrics.getStats(Operation.FETCH_TIMELINE).getRequestCount())
+                .isEqualTo(0L);
+    }
+}
@@ -0,0 +1,47 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class OfflineYambaClientTest {
+
+    @Test
+    public void ringKeepsNewestStatuses() throws YambaClientException {
+        OfflineYambaClient client = new OfflineYambaClient.Builder()
+                .setCapacity(4)
+                .build();
+        for (int i = 0; i < 10; i++) {
+            client.postStatus("Status " + i);
+        }
+
+        List<YambaStatus> list = client.getTimeline(100);
+        assertThat(list).hasSize(4);
+        assertThat(list.get(0).getMessage()).isEqualTo("Status 9");
+        assertThat(list.get(3).getId()).isEqualTo(list.get(0).getId() - 3);
+    }
+
+    @Test
+    public void preloadsSyntheticStatuses() throws YambaClientException {
+        OfflineYambaClient client = new OfflineYambaClient.Builder()
+                .setCapacity(1 << 16)
+                .setSyntheticStatuses(100000, new StatusGenerator(42, 50, 140, 1000))
+                .build();
+
+        assertThat(client.getSize()).isEqualTo(1 << 16);
+        List<YambaStatus> page = client.getTimelineRange(99900, 99950, 20);
+        assertThat(page).hasSize(20);
+        assertThat(page.get(0).getId()).isEqualTo(99950L);
+        assertThat(page.get(0).getMessage()).hasLength(140);
+    }
+
+    @Test(expected = YambaClientIOException.class)
+    public void injectsFailures() throws YambaClientException {
+        new OfflineYambaClient.Builder()
+                .setFailureRate(1)
+                .build()
+                .getTimeline(1);
+    }
+}
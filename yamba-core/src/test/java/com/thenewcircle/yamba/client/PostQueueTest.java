@@ -0,0 +1,216 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class PostQueueTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    File mJournal;
+
+    /* Fails every post with the given exception */
+    private static class FailingClient implements YambaClientInterface {
+        private final Exception failure;
+
+        FailingClient(YambaClientException failure) {
+            this.failure = failure;
+        }
+
+        FailingClient(RuntimeException failure) {
+            this.failure = failure;
+        }
+
+        private YambaClientException failure() {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            return (YambaClientException) failure;
+        }
+
+        @Override
+        public void postStatus(String status) throws YambaClientException {
+            throw failure();
+        }
+
+        @Override
+        public void postStatus(String status, double latitude, double longitude)
+                throws YambaClientException {
+            throw failure();
+        }
+
+        @Override
+        public List<YambaStatus> getTimeline(int maxPosts) throws YambaClientException {
+            throw failure();
+        }
+    }
+
+    @Before
+    public void createJournal() {
+        mJournal = new File(System.getProperty("java.io.tmpdir"),
+                "post-queue-test.journal");
+        mJournal.delete();
+    }
+
+    @After
+    public void deleteJournal() {
+        mJournal.delete();
+    }
+
+    @Test
+    public void postIsDelivered() throws Exception {
+        YambaClientInterface client = OfflineYambaClient.newClient();
+        PostQueue queue = PostQueue.open(mJournal, client, PostQueue.DEFAULT_CONCURRENCY);
+        try {
+            queue.enqueue("Queued Test").get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertThat(client.getTimeline(1).get(0).getMessage()).isEqualTo("Queued Test");
+            assertThat(queue.getPendingCount()).isEqualTo(0);
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void unauthorizedIsTerminal() throws Exception {
+        PostQueue queue = PostQueue.open(mJournal,
+                new FailingClient(new YambaClientUnauthorizedException("denied")), 1);
+        try {
+            Future<Void> post = queue.enqueue("Rejected Test");
+            try {
+                post.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fail("Post should have failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(YambaClientUnauthorizedException.class);
+            }
+            assertThat(queue.getPendingCount()).isEqualTo(0);
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void unexpectedErrorFailsPost() throws Exception {
+        PostQueue queue = PostQueue.open(mJournal,
+                new FailingClient(new IllegalStateException("broken")), 1);
+        try {
+            Future<Void> post = queue.enqueue("Broken Test");
+            try {
+                post.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fail("Post should have failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(YambaClientException.class);
+                assertThat(e.getCause().getCause()).isInstanceOf(IllegalStateException.class);
+            }
+            assertThat(queue.getPendingCount()).isEqualTo(0);
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void rejectedStatusLeavesJournalIntact() throws Exception {
+        PostQueue queue = PostQueue.open(mJournal,
+                new FailingClient(new YambaClientIOException("offline")), 1);
+        char[] huge = new char[70000];
+        Arrays.fill(huge, 'x');
+        try {
+            queue.enqueue(new String(huge));
+            fail("Oversized status should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            queue.enqueue(null);
+            fail("Null status should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        queue.enqueue("Kept Test");
+        queue.close();
+
+        YambaClientInterface client = OfflineYambaClient.newClient();
+        queue = PostQueue.open(mJournal, client, 1);
+        try {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+            while (queue.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(client.getTimeline(1).get(0).getMessage()).isEqualTo("Kept Test");
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void closeFailsUndeliveredPosts() throws Exception {
+        PostQueue queue = PostQueue.open(mJournal,
+                new FailingClient(new YambaClientIOException("offline")), 1);
+        Future<Void> post = queue.enqueue("Undelivered Test");
+        queue.close();
+        try {
+            post.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Post should have failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(YambaClientException.class);
+        }
+    }
+
+    @Test
+    public void journalIsCompactedWhilePostsArePending() throws Exception {
+        YambaClientInterface client = new FailingClient(new YambaClientIOException("offline")) {
+            @Override
+            public void postStatus(String status, double latitude, double longitude)
+                    throws YambaClientException {
+                if (status.startsWith("Stuck")) {
+                    super.postStatus(status, latitude, longitude);
+                }
+            }
+        };
+        PostQueue queue = PostQueue.open(mJournal, client, 1);
+        char[] padding = new char[100];
+        Arrays.fill(padding, 'x');
+        try {
+            queue.enqueue("Stuck Test");
+            Future<Void> last = null;
+            for (int i = 0; i < 2000; i++) {
+                last = queue.enqueue("Delivered Test " + i + new String(padding));
+            }
+            last.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            //About 270 KB were journaled; only the stuck post is still live
+            assertThat(queue.getPendingCount()).isEqualTo(1);
+            assertThat(mJournal.length()).isLessThan(128L * 1024);
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void pendingPostsSurviveReopen() throws Exception {
+        PostQueue queue = PostQueue.open(mJournal,
+                new FailingClient(new YambaClientIOException("offline")), 1);
+        queue.enqueue("Recovered Test");
+        queue.close();
+
+        YambaClientInterface client = OfflineYambaClient.newClient();
+        queue = PostQueue.open(mJournal, client, 1);
+        try {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+            while (queue.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(client.getTimeline(1).get(0).getMessage()).isEqualTo("Recovered Test");
+        } finally {
+            queue.close();
+        }
+    }
+}
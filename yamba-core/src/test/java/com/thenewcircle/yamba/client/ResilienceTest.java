@@ -0,0 +1,151 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ResilienceTest {
+
+    @Test
+    public void breakerOpensAfterThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordFailure();
+        assertThat(breaker.isOpen()).isTrue();
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    public void breakerAllowsSingleTrialAfterCoolDown() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        breaker.recordFailure();
+
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.allowRequest()).isFalse();
+
+        breaker.recordSuccess();
+        assertThat(breaker.isOpen()).isFalse();
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void breakerIsOffUnlessConfigured() {
+        assertThat(YambaClientConfig.getDefault().getBreakerThreshold()).isEqualTo(0);
+        CircuitBreaker disabled = CircuitBreaker.forEndpoint("http://off.example/api", 0, 0);
+        for (int i = 0; i < 100; i++) {
+            disabled.recordFailure();
+        }
+        assertThat(disabled.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void breakersAreKeyedByLimits() {
+        String root = "http://shared.example/api";
+        CircuitBreaker strict = CircuitBreaker.forEndpoint(root, 1, 60000);
+        assertThat(CircuitBreaker.forEndpoint(root, 1, 60000)).isSameAs(strict);
+
+        strict.recordFailure();
+        assertThat(strict.allowRequest()).isFalse();
+        assertThat(CircuitBreaker.forEndpoint(root, 5, 60000).allowRequest()).isTrue();
+    }
+
+    @Test
+    public void retryOnlyTransientFailures() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+        assertThat(policy.shouldRetry(1, new YambaClientTimeoutException("slow"))).isTrue();
+        assertThat(policy.shouldRetry(3, new YambaClientTimeoutException("slow"))).isFalse();
+        assertThat(policy.shouldRetry(1, new YambaClientUnauthorizedException("denied")))
+                .isFalse();
+        assertThat(policy.shouldRetry(1, new YambaClientCircuitOpenException("open")))
+                .isFalse();
+    }
+
+    @Test
+    public void backoffStaysWithinBounds() {
+        RetryPolicy policy = new RetryPolicy(Integer.MAX_VALUE, 100, 1000);
+        for (int attempts = 1; attempts < 50; attempts++) {
+            long delay = policy.getDelayMillis(attempts);
+            assertThat(delay).isAtLeast(50L);
+            assertThat(delay).isAtMost(1000L);
+        }
+    }
+
+    @Test
+    public void cancelledRequestIsNotCountedOrRetried() throws Exception {
+        //Reads requests and never answers
+        final ServerSocket server = new ServerSocket(0);
+        final AtomicInteger accepted = new AtomicInteger();
+        final List<Socket> sockets = new ArrayList<>();
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        sockets.add(socket);
+                        //Counted once the headers are in, so the request is under way
+                        InputStream in = socket.getInputStream();
+                        int matched = 0;
+                        while (matched < 4) {
+                            int b = in.read();
+                            if (b < 0) {
+                                break;
+                            }
+                            matched = (b == "\r\n\r\n".charAt(matched)) ? matched + 1
+                                    : (b == '\r' ? 1 : 0);
+                        }
+                        accepted.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    //Server closed
+                }
+            }
+        });
+        acceptor.start();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            String root = "http://127.0.0.1:" + server.getLocalPort() + "/api";
+            YambaClientConfig config = new YambaClientConfig.Builder()
+                    .setCircuitBreaker(1, 60000)
+                    .setPostRetryPolicy(new RetryPolicy(3, 10, 10))
+                    .setPostTimeouts(5000, 10000)
+                    .build();
+            AsyncYambaClientInterface client = AsyncYambaClient.wrap(
+                    YambaClient.getClient("student", "password", root, config), executor);
+
+            Future<Void> post = client.postStatus("Cancelled Test", null);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (accepted.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(post.cancel(false)).isTrue();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(accepted.get()).isEqualTo(1);
+            assertThat(CircuitBreaker.forEndpoint(root, 1, 60000).isOpen()).isFalse();
+        } finally {
+            executor.shutdownNow();
+            server.close();
+            acceptor.join();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class StatusFilterTest {
+
+    @Test
+    public void matchesWholeWordsIgnoringCase() {
+        StatusFilter filter = new StatusFilter.Builder().addWord("#Yamba").addWord("java").build();
+
+        assertThat(filter.getTerms()).containsExactly("yamba", "java").inOrder();
+        assertThat(filter.matches(new YambaStatus(1, 0, "student", "Java on #yamba!"))).isTrue();
+        assertThat(filter.matches(new YambaStatus(2, 0, "student", "JavaScript on yamba"))).isFalse();
+        assertThat(filter.matches(new YambaStatus(3, 0, "student", null))).isFalse();
+    }
+
+    @Test
+    public void matchesUsersIdsAndTimes() {
+        StatusFilter filter = new StatusFilter.Builder()
+                .addUser("student")
+                .setIdRange(10, 20)
+                .setCreatedBetween(1000, 2000)
+                .build();
+
+        assertThat(filter.matches(new YambaStatus(15, 1500, "student", "Hi"))).isTrue();
+        assertThat(filter.matches(new YambaStatus(15, 1500, "teacher", "Hi"))).isFalse();
+        assertThat(filter.matches(new YambaStatus(10, 1500, "student", "Hi"))).isFalse();
+        assertThat(filter.matches(new YambaStatus(21, 1500, "student", "Hi"))).isFalse();
+        assertThat(filter.matches(new YambaStatus(15, 2001, "student", "Hi"))).isFalse();
+        assertThat(filter.matches(new YambaStatus(15, YambaStatus.NO_DATE, "student", "Hi")))
+                .isFalse();
+    }
+
+    @Test
+    public void emptyFilterMatchesEverything() {
+        StatusFilter filter = new StatusFilter.Builder().build();
+
+        assertThat(filter.matches(new YambaStatus(1, YambaStatus.NO_DATE, null, null))).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPhrases() {
+        new StatusFilter.Builder().addWord("two words");
+    }
+}
@@ -0,0 +1,105 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimelineBackfillTest {
+
+    private static OfflineYambaClient newClient(int statuses) {
+        return new OfflineYambaClient.Builder()
+                .setSyntheticStatuses(statuses, new StatusGenerator(7, 20, 140, 1000))
+                .build();
+    }
+
+    private static void assertNewestFirst(List<YambaStatus> statuses, long newestId) {
+        for (int i = 0; i < statuses.size(); i++) {
+            assertThat(statuses.get(i).getId()).isEqualTo(newestId - i);
+        }
+    }
+
+    @Test
+    public void fetchesManyPagesWithoutGaps() throws Exception {
+        OfflineYambaClient client = newClient(1000);
+        long newest = client.getTimeline(1).get(0).getId();
+
+        List<YambaStatus> statuses = new TimelineBackfill(client, 50, 4, null).fetch(730);
+
+        assertThat(statuses).hasSize(730);
+        assertNewestFirst(statuses, newest);
+    }
+
+    @Test
+    public void stopsAtOldestStatus() throws Exception {
+        OfflineYambaClient client = newClient(120);
+
+        List<YambaStatus> statuses = new TimelineBackfill(client, 50, 4, null).fetch(1000);
+
+        assertThat(statuses).hasSize(120);
+    }
+
+    @Test
+    public void ignoresStatusesPostedDuringFetch() throws Exception {
+        final OfflineYambaClient client = newClient(500);
+        long newest = client.getTimeline(1).get(0).getId();
+        CursorYambaClientInterface busy = new ForwardingClient(client) {
+            @Override
+            public List<YambaStatus> getTimelineRange(long sinceId, long maxId, int count)
+                    throws YambaClientException {
+                List<YambaStatus> page = super.getTimelineRange(sinceId, maxId, count);
+                client.postStatus("Posted while paging");
+                return page;
+            }
+        };
+
+        List<YambaStatus> statuses = new TimelineBackfill(busy, 25, 3, null).fetch(300);
+
+        assertThat(statuses).hasSize(300);
+        assertNewestFirst(statuses, newest);
+    }
+
+    private static class ForwardingClient implements CursorYambaClientInterface {
+        private final CursorYambaClientInterface delegate;
+
+        ForwardingClient(CursorYambaClientInterface delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void postStatus(String status) throws YambaClientException {
+            delegate.postStatus(status);
+        }
+
+        @Override
+        public void postStatus(String status, double latitude, double longitude)
+                throws YambaClientException {
+            delegate.postStatus(status, latitude, longitude);
+        }
+
+        @Override
+        public List<YambaStatus> getTimeline(int maxPosts) throws YambaClientException {
+            return delegate.getTimeline(maxPosts);
+        }
+
+        @Override
+        public List<YambaStatus> getTimelineSince(long sinceId, int count)
+                throws YambaClientException {
+            return delegate.getTimelineSince(sinceId, count);
+        }
+
+        @Override
+        public List<YambaStatus> getTimelineRange(long sinceId, long maxId, int count)
+                throws YambaClientException {
+            return delegate.getTimelineRange(sinceId, maxId, count);
+        }
+
+        @Override
+        public void fetchTimeline(long sinceId, long maxId, int count,
+                                  YambaClient.TimelineProcessor processor)
+                throws YambaClientException {
+            delegate.fetchTimeline(sinceId, maxId, count, processor);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimelineBatchTest {
+
+    @Test
+    public void storesColumnsInOrder() {
+        TimelineBatch batch = new TimelineBatch.Builder(1)
+                .add(3, 3000, "student", "Hello")
+                .add(2, YambaStatus.NO_DATE, "teacher", null)
+                .add(1, 1000, "student", "")
+                .build();
+
+        assertThat(batch.size()).isEqualTo(3);
+        assertThat(batch.getUserCount()).isEqualTo(2);
+        assertThat(batch.getId(0)).isEqualTo(3L);
+        assertThat(batch.getCreatedAtMillis(2)).isEqualTo(1000L);
+        assertThat(batch.getUser(2)).isSameAs(batch.getUser(0));
+        assertThat(batch.getMessage(0)).isEqualTo("Hello");
+        assertThat(batch.getMessage(1)).isNull();
+        assertThat(batch.getMessage(2)).isEqualTo("");
+    }
+
+    @Test
+    public void roundTripsUnicodeMessages() {
+        String message = "caf\u00e9 \u4e16\u754c \ud83d\ude00";
+        TimelineBatch batch = new TimelineBatch.Builder().add(1, 0, null, message).build();
+
+        assertThat(batch.getMessage(0)).isEqualTo(message);
+        assertThat(batch.getUser(0)).isNull();
+    }
+
+    @Test
+    public void viewsMatchOriginalStatuses() {
+        List<YambaStatus> statuses = Arrays.asList(
+                new YambaStatus(2, 2000, "student", "Second"),
+                new YambaStatus(1, YambaStatus.NO_DATE, "student", "First"));
+
+        List<YambaStatus> view = TimelineBatch.of(statuses).asList();
+
+        assertThat(view).hasSize(2);
+        assertThat(view.get(0).getId()).isEqualTo(2L);
+        assertThat(view.get(0).getCreatedAt().getTime()).isEqualTo(2000L);
+        assertThat(view.get(0).getMessage()).isEqualTo("Second");
+        assertThat(view.get(1).getCreatedAt()).isNull();
+        assertThat(view.get(1).getUser()).isEqualTo("student");
+    }
+
+    @Test
+    public void keepsLocationsOnlyWhereGiven() {
+        TimelineBatch batch = new TimelineBatch.Builder(1)
+                .add(1, 0, "student", "Here", 51.5, -0.125)
+                .add(2, 0, "student", "Nowhere")
+                .build();
+
+        assertThat(batch.getLatitude(0)).isWithin(1e-9).of(51.5);
+        assertThat(batch.get(0).getLongitude()).isWithin(1e-9).of(-0.125);
+        assertThat(batch.get(1).hasLocation()).isFalse();
+        assertThat(TimelineBatch.of(Arrays.asList(new YambaStatus(3, 0, "student", "None")))
+                .get(0).hasLocation()).isFalse();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexPastEnd() {
+        new TimelineBatch.Builder().add(1, 0, "student", "Hello").build().getId(1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimelineCacheTest {
+
+    private static final String KEY = "student http://localhost/api/statuses/friends_timeline.xml";
+    private static final String BODY = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<statuses type=\"array\"><status><text>Cached</text><id>5</id>"
+            + "<created_at>Tue Oct 13 18:42:07 +0000 2015</created_at>"
+            + "<user><name>student</name></user></status></statuses>";
+
+    File mDirectory;
+
+    @Before
+    public void createDirectory() {
+        mDirectory = new File(System.getProperty("java.io.tmpdir"),
+                "timeline-cache-test");
+    }
+
+    @After
+    public void clearDirectory() {
+        new TimelineCache(1, mDirectory, Long.MAX_VALUE).clear();
+    }
+
+    @Test
+    public void entryWithoutValidatorsIsNotStored() throws Exception {
+        TimelineCache cache = new TimelineCache(4);
+        cache.put(KEY, null, null, BODY.getBytes("UTF-8"));
+        assertThat(cache.get(KEY)).isNull();
+    }
+
+    @Test
+    public void diskTierSurvivesNewInstance() throws Exception {
+        new TimelineCache(4, mDirectory, Long.MAX_VALUE)
+                .put(KEY, "\"abc\"", null, BODY.getBytes("UTF-8"));
+
+        TimelineCache.Entry entry = new TimelineCache(4, mDirectory, Long.MAX_VALUE).get(KEY);
+        assertThat(entry).isNotNull();
+        assertThat(entry.etag).isEqualTo("\"abc\"");
+        assertThat(entry.getStatuses().size()).isEqualTo(1);
+        assertThat(entry.getStatuses().get(0).getMessage()).isEqualTo("Cached");
+    }
+
+    @Test
+    public void diskTierIsBounded() throws Exception {
+        TimelineCache cache = new TimelineCache(1, mDirectory, BODY.length() * 2);
+        for (int i = 0; i < 5; i++) {
+            cache.put(KEY + i, "\"" + i + "\"", null, BODY.getBytes("UTF-8"));
+        }
+
+        long size = 0;
+        for (File file : mDirectory.listFiles()) {
+            size += file.length();
+        }
+        assertThat(size).isAtMost(BODY.length() * 2L);
+    }
+
+    @Test
+    public void hitCountsSavedBytes() throws Exception {
+        TimelineCache cache = new TimelineCache(4);
+        cache.put(KEY, null, "Tue, 13 Oct 2015 18:42:07 GMT", BODY.getBytes("UTF-8"));
+        cache.recordHit(cache.get(KEY));
+        cache.recordMiss();
+
+        assertThat(cache.getHitCount()).isEqualTo(1L);
+        assertThat(cache.getMissCount()).isEqualTo(1L);
+        assertThat(cache.getBytesSaved()).isEqualTo((long) BODY.length());
+    }
+}
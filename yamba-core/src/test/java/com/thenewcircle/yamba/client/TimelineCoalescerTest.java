@@ -0,0 +1,192 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class TimelineCoalescerTest {
+
+    private static List<YambaStatus> timeline(int count) {
+        List<YambaStatus> statuses = new ArrayList<>();
+        for (int i = count; i > 0; i--) {
+            statuses.add(new YambaStatus(i, i * 1000L, "student", "Status " + i));
+        }
+        return statuses;
+    }
+
+    @Test
+    public void concurrentCallersShareOneFetch() throws Exception {
+        final TimelineCoalescer coalescer = new TimelineCoalescer();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger fetches = new AtomicInteger();
+        final TimelineCoalescer.Fetch fetch = new TimelineCoalescer.Fetch() {
+            @Override
+            public List<YambaStatus> fetch(int count) throws YambaClientException {
+                fetches.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new YambaClientIOException("Interrupted", e);
+                }
+                return timeline(count);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<List<YambaStatus>> leader = executor.submit(new Callable<List<YambaStatus>>() {
+                @Override
+                public List<YambaStatus> call() throws Exception {
+                    return coalescer.get("key", 20, fetch);
+                }
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            List<Future<List<YambaStatus>>> followers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                final int count = 5 + i;
+                followers.add(executor.submit(new Callable<List<YambaStatus>>() {
+                    @Override
+                    public List<YambaStatus> call() throws Exception {
+                        return coalescer.get("key", count, fetch);
+                    }
+                }));
+            }
+            //Followers block on the flight until it completes
+            while (coalescer.getCoalescedCount() < 3) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).hasSize(20);
+            for (int i = 0; i < followers.size(); i++) {
+                List<YambaStatus> statuses = followers.get(i).get(5, TimeUnit.SECONDS);
+                assertThat(statuses).hasSize(5 + i);
+                assertThat(statuses.get(0).getId()).isEqualTo(20L);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(fetches.get()).isEqualTo(1);
+        assertThat(coalescer.getFetchCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void ownerCancelDoesNotFailWaiters() throws Exception {
+        final TimelineCoalescer coalescer = new TimelineCoalescer();
+        final CountDownLatch started = new CountDownLatch(1);
+        final TimelineCoalescer.Fetch blocking = new TimelineCoalescer.Fetch() {
+            @Override
+            public List<YambaStatus> fetch(int count) throws YambaClientException {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    //Cancelling disconnects the owner's request
+                }
+                throw new YambaClientIOException("Disconnected");
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            YambaCall<List<YambaStatus>> owner = new YambaCall<>(
+                    new Callable<List<YambaStatus>>() {
+                        @Override
+                        public List<YambaStatus> call() throws Exception {
+                            return coalescer.get("key", 10, blocking);
+                        }
+                    }, null, executor);
+            executor.execute(owner);
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            final CountingFetch fetch = new CountingFetch();
+            Future<List<YambaStatus>> waiter = executor.submit(new Callable<List<YambaStatus>>() {
+                @Override
+                public List<YambaStatus> call() throws Exception {
+                    return coalescer.get("key", 5, fetch);
+                }
+            });
+            while (coalescer.getCoalescedCount() < 1) {
+                Thread.sleep(1);
+            }
+            owner.cancel(true);
+
+            assertThat(waiter.get(5, TimeUnit.SECONDS)).hasSize(5);
+            assertThat(fetch.calls).isEqualTo(1);
+            assertThat(coalescer.getCoalescedCount()).isEqualTo(0L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void servesFreshResultsWithinWindow() throws Exception {
+        TimelineCoalescer coalescer = new TimelineCoalescer(60000);
+        CountingFetch fetch = new CountingFetch();
+
+        assertThat(coalescer.get("key", 10, fetch)).hasSize(10);
+        assertThat(coalescer.get("key", 3, fetch)).hasSize(3);
+        assertThat(fetch.calls).isEqualTo(1);
+
+        //More than the completed fetch holds needs a new request
+        assertThat(coalescer.get("key", 15, fetch)).hasSize(15);
+        assertThat(coalescer.get("other", 3, fetch)).hasSize(3);
+        assertThat(fetch.calls).isEqualTo(3);
+    }
+
+    @Test
+    public void fetchesAgainWithoutWindow() throws Exception {
+        TimelineCoalescer coalescer = new TimelineCoalescer();
+        CountingFetch fetch = new CountingFetch();
+
+        coalescer.get("key", 10, fetch);
+        coalescer.get("key", 10, fetch);
+
+        assertThat(fetch.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void doesNotKeepFailures() throws Exception {
+        TimelineCoalescer coalescer = new TimelineCoalescer(60000);
+        final YambaClientException failure = new YambaClientIOException("Down");
+        try {
+            coalescer.get("key", 10, new TimelineCoalescer.Fetch() {
+                @Override
+                public List<YambaStatus> fetch(int count) throws YambaClientException {
+                    throw failure;
+                }
+            });
+            fail();
+        } catch (YambaClientException e) {
+            assertThat(e).isSameAs(failure);
+        }
+
+        CountingFetch fetch = new CountingFetch();
+        assertThat(coalescer.get("key", 10, fetch)).hasSize(10);
+        assertThat(fetch.calls).isEqualTo(1);
+    }
+
+    private static final class CountingFetch implements TimelineCoalescer.Fetch {
+        int calls;
+
+        @Override
+        public List<YambaStatus> fetch(int count) {
+            calls++;
+            return timeline(count);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimelineIndexTest {
+
+    private static List<Long> ids(List<YambaStatus> statuses) {
+        Long[] ids = new Long[statuses.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = statuses.get(i).getId();
+        }
+        return Arrays.asList(ids);
+    }
+
+    private static TimelineIndex newIndex(int capacity) {
+        TimelineIndex index = new TimelineIndex(capacity);
+        //Added out of order, as a backfill would
+        index.addAll(Arrays.asList(
+                new YambaStatus(3, 3000, "student", "Learning #android today"),
+                new YambaStatus(1, 1000, "student", "Hello android"),
+                new YambaStatus(2, 2000, "teacher", "Android homework is due"),
+                new YambaStatus(5, 5000, "student", "No homework"),
+                new YambaStatus(4, 4000, "teacher", "Android and Java")));
+        return index;
+    }
+
+    @Test
+    public void queriesByUserAndWordNewestFirst() {
+        TimelineIndex index = newIndex(100);
+        StatusFilter filter = new StatusFilter.Builder()
+                .addUser("student").addWord("android").build();
+
+        assertThat(ids(index.query(filter, 10))).containsExactly(3L, 1L).inOrder();
+        assertThat(ids(index.query(filter, 1))).containsExactly(3L);
+    }
+
+    @Test
+    public void intersectsWordsAndAppliesRanges() {
+        TimelineIndex index = newIndex(100);
+
+        assertThat(ids(index.query(new StatusFilter.Builder()
+                .addWord("android").addWord("homework").build(), 10))).containsExactly(2L);
+        assertThat(ids(index.query(new StatusFilter.Builder()
+                .addWord("android").setCreatedBetween(2000, 3000).build(), 10)))
+                .containsExactly(3L, 2L).inOrder();
+        assertThat(ids(index.query(new StatusFilter.Builder()
+                .setIdRange(2, 4).build(), 10))).containsExactly(4L, 3L).inOrder();
+        assertThat(index.query(new StatusFilter.Builder().addWord("kotlin").build(), 10))
+                .isEmpty();
+    }
+
+    @Test
+    public void dropsOldestStatusesWhenFull() {
+        TimelineIndex index = newIndex(3);
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(ids(index.query(new StatusFilter.Builder().build(), 10)))
+                .containsExactly(5L, 4L, 3L).inOrder();
+        assertThat(index.add(new YambaStatus(1, 1000, "student", "Too old"))).isFalse();
+        //Terms only used by dropped statuses are gone
+        assertThat(index.query(new StatusFilter.Builder().addWord("hello").build(), 10))
+                .isEmpty();
+    }
+
+    @Test
+    public void removesStatuses() {
+        TimelineIndex index = newIndex(100);
+
+        assertThat(index.remove(3)).isTrue();
+        assertThat(index.remove(3)).isFalse();
+        assertThat(ids(index.query(new StatusFilter.Builder().addWord("android").build(), 10)))
+                .containsExactly(4L, 2L, 1L).inOrder();
+    }
+}
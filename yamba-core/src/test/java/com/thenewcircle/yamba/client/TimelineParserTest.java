@@ -0,0 +1,105 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimelineParserTest {
+
+    private static final String TIMELINE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<statuses type=\"array\">\n"
+            + " <status>\n"
+            + "  <text>Second &amp; last</text>\n"
+            + "  <id>42</id>\n"
+            + "  <created_at>Tue Oct 13 18:42:07 +0000 2015</created_at>\n"
+            + "  <user>\n"
+            + "   <id>7</id>\n"
+            + "   <name>student</name>\n"
+            + "   <screen_name>student</screen_name>\n"
+            + "  </user>\n"
+            + " </status>\n"
+            + " <status>\n"
+            + "  <text>First</text>\n"
+            + "  <id>41</id>\n"
+            + "  <created_at>Tue Oct 13 18:40:00 +0000 2015</created_at>\n"
+            + "  <user>\n"
+            + "   <id>8</id>\n"
+            + "   <name>teacher</name>\n"
+            + "  </user>\n"
+            + "  <geo xmlns:georss=\"http://www.georss.org/georss\">\n"
+            + "   <georss:point>51.5 -0.125</georss:point>\n"
+            + "  </geo>\n"
+            + " </status>\n"
+            + "</statuses>\n";
+
+    private static InputStream timeline() throws Exception {
+        return new ByteArrayInputStream(TIMELINE.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void parsesStatusFields() throws Exception {
+        TimelineParser parser = TimelineParser.obtain(timeline());
+        try {
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.getId()).isEqualTo(42L);
+            assertThat(parser.getUser()).isEqualTo("student");
+            assertThat(parser.getMessage()).isEqualTo("Second & last");
+            assertThat(parser.getCreatedAt()).isNotNull();
+
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.getId()).isEqualTo(41L);
+            assertThat(parser.getUser()).isEqualTo("teacher");
+
+            assertThat(parser.nextStatus()).isFalse();
+            assertThat(parser.isFinished()).isTrue();
+        } finally {
+            parser.recycle();
+        }
+    }
+
+    @Test
+    public void recycledParserStartsClean() throws Exception {
+        TimelineParser parser = TimelineParser.obtain(timeline());
+        parser.nextStatus();
+        parser.recycle();
+
+        parser = TimelineParser.obtain(timeline());
+        try {
+            assertThat(parser.isFinished()).isFalse();
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.getId()).isEqualTo(42L);
+        } finally {
+            parser.recycle();
+        }
+    }
+
+    @Test
+    public void readsGeoRssPoint() throws Exception {
+        TimelineParser parser = TimelineParser.obtain(timeline());
+        try {
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.toStatus().hasLocation()).isFalse();
+
+            assertThat(parser.nextStatus()).isTrue();
+            YambaStatus status = parser.toStatus();
+            assertThat(status.getLatitude()).isWithin(1e-9).of(51.5);
+            assertThat(status.getLongitude()).isWithin(1e-9).of(-0.125);
+        } finally {
+            parser.recycle();
+        }
+    }
+
+    @Test
+    public void skipToEndStopsAtNextStatus() throws Exception {
+        TimelineParser parser = TimelineParser.obtain(timeline());
+        try {
+            parser.nextStatus();
+            assertThat(parser.skipToEnd()).isFalse();
+        } finally {
+            parser.recycle();
+        }
+    }
+}
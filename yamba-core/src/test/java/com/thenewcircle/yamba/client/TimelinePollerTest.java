@@ -0,0 +1,140 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimelinePollerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private TimelinePoller poller;
+
+    @Before
+    public void setUp() {
+        YambaClient.setClientInstance(OfflineYambaClient.newClient());
+    }
+
+    @After
+    public void tearDown() {
+        YambaClient.setClientInstance(null);
+        if (poller != null) {
+            poller.close();
+        }
+    }
+
+    @Test
+    public void deliversEachNewStatusOnceToEverySubscriber() throws Exception {
+        poller = new TimelinePoller.Builder().setIntervals(20, 1000).build();
+        YambaAccount student = new YambaAccount("student", "password");
+        QueueSubscriber first = new QueueSubscriber();
+        QueueSubscriber second = new QueueSubscriber();
+
+        poller.subscribe(student, first);
+        assertThat(first.take()).hasSize(2);
+        poller.subscribe(student, second);
+        assertThat(poller.size()).isEqualTo(1);
+
+        YambaClient.getClient("student", "password").postStatus("Polled");
+        List<YambaStatus> delivered = first.take();
+        assertThat(delivered).hasSize(1);
+        assertThat(delivered.get(0).getMessage()).isEqualTo("Polled");
+        //Both subscribers were served by the same fetch
+        assertThat(second.take()).isSameAs(delivered);
+    }
+
+    @Test
+    public void burstLargerThanPageIsNotSkipped() throws Exception {
+        poller = new TimelinePoller.Builder().setPageSize(5).setIntervals(20, 1000).build();
+        YambaAccount student = new YambaAccount("student", "password");
+        QueueSubscriber subscriber = new QueueSubscriber();
+        poller.subscribe(student, subscriber);
+        subscriber.take();
+
+        YambaClientInterface client = YambaClient.getClient("student", "password");
+        for (int i = 0; i < 23; i++) {
+            client.postStatus("Burst " + i);
+        }
+        Set<Long> ids = new HashSet<>();
+        while (ids.size() < 23) {
+            for (YambaStatus status : subscriber.take()) {
+                assertThat(ids.add(status.getId())).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void stopsPollingWithoutSubscribers() throws Exception {
+        poller = new TimelinePoller.Builder().setIntervals(20, 1000).build();
+        YambaAccount student = new YambaAccount("student", "password");
+        QueueSubscriber subscriber = new QueueSubscriber();
+
+        poller.subscribe(student, subscriber);
+        subscriber.take();
+        poller.unsubscribe(student, subscriber);
+
+        assertThat(poller.size()).isEqualTo(0);
+        assertThat(poller.getIntervalMillis(student)).isEqualTo(-1L);
+    }
+
+    @Test
+    public void intervalFollowsPostRate() {
+        TimelinePoller.Cadence cadence = new TimelinePoller.Cadence(SECOND, 100 * SECOND, 20);
+
+        assertThat(cadence.onSuccess(20, 0, true)).isEqualTo(SECOND);
+        //Ten statuses in ten seconds; half a page is due in ten seconds
+        assertThat(cadence.onSuccess(10, 10 * SECOND, false)).isEqualTo(10 * SECOND);
+        //Nothing new halves the estimated rate
+        assertThat(cadence.onSuccess(0, 10 * SECOND, false)).isEqualTo(20 * SECOND);
+        for (int i = 0; i < 10; i++) {
+            cadence.onSuccess(0, cadence.getIntervalNanos(), false);
+        }
+        assertThat(cadence.getIntervalNanos()).isEqualTo(100 * SECOND);
+        //A full page may have missed statuses
+        assertThat(cadence.onSuccess(20, 100 * SECOND, true)).isEqualTo(SECOND);
+    }
+
+    @Test
+    public void failuresBackOff() {
+        TimelinePoller.Cadence cadence = new TimelinePoller.Cadence(SECOND, 100 * SECOND, 20);
+        YambaClientException failure = new YambaClientIOException("Down");
+
+        long first = cadence.onFailure(failure);
+        assertThat(first).isAtMost(SECOND);
+        for (int i = 0; i < 10; i++) {
+            cadence.onFailure(failure);
+        }
+        assertThat(cadence.getIntervalNanos()).isAtLeast(50 * SECOND);
+        assertThat(cadence.onFailure(new YambaClientUnauthorizedException("Unauthorized")))
+                .isEqualTo(100 * SECOND);
+    }
+
+    private static final class QueueSubscriber implements TimelinePoller.Subscriber {
+        final BlockingQueue<List<YambaStatus>> received = new LinkedBlockingQueue<>();
+
+        List<YambaStatus> take() throws InterruptedException {
+            List<YambaStatus> statuses = received.poll(5, TimeUnit.SECONDS);
+            assertThat(statuses).isNotNull();
+            return statuses;
+        }
+
+        @Override
+        public void onStatuses(YambaAccount account, List<YambaStatus> statuses) {
+            received.add(statuses);
+        }
+
+        @Override
+        public void onFailure(YambaAccount account, YambaClientException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
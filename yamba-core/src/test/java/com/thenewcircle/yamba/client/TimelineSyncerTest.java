@@ -0,0 +1,74 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimelineSyncerTest {
+
+    private static final int POSTS = 40;
+    private static final int PAGE_SIZE = 5;
+    private static final int MAX_PAGES = 3;
+
+    CursorYambaClientInterface mClient;
+
+    @Before
+    public void initClient() throws YambaClientException {
+        mClient = OfflineYambaClient.newClient();
+        for (int i = 0; i < POSTS; i++) {
+            mClient.postStatus("Sync Test " + i);
+        }
+    }
+
+    @Test
+    public void backfillDeliversEveryStatusOnce() throws YambaClientException {
+        int total = mClient.getTimelineSince(0, Integer.MAX_VALUE).size();
+        TimelineSyncer syncer = new TimelineSyncer(mClient, 0, PAGE_SIZE, MAX_PAGES);
+
+        List<YambaStatus> first = syncer.sync();
+        assertThat(first.size()).isEqualTo(PAGE_SIZE * MAX_PAGES);
+        assertThat(syncer.hasGap()).isTrue();
+
+        Set<Long> seen = new HashSet<>();
+        for (YambaStatus status : first) {
+            seen.add(status.getId());
+        }
+        while (syncer.hasGap()) {
+            for (YambaStatus status : syncer.sync()) {
+                assertThat(seen.add(status.getId())).isTrue();
+            }
+        }
+        assertThat(seen.size()).isEqualTo(total);
+    }
+
+    @Test
+    public void headSyncSkipsHistory() throws YambaClientException {
+        TimelineSyncer syncer = new TimelineSyncer(mClient, TimelineSyncer.HEAD,
+                PAGE_SIZE, MAX_PAGES);
+        assertThat(syncer.sync().size()).isEqualTo(PAGE_SIZE);
+        assertThat(syncer.hasGap()).isFalse();
+        assertThat(syncer.sync()).isEmpty();
+
+        mClient.postStatus("Head Sync Test");
+        List<YambaStatus> update = syncer.sync();
+        assertThat(update.size()).isEqualTo(1);
+        assertThat(update.get(0).getMessage()).isEqualTo("Head Sync Test");
+    }
+
+    @Test
+    public void syncReturnsOnlyNewStatuses() throws YambaClientException {
+        TimelineSyncer syncer = new TimelineSyncer(mClient, 0, PAGE_SIZE, Integer.MAX_VALUE);
+        syncer.sync();
+        assertThat(syncer.sync()).isEmpty();
+
+        mClient.postStatus("Newest Sync Test");
+        List<YambaStatus> update = syncer.sync();
+        assertThat(update.size()).isEqualTo(1);
+        assertThat(update.get(0).getMessage()).isEqualTo("Newest Sync Test");
+    }
+}
@@ -0,0 +1,193 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class YambaClientPoolTest {
+
+    private YambaClientPool pool;
+
+    @Before
+    public void setUp() {
+        YambaClient.setClientInstance(OfflineYambaClient.newClient());
+    }
+
+    @After
+    public void tearDown() {
+        YambaClient.setClientInstance(null);
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void fetchesOnlyNewStatusesPerAccount() throws Exception {
+        pool = new YambaClientPool.Builder().setThreads(2).build();
+        YambaAccount student = new YambaAccount("student", "password");
+        final List<YambaStatus> received =
+                Collections.synchronizedList(new ArrayList<YambaStatus>());
+        YambaClientPool.TimelineCallback callback = new YambaClientPool.TimelineCallback() {
+            @Override
+            public void onTimeline(YambaAccount account, List<YambaStatus> statuses) {
+                received.addAll(statuses);
+            }
+
+            @Override
+            public void onFailure(YambaAccount account, YambaClientException e) {
+                throw new AssertionError(e);
+            }
+        };
+
+        pool.fetchTimelines(Arrays.asList(student), 20, callback).get(5, TimeUnit.SECONDS);
+        assertThat(received).hasSize(2);
+
+        received.clear();
+        pool.getClient(student).postStatus("Pooled");
+        pool.fetchTimelines(Arrays.asList(student), 20, callback).get(5, TimeUnit.SECONDS);
+        assertThat(received).hasSize(1);
+        assertThat(received.get(0).getMessage()).isEqualTo("Pooled");
+
+        //More new statuses than one page holds are paged back, not skipped
+        received.clear();
+        for (int i = 0; i < 45; i++) {
+            pool.getClient(student).postStatus("Pooled " + i);
+        }
+        pool.fetchTimelines(Arrays.asList(student), 20, callback).get(5, TimeUnit.SECONDS);
+        assertThat(received).hasSize(45);
+    }
+
+    @Test
+    public void accountsTakeTurns() throws Exception {
+        pool = new YambaClientPool.Builder().setThreads(1).build();
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        YambaClientPool.TimelineCallback callback = new YambaClientPool.TimelineCallback() {
+            @Override
+            public void onTimeline(YambaAccount account, List<YambaStatus> statuses) {
+                order.add(account.getUsername());
+            }
+
+            @Override
+            public void onFailure(YambaAccount account, YambaClientException e) {
+                throw new AssertionError(e);
+            }
+        };
+        YambaAccount busy = new YambaAccount("busy", "password");
+        YambaAccount quiet = new YambaAccount("quiet", "password");
+
+        //Hold the only thread until both batches are queued
+        final CountDownLatch gate = new CountDownLatch(1);
+        pool.fetchTimelines(Arrays.asList(new YambaAccount("gate", "password")), 20,
+                new YambaClientPool.TimelineCallback() {
+                    @Override
+                    public void onTimeline(YambaAccount account, List<YambaStatus> statuses) {
+                        try {
+                            gate.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(YambaAccount account, YambaClientException e) {
+                    }
+                });
+        Future<Void> busyDone =
+                pool.fetchTimelines(Arrays.asList(busy, busy, busy), 20, callback);
+        Future<Void> done = pool.fetchTimelines(Arrays.asList(quiet), 20, callback);
+        gate.countDown();
+        done.get(5, TimeUnit.SECONDS);
+        busyDone.get(5, TimeUnit.SECONDS);
+
+        //The quiet account does not wait for the whole busy batch
+        assertThat(order.indexOf("quiet")).isEqualTo(1);
+    }
+
+    @Test
+    public void rateLimitSpacesRequests() throws Exception {
+        pool = new YambaClientPool.Builder().setRateLimit(20, 1).build();
+        YambaAccount account = new YambaAccount("student", "password");
+        YambaClientPool.TimelineCallback callback = new YambaClientPool.TimelineCallback() {
+            @Override
+            public void onTimeline(YambaAccount account, List<YambaStatus> statuses) {
+            }
+
+            @Override
+            public void onFailure(YambaAccount account, YambaClientException e) {
+            }
+        };
+
+        long start = System.nanoTime();
+        pool.fetchTimelines(Arrays.asList(account, account, account, account, account),
+                20, callback).get(5, TimeUnit.SECONDS);
+
+        //One permit up front, then four more at 50 ms each
+        assertThat(System.nanoTime() - start).isAtLeast(TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    public void closeFailsQueuedRequests() throws Exception {
+        pool = new YambaClientPool.Builder().setThreads(1).build();
+        final List<YambaAccount> failed = Collections.synchronizedList(new ArrayList<YambaAccount>());
+        YambaClientPool.TimelineCallback callback = new YambaClientPool.TimelineCallback() {
+            @Override
+            public void onTimeline(YambaAccount account, List<YambaStatus> statuses) {
+            }
+
+            @Override
+            public void onFailure(YambaAccount account, YambaClientException e) {
+                failed.add(account);
+            }
+        };
+        YambaAccount student = new YambaAccount("student", "password");
+
+        //Hold the only thread so that the requests stay queued
+        final CountDownLatch gate = new CountDownLatch(1);
+        pool.fetchTimelines(Arrays.asList(new YambaAccount("gate", "password")), 20,
+                new YambaClientPool.TimelineCallback() {
+                    @Override
+                    public void onTimeline(YambaAccount account, List<YambaStatus> statuses) {
+                        try {
+                            gate.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(YambaAccount account, YambaClientException e) {
+                    }
+                });
+        Future<Void> batch = pool.fetchTimelines(Arrays.asList(student), 20, callback);
+        Future<List<YambaStatus>> call = pool.getAsyncClient(student).getTimeline(1, null);
+        pool.close();
+
+        assertFailsWithClientException(batch);
+        assertFailsWithClientException(call);
+        assertThat(failed).containsExactly(student);
+
+        //Requests made after close fail as well rather than hang
+        assertFailsWithClientException(pool.getAsyncClient(student).getTimeline(1, null));
+    }
+
+    private static void assertFailsWithClientException(Future<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected the request to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(YambaClientException.class);
+        }
+    }
+}
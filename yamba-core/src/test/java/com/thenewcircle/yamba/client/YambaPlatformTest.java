@@ -0,0 +1,44 @@
+package com.thenewcircle.yamba.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class YambaPlatformTest {
+
+    @Test
+    public void detectsJvmPlatform() {
+        assertThat(YambaPlatform.get().getClass()).isEqualTo(YambaPlatform.class);
+    }
+
+    @Test
+    public void encodesBase64WithPadding() throws Exception {
+        YambaPlatform platform = new YambaPlatform();
+        assertThat(platform.encodeBase64(new byte[0])).isEqualTo("");
+        assertThat(platform.encodeBase64("f".getBytes("UTF-8"))).isEqualTo("Zg==");
+        assertThat(platform.encodeBase64("fo".getBytes("UTF-8"))).isEqualTo("Zm8=");
+        assertThat(platform.encodeBase64("foo".getBytes("UTF-8"))).isEqualTo("Zm9v");
+        assertThat(platform.encodeBase64("student:password".getBytes("UTF-8")))
+                .isEqualTo("c3R1ZGVudDpwYXNzd29yZA==");
+    }
+
+    @Test
+    public void parsesTimelineOffDevice() throws Exception {
+        String xml = "<statuses><status><id>42</id><text>Hello</text>"
+                + "<created_at>Tue Oct 13 18:42:07 +0000 2015</created_at>"
+                + "<user><name>student</name></user></status></statuses>";
+        TimelineParser parser = TimelineParser.obtain(
+                new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        try {
+            assertThat(parser.nextStatus()).isTrue();
+            assertThat(parser.getId()).isEqualTo(42L);
+            assertThat(parser.getUser()).isEqualTo("student");
+            assertThat(parser.getMessage()).isEqualTo("Hello");
+            assertThat(parser.nextStatus()).isFalse();
+        } finally {
+            parser.recycle();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.thenewcircle.yamba.loadtest;
+
+import com.thenewcircle.yamba.client.LatencyHistogram;
+import com.thenewcircle.yamba.client.WireFormat;
+import com.thenewcircle.yamba.client.YambaClient;
+import com.thenewcircle.yamba.client.YambaClientConfig;
+import com.thenewcircle.yamba.client.YambaClientException;
+import com.thenewcircle.yamba.client.YambaClientInterface;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a number of concurrent {@link YambaClient} instances against an
+ * API root, typically a {@link YambaTestServer}, and reports throughput,
+ * latency percentiles and allocation.
+ *
+ * <p>Each client gets its own thread and issues requests back to back,
+ * picking a post or a timeline fetch at random. Requests made during the
+ * warm-up period are not recorded.
+ */
+public class LoadGenerator {
+
+    private final String apiRoot;
+    private final String username;
+    private final String password;
+    private final YambaClientConfig config;
+    private final int clients;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final double postRatio;
+    private final int timelineCount;
+
+    private final LatencyHistogram postLatency = new LatencyHistogram();
+    private final LatencyHistogram timelineLatency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final ConcurrentMap<Class<?>, AtomicLong> errorsByType = new ConcurrentHashMap<>();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    private LoadGenerator(Builder builder) {
+        this.apiRoot = builder.apiRoot;
+        this.username = builder.username;
+        this.password = builder.password;
+        this.config = builder.config;
+        this.clients = builder.clients;
+        this.warmupNanos = TimeUnit.MILLISECONDS.toNanos(builder.warmupMillis);
+        this.durationNanos = TimeUnit.MILLISECONDS.toNanos(builder.durationMillis);
+        this.postRatio = builder.postRatio;
+        this.timelineCount = builder.timelineCount;
+    }
+
+    /**
+     * Run the load and wait for it to finish. A generator can be run once.
+     */
+    public LoadReport run() throws InterruptedException {
+        long measureStart = System.nanoTime() + warmupNanos;
+        long measureEnd = measureStart + durationNanos;
+
+        Thread[] workers = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            final YambaClientInterface client =
+                    YambaClient.getClient(username, password, apiRoot, config);
+            final long start = measureStart;
+            final long end = measureEnd;
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drive(client, start, end);
+                }
+            }, "LoadGenerator-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Map<Class<?>, Long> errorCounts = new HashMap<>();
+        for (Map.Entry<Class<?>, AtomicLong> entry : errorsByType.entrySet()) {
+            errorCounts.put(entry.getKey(), entry.getValue().get());
+        }
+        return new LoadReport(clients, durationNanos, postLatency, timelineLatency,
+                errors.get(), errorCounts, allocatedBytes.get());
+    }
+
+    private void drive(YambaClientInterface client, long measureStart, long measureEnd) {
+        while (System.nanoTime() < measureStart) {
+            request(client, false);
+        }
+        long allocatedBefore = getAllocatedBytes();
+        while (System.nanoTime() < measureEnd) {
+            request(client, true);
+        }
+        long allocatedAfter = getAllocatedBytes();
+        if (allocatedBefore < 0 || allocatedAfter < 0) {
+            allocatedBytes.set(-1);
+        } else if (allocatedBytes.get() >= 0) {
+            allocatedBytes.addAndGet(allocatedAfter - allocatedBefore);
+        }
+    }
+
+    private void request(YambaClientInterface client, boolean record) {
+        boolean post = ThreadLocalRandom.current().nextDouble() < postRatio;
+        long start = System.nanoTime();
+        try {
+            if (post) {
+                client.postStatus("Load test status " + start);
+            } else {
+                client.getTimeline(timelineCount);
+            }
+        } catch (YambaClientException e) {
+            if (record) {
+                recordError(e);
+            }
+        }
+        if (record) {
+            long elapsed = System.nanoTime() - start;
+            (post ? postLatency : timelineLatency).record(elapsed);
+        }
+    }
+
+    private void recordError(YambaClientException e) {
+        errors.incrementAndGet();
+        Class<?> type = e.getClass();
+        AtomicLong counter = errorsByType.get(type);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = errorsByType.putIfAbsent(type, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /* Uses the HotSpot extension to ThreadMXBean when it is available */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported()
+                    && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Start a {@link YambaTestServer} and run a load against it.
+     *
+     * <p>Arguments are {@code name=value} pairs: {@code clients},
+     * {@code seconds}, {@code warmup} (seconds), {@code postRatio},
+     * {@code count}, {@code latency} (min-max milliseconds),
+     * {@code errorRate}, {@code unauthorizedRate} and {@code format}
+     * ({@code xml} or {@code json}).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        String latency = option(options, "latency", "0-0");
+        int dash = latency.indexOf('-');
+        YambaTestServer server = new YambaTestServer.Builder()
+                .setCredentials("student", "password")
+                .setThreads(Integer.parseInt(option(options, "serverThreads", "64")))
+                .setLatency(Integer.parseInt(latency.substring(0, dash)),
+                        Integer.parseInt(latency.substring(dash + 1)))
+                .setServerErrorRate(Double.parseDouble(option(options, "errorRate", "0")))
+                .setUnauthorizedRate(Double.parseDouble(option(options, "unauthorizedRate", "0")))
+                .start();
+        try {
+            LoadReport report = new Builder(server.getApiRoot())
+                    .setCredentials("student", "password")
+                    .setConfig(new YambaClientConfig.Builder()
+                            .setWireFormat(WireFormat.valueOf(
+                                    option(options, "format", "xml").toUpperCase(Locale.US)))
+                            .build())
+                    .setClients(Integer.parseInt(option(options, "clients", "16")))
+                    .setWarmup(Long.parseLong(option(options, "warmup", "5")) * 1000)
+                    .setDuration(Long.parseLong(option(options, "seconds", "30")) * 1000)
+                    .setPostRatio(Double.parseDouble(option(options, "postRatio", "0.1")))
+                    .setTimelineCount(Integer.parseInt(option(options, "count", "20")))
+                    .build()
+                    .run();
+            System.out.print(report);
+        } finally {
+            server.close();
+        }
+    }
+
+    private static String option(Map<String, String> options, String name, String fallback) {
+        String value = options.get(name);
+        return (value == null) ? fallback : value;
+    }
+
+    /**
+     * Builder for {@link LoadGenerator}
+     */
+    public static final class Builder {
+        private final String apiRoot;
+        private String username = "student";
+        private String password = "password";
+        private YambaClientConfig config;
+        private int clients = 16;
+        private long warmupMillis = 5000;
+        private long durationMillis = 30000;
+        private double postRatio = 0.1;
+        private int timelineCount = 20;
+
+        /**
+         * @param apiRoot endpoint the clients talk to
+         */
+        public Builder(String apiRoot) {
+            this.apiRoot = apiRoot;
+        }
+
+        public Builder setCredentials(String username, String password) {
+            this.username = username;
+            this.password = password;
+            return this;
+        }
+
+        /**
+         * @param config configuration for every client, or null for the default
+         */
+        public Builder setConfig(YambaClientConfig config) {
+            this.config = config;
+            return this;
+        }
+
+        /**
+         * @param clients concurrent clients, one thread each
+         */
+        public Builder setClients(int clients) {
+            if (clients <= 0) {
+                throw new IllegalArgumentException("clients <= 0");
+            }
+            this.clients = clients;
+            return this;
+        }
+
+        /**
+         * @param millis time spent making unrecorded requests first
+         */
+        public Builder setWarmup(long millis) {
+            if (millis < 0) {
+                throw new IllegalArgumentException("warmup < 0");
+            }
+            this.warmupMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param millis time during which requests are recorded
+         */
+        public Builder setDuration(long millis) {
+            if (millis <= 0) {
+                throw new IllegalArgumentException("duration <= 0");
+            }
+            this.durationMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param ratio fraction of requests that post a status; the rest
+         *              fetch the timeline
+         */
+        public Builder setPostRatio(double ratio) {
+            if (ratio < 0 || ratio > 1) {
+                throw new IllegalArgumentException("Ratio must be between 0 and 1");
+            }
+            this.postRatio = ratio;
+            return this;
+        }
+
+        /**
+         * @param count statuses requested per timeline fetch
+         */
+        public Builder setTimelineCount(int count) {
+            this.timelineCount = count;
+            return this;
+        }
+
+        public LoadGenerator build() {
+            return new LoadGenerator(this);
+        }
+    }
+}
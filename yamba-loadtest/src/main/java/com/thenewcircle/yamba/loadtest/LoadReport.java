@@ -0,0 +1,102 @@
+package com.thenewcircle.yamba.loadtest;
+
+import com.thenewcircle.yamba.client.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Results of one {@link LoadGenerator} run.
+ */
+public final class LoadReport {
+    private final int clients;
+    private final long elapsedNanos;
+    private final LatencyHistogram postLatency;
+    private final LatencyHistogram timelineLatency;
+    private final long errors;
+    private final Map<Class<?>, Long> errorsByType;
+    private final long allocatedBytes;
+
+    LoadReport(int clients, long elapsedNanos, LatencyHistogram postLatency,
+               LatencyHistogram timelineLatency, long errors,
+               Map<Class<?>, Long> errorsByType, long allocatedBytes) {
+        this.clients = clients;
+        this.elapsedNanos = elapsedNanos;
+        this.postLatency = postLatency;
+        this.timelineLatency = timelineLatency;
+        this.errors = errors;
+        this.errorsByType = Collections.unmodifiableMap(errorsByType);
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /** @return number of concurrent clients */
+    public int getClients() { return clients; }
+
+    /** @return length of the measured period, in nanoseconds */
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /** @return latency of status posts, failed ones included */
+    public LatencyHistogram getPostLatency() { return postLatency; }
+
+    /** @return latency of timeline fetches, failed ones included */
+    public LatencyHistogram getTimelineLatency() { return timelineLatency; }
+
+    /** @return number of completed requests */
+    public long getRequestCount() {
+        return postLatency.getCount() + timelineLatency.getCount();
+    }
+
+    /** @return number of requests that threw */
+    public long getErrorCount() { return errors; }
+
+    /** @return failures keyed by exception class */
+    public Map<Class<?>, Long> getErrorsByType() { return errorsByType; }
+
+    /** @return completed requests per second */
+    public double getThroughput() {
+        return (elapsedNanos == 0) ? 0 : getRequestCount() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return bytes allocated by the client threads while measuring, or -1
+     * if the JVM cannot report per-thread allocation
+     */
+    public long getAllocatedBytes() { return allocatedBytes; }
+
+    /** @return bytes allocated per request, or -1 if unknown */
+    public long getAllocatedBytesPerRequest() {
+        long requests = getRequestCount();
+        return (allocatedBytes < 0 || requests == 0) ? -1 : allocatedBytes / requests;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US,
+                "%d clients, %.1f s: %d requests, %.1f req/s, %d errors%n",
+                clients, elapsedNanos / 1e9, getRequestCount(), getThroughput(), errors));
+        appendLatency(report, "post", postLatency);
+        appendLatency(report, "timeline", timelineLatency);
+        if (allocatedBytes >= 0) {
+            report.append(String.format(Locale.US, "  allocation: %d bytes/request%n",
+                    getAllocatedBytesPerRequest()));
+        }
+        for (Map.Entry<Class<?>, Long> entry : errorsByType.entrySet()) {
+            report.append(String.format(Locale.US, "  %s: %d%n",
+                    entry.getKey().getSimpleName(), entry.getValue()));
+        }
+        return report.toString();
+    }
+
+    private static void appendLatency(StringBuilder report, String name,
+                                      LatencyHistogram latency) {
+        if (latency.getCount() == 0) {
+            return;
+        }
+        report.append(String.format(Locale.US,
+                "  %s: %d requests, mean %.2f ms, p50 %.2f ms, p99 %.2f ms%n",
+                name, latency.getCount(), latency.getMeanNanos() / 1e6,
+                latency.getPercentileNanos(50) / 1e6, latency.getPercentileNanos(99) / 1e6));
+    }
+}
@@ -0,0 +1,526 @@
+package com.thenewcircle.yamba.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.thenewcircle.yamba.client.YambaPlatform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Yamba service, serving
+ * {@code /statuses/update} and {@code /statuses/friends_timeline} as XML
+ * and JSON over loopback HTTP.
+ *
+ * <p>Latency, payload size and failures can be injected so client behavior
+ * can be measured reproducibly without the live service. Create one with
+ * {@link Builder} and point clients at {@link #getApiRoot()}.
+ */
+public class YambaTestServer implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String DATE_FORMAT_PATTERN = "EEE MMM dd HH:mm:ss Z yyyy";
+    private static final int DEFAULT_COUNT = 20;
+    private static final int MAX_COUNT = 200;
+
+    private static final ThreadLocal<SimpleDateFormat> sDateFormat =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT_PATTERN, Locale.US);
+                    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+                    return format;
+                }
+            };
+
+    static {
+        //Without this the JDK server's small writes wait on delayed ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String username;
+    private final String expectedAuthorization;
+    private final int minLatencyMillis;
+    private final int maxLatencyMillis;
+    private final double serverErrorRate;
+    private final double unauthorizedRate;
+
+    /* Ring of the most recent statuses; ids are handed out in order */
+    private final long[] ids;
+    private final String[] createdAts;
+    private final String[] users;
+    private final String[] messages;
+    /* GeoRSS point "lat lon" of each status, null when it has none */
+    private final String[] points;
+    private long nextId = 1;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private YambaTestServer(Builder builder) throws IOException {
+        this.username = builder.username;
+        this.expectedAuthorization = (username == null) ? null : "Basic "
+                + YambaPlatform.get().encodeBase64((username + ":" + builder.password)
+                        .getBytes(UTF_8));
+        this.minLatencyMillis = builder.minLatencyMillis;
+        this.maxLatencyMillis = builder.maxLatencyMillis;
+        this.serverErrorRate = builder.serverErrorRate;
+        this.unauthorizedRate = builder.unauthorizedRate;
+
+        ids = new long[builder.capacity];
+        createdAts = new String[builder.capacity];
+        users = new String[builder.capacity];
+        messages = new String[builder.capacity];
+        points = new String[builder.capacity];
+        Random random = new Random(builder.capacity);
+        for (int i = 0; i < builder.preloadedStatuses; i++) {
+            add("user" + random.nextInt(500), syntheticMessage(random, builder.messageLength));
+        }
+
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getByName("127.0.0.1"), builder.port), 0);
+        for (final boolean json : new boolean[]{false, true}) {
+            String extension = json ? ".json" : ".xml";
+            server.createContext("/api/statuses/update" + extension, new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    handleUpdate(exchange, json);
+                }
+            });
+            server.createContext("/api/statuses/friends_timeline" + extension, new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    handleTimeline(exchange, json);
+                }
+            });
+        }
+        executor = Executors.newFixedThreadPool(builder.threads);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** @return API root to hand to {@code YambaClient.getClient} */
+    public String getApiRoot() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+
+    /** @return number of requests received */
+    public long getRequestCount() { return requests.get(); }
+
+    /** @return number of requests answered with an injected 401 or 5xx */
+    public long getInjectedFailureCount() { return injectedFailures.get(); }
+
+    /** @return number of response body bytes written */
+    public long getBytesSent() { return bytesSent.get(); }
+
+    /** @return number of statuses currently held */
+    public synchronized int getStatusCount() {
+        return (int) Math.min(nextId - 1, ids.length);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleUpdate(HttpExchange exchange, boolean json) throws IOException {
+        try {
+            if (!admit(exchange)) {
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, null, json);
+                return;
+            }
+            Map<String, String> form = parseQuery(new String(readFully(
+                    exchange.getRequestBody()), UTF_8));
+            String status = form.get("status");
+            if (status == null) {
+                respond(exchange, 400, null, json);
+                return;
+            }
+            int index = add(username == null ? "tester" : username, status,
+                    point(form.get("lat"), form.get("long")));
+            StringBuilder body = new StringBuilder(256);
+            if (!json) {
+                body.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            }
+            synchronized (this) {
+                appendStatus(body, index, json);
+            }
+            respond(exchange, 200, body, json);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTimeline(HttpExchange exchange, boolean json) throws IOException {
+        try {
+            if (!admit(exchange)) {
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            int count = Math.min(parseInt(query.get("count"), DEFAULT_COUNT), MAX_COUNT);
+            long sinceId = parseLong(query.get("since_id"));
+            long maxId = parseLong(query.get("max_id"));
+
+            StringBuilder body = new StringBuilder(count * 400 + 128);
+            if (json) {
+                body.append('[');
+            } else {
+                body.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                body.append("<statuses type=\"array\">\n");
+            }
+            synchronized (this) {
+                long newest = nextId - 1;
+                long oldest = Math.max(1, nextId - ids.length);
+                long id = (maxId > 0) ? Math.min(maxId, newest) : newest;
+                for (int written = 0; written < count && id >= oldest && id > sinceId; id--) {
+                    if (json && written > 0) {
+                        body.append(',');
+                    }
+                    appendStatus(body, (int) ((id - 1) % ids.length), json);
+                    written++;
+                }
+            }
+            body.append(json ? "]\n" : "</statuses>\n");
+            respond(exchange, 200, body, json);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Apply latency, authentication and failure injection.
+     *
+     * @return true if the request should be served normally
+     */
+    private boolean admit(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int latency = minLatencyMillis;
+        if (maxLatencyMillis > minLatencyMillis) {
+            latency += random.nextInt(maxLatencyMillis - minLatencyMillis + 1);
+        }
+        if (latency > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!authorized(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            respond(exchange, 401, null, false);
+            return false;
+        }
+        if (unauthorizedRate > 0 && random.nextDouble() < unauthorizedRate) {
+            injectedFailures.incrementAndGet();
+            respond(exchange, 401, null, false);
+            return false;
+        }
+        if (serverErrorRate > 0 && random.nextDouble() < serverErrorRate) {
+            injectedFailures.incrementAndGet();
+            respond(exchange, random.nextBoolean() ? 500 : 503, null, false);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean authorized(String header) {
+        return expectedAuthorization == null || expectedAuthorization.equals(header);
+    }
+
+    private int add(String user, String message) {
+        return add(user, message, null);
+    }
+
+    private synchronized int add(String user, String message, String point) {
+        int index = (int) ((nextId - 1) % ids.length);
+        ids[index] = nextId++;
+        createdAts[index] = sDateFormat.get().format(new Date());
+        users[index] = user;
+        messages[index] = message;
+        points[index] = point;
+        return index;
+    }
+
+    /* A posted location as a GeoRSS point, or null if absent or malformed */
+    private static String point(String latitude, String longitude) {
+        if (latitude == null || longitude == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(latitude) + " " + Double.parseDouble(longitude);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void appendStatus(StringBuilder body, int index, boolean json) {
+        if (json) {
+            body.append("{\"created_at\":\"").append(createdAts[index])
+                    .append("\",\"id\":").append(ids[index])
+                    .append(",\"text\":\"");
+            appendJsonEscaped(body, messages[index]);
+            body.append("\",\"user\":{\"name\":\"");
+            appendJsonEscaped(body, users[index]);
+            body.append("\"}");
+            if (points[index] != null) {
+                body.append(",\"geo\":{\"type\":\"Point\",\"coordinates\":[")
+                        .append(points[index].replace(' ', ',')).append("]}");
+            }
+            body.append('}');
+            return;
+        }
+        body.append(" <status>\n")
+                .append("  <created_at>").append(createdAts[index]).append("</created_at>\n")
+                .append("  <id>").append(ids[index]).append("</id>\n")
+                .append("  <text>");
+        appendEscaped(body, messages[index]);
+        body.append("</text>\n")
+                .append("  <user>\n")
+                .append("   <name>");
+        appendEscaped(body, users[index]);
+        body.append("</name>\n")
+                .append("  </user>\n");
+        if (points[index] != null) {
+            body.append("  <geo xmlns:georss=\"http://www.georss.org/georss\">\n")
+                    .append("   <georss:point>").append(points[index]).append("</georss:point>\n")
+                    .append("  </geo>\n");
+        }
+        body.append(" </status>\n");
+    }
+
+    private void respond(HttpExchange exchange, int code, CharSequence content, boolean json)
+            throws IOException {
+        byte[] body = (content == null) ? new byte[0] : content.toString().getBytes(UTF_8);
+        if (content != null) {
+            exchange.getResponseHeaders().set("Content-Type", json
+                    ? "application/json; charset=utf-8" : "application/xml; charset=utf-8");
+        }
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+            bytesSent.addAndGet(body.length);
+        }
+    }
+
+    private static void appendEscaped(StringBuilder xml, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': xml.append("&amp;"); break;
+                case '<': xml.append("&lt;"); break;
+                case '>': xml.append("&gt;"); break;
+                default: xml.append(c);
+            }
+        }
+    }
+
+    private static void appendJsonEscaped(StringBuilder json, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < ' ') {
+                        json.append(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+    }
+
+    private static String syntheticMessage(Random random, int length) {
+        StringBuilder message = new StringBuilder(length);
+        while (message.length() < length) {
+            message.append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36)).append(' ');
+        }
+        message.setLength(length);
+        return message.toString();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String query)
+            throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static int parseInt(String value, int fallback) {
+        try {
+            return (value == null) ? fallback : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return (value == null) ? 0 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Builder for {@link YambaTestServer}
+     */
+    public static final class Builder {
+        private int port;
+        private int threads = 16;
+        private String username;
+        private String password;
+        private int minLatencyMillis;
+        private int maxLatencyMillis;
+        private double serverErrorRate;
+        private double unauthorizedRate;
+        private int capacity = 10000;
+        private int preloadedStatuses = 1000;
+        private int messageLength = 140;
+
+        public Builder() {
+        }
+
+        /**
+         * @param port port to listen on; 0, the default, picks a free one
+         */
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param threads requests served concurrently
+         */
+        public Builder setThreads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads <= 0");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Require Basic authentication. Any credentials are accepted
+         * when this is not set.
+         */
+        public Builder setCredentials(String username, String password) {
+            this.username = username;
+            this.password = password;
+            return this;
+        }
+
+        /**
+         * @param minMillis least time added before each response
+         * @param maxMillis most time added before each response
+         */
+        public Builder setLatency(int minMillis, int maxMillis) {
+            if (minMillis < 0 || maxMillis < minMillis) {
+                throw new IllegalArgumentException("Invalid latency range");
+            }
+            this.minLatencyMillis = minMillis;
+            this.maxLatencyMillis = maxMillis;
+            return this;
+        }
+
+        /**
+         * @param rate fraction of requests answered with 500 or 503
+         */
+        public Builder setServerErrorRate(double rate) {
+            this.serverErrorRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * @param rate fraction of requests answered with 401
+         */
+        public Builder setUnauthorizedRate(double rate) {
+            this.unauthorizedRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * @param capacity statuses kept before the oldest are dropped
+         * @param preloaded synthetic statuses present at start
+         * @param messageLength length of each synthetic message
+         */
+        public Builder setTimeline(int capacity, int preloaded, int messageLength) {
+            if (capacity <= 0 || preloaded < 0 || messageLength < 0) {
+                throw new IllegalArgumentException("Invalid timeline size");
+            }
+            this.capacity = capacity;
+            this.preloadedStatuses = preloaded;
+            this.messageLength = messageLength;
+            return this;
+        }
+
+        private static double checkRate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Rate must be between 0 and 1");
+            }
+            return rate;
+        }
+
+        /**
+         * Start a server with these settings.
+         */
+        public YambaTestServer start() throws IOException {
+            return new YambaTestServer(this);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.thenewcircle.yamba.loadtest;
+
+import com.thenewcircle.yamba.client.CursorYambaClientInterface;
+import com.thenewcircle.yamba.client.WireFormat;
+import com.thenewcircle.yamba.client.YambaClient;
+import com.thenewcircle.yamba.client.YambaClientConfig;
+import com.thenewcircle.yamba.client.YambaClientIOException;
+import com.thenewcircle.yamba.client.YambaClientInterface;
+import com.thenewcircle.yamba.client.YambaClientUnauthorizedException;
+import com.thenewcircle.yamba.client.YambaStatus;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class YambaTestServerTest {
+
+    private YambaTestServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void servesPostedStatusesNewestFirst() throws Exception {
+        server = new YambaTestServer.Builder()
+                .setCredentials("student", "password")
+                .setTimeline(100, 10, 40)
+                .start();
+        YambaClientInterface client = YambaClient.getClient(
+                "student", "password", server.getApiRoot());
+
+        client.postStatus("Hello & welcome");
+        List<YambaStatus> timeline = client.getTimeline(5);
+
+        assertThat(timeline).hasSize(5);
+        assertThat(timeline.get(0).getId()).isEqualTo(11L);
+        assertThat(timeline.get(0).getMessage()).isEqualTo("Hello & welcome");
+        assertThat(timeline.get(0).getUser()).isEqualTo("student");
+        assertThat(timeline.get(0).getCreatedAt()).isNotNull();
+        assertThat(timeline.get(1).getId()).isEqualTo(10L);
+    }
+
+    @Test
+    public void servesJsonEndpoints() throws Exception {
+        server = new YambaTestServer.Builder().setTimeline(100, 10, 40).start();
+        YambaClientConfig config = new YambaClientConfig.Builder()
+                .setWireFormat(WireFormat.JSON)
+                .build();
+        YambaClientInterface client = YambaClient.getClient(
+                "student", "password", server.getApiRoot(), config);
+
+        client.postStatus("Say \"hello\"\n\u00e9\u4e16");
+        List<YambaStatus> timeline = client.getTimeline(3);
+
+        assertThat(timeline).hasSize(3);
+        assertThat(timeline.get(0).getId()).isEqualTo(11L);
+        assertThat(timeline.get(0).getMessage()).isEqualTo("Say \"hello\"\n\u00e9\u4e16");
+        assertThat(timeline.get(0).getCreatedAt()).isNotNull();
+        assertThat(timeline.get(2).getId()).isEqualTo(9L);
+    }
+
+    @Test
+    public void honorsSinceAndMaxId() throws Exception {
+        server = new YambaTestServer.Builder().setTimeline(100, 50, 10).start();
+        CursorYambaClientInterface client = YambaClient.getCursorClient(
+                "student", "password", server.getApiRoot(), null);
+
+        List<YambaStatus> range = client.getTimelineRange(40, 45, 20);
+
+        assertThat(range).hasSize(5);
+        assertThat(range.get(0).getId()).isEqualTo(45L);
+        assertThat(range.get(4).getId()).isEqualTo(41L);
+    }
+
+    @Test(expected = YambaClientUnauthorizedException.class)
+    public void rejectsWrongCredentials() throws Exception {
+        server = new YambaTestServer.Builder()
+                .setCredentials("student", "password")
+                .start();
+        YambaClient.getClient("student", "wrong", server.getApiRoot()).getTimeline(1);
+    }
+
+    @Test
+    public void injectsServerErrors() throws Exception {
+        server = new YambaTestServer.Builder().setServerErrorRate(1).start();
+        YambaClientInterface client = YambaClient.getClient(
+                "student", "password", server.getApiRoot());
+        try {
+            client.postStatus("Never stored");
+            throw new AssertionError("Expected a server error");
+        } catch (YambaClientIOException expected) {
+            assertThat(server.getInjectedFailureCount()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void loadGeneratorReportsLatency() throws Exception {
+        server = new YambaTestServer.Builder().start();
+        LoadReport report = new LoadGenerator.Builder(server.getApiRoot())
+                .setClients(4)
+                .setWarmup(0)
+                .setDuration(500)
+                .setPostRatio(0.5)
+                .build()
+                .run();
+
+        assertThat(report.getRequestCount()).isGreaterThan(0L);
+        assertThat(report.getErrorCount()).isEqualTo(0L);
+        assertThat(report.getTimelineLatency().getPercentileNanos(99)).isGreaterThan(0L);
+    }
+}